@@ -29,6 +29,7 @@ import hudson.model.Action;
 import hudson.model.AbstractProject;
 import hudson.plugins.testlink.result.ResultSeeker;
 import hudson.plugins.testlink.util.ExecutionOrderComparator;
+import hudson.plugins.testlink.util.TestCaseOrder;
 import hudson.tasks.BuildStep;
 import hudson.tasks.Builder;
 import hudson.util.VariableResolver;
@@ -119,6 +120,81 @@ extends Builder
 	 */
 	protected final Boolean failIfNoResults;
 	
+	/**
+	 * Ignore result files that did not change since the last build.
+	 */
+	protected final Boolean ignoreUnchangedResultFiles;
+	
+	/**
+	 * Run the result seekers concurrently.
+	 */
+	protected final Boolean parallelSeekers;
+	
+	/**
+	 * Number of test cases whose iterative build steps are executed at the 
+	 * same time.
+	 */
+	protected final Integer parallelIterations;
+	
+	/**
+	 * Label expression of the nodes where the test cases are iterated.
+	 */
+	protected final String shardLabel;
+	
+	/**
+	 * Number of test cases iterated by each execution of the iterative build 
+	 * steps.
+	 */
+	protected final Integer batchSize;
+	
+	/**
+	 * Command line of a test runner that executes all the test cases, 
+	 * instead of the iterative build steps.
+	 */
+	protected final String runnerCommand;
+	
+	/**
+	 * Time, in seconds, that the test runner has to answer each test case. 
+	 * The runner is stopped if it does not answer in time.
+	 */
+	protected final Integer runnerTimeout;
+	
+	/**
+	 * If true only the TestLink environment variables used in the commands 
+	 * of the iterative build steps are created.
+	 */
+	protected final Boolean onlyUsedEnvironmentVariables;
+	
+	/**
+	 * Time budget of the iterative build steps, in minutes. Only the test 
+	 * cases that fit in it are executed.
+	 */
+	protected final Integer timeBudget;
+	
+	/**
+	 * Name of the order in which the test cases are executed. See 
+	 * {@link TestCaseOrder}.
+	 */
+	protected final String testCaseOrder;
+	
+	/**
+	 * If true, in a transactional build, the iteration stops at the first 
+	 * failure and the test cases not executed are reported as BLOCKED.
+	 */
+	protected final Boolean failFast;
+	
+	/**
+	 * Custom field with the classes or packages tested by each test case. 
+	 * If set, only the test cases impacted by the SCM changes are executed.
+	 */
+	protected final String impactCustomField;
+	
+	/**
+	 * Maximum size, in bytes, of the notes of each test case sent to 
+	 * TestLink. See {@link hudson.plugins.testlink.result.NotesBuffer}.
+	 */
+	protected final Integer notesMaxSize;
+	
 	/*
 	 * Test life cycle commands. With these hooks you can execute command before 
 	 * the single test command, after the single test command, before the 
@@ -135,13 +211,41 @@ extends Builder
 	/**
 	 * Flag to check if any failure happened.
 	 */
-	protected boolean failure = false;
+	protected volatile boolean failure = false;
 
 	/**
 	 * Results seekers.
 	 */
 	private List<ResultSeeker> resultSeekers;
 	
+	/**
+	 * @deprecated since 3.1.9, use the constructor that has all the options
+	 */
+	@Deprecated
+	public AbstractTestLinkBuilder(
+		String testLinkName, 
+		String testProjectName, 
+		String testPlanName, 
+		String buildName, 
+		String customFields, 
+		List<BuildStep> singleBuildSteps, 
+		List<BuildStep> beforeIteratingAllTestCasesBuildSteps, 
+		List<BuildStep> iterativeBuildSteps, 
+		List<BuildStep> afterIteratingAllTestCasesBuildSteps, 
+		Boolean transactional, 
+		Boolean failedTestsMarkBuildAsFailure, 
+		Boolean failIfNoResults, 
+		List<ResultSeeker> resultSeekers
+	) {
+		this(testLinkName, testProjectName, testPlanName, buildName, 
+				customFields, singleBuildSteps, 
+				beforeIteratingAllTestCasesBuildSteps, iterativeBuildSteps, 
+				afterIteratingAllTestCasesBuildSteps, transactional, 
+				failedTestsMarkBuildAsFailure, failIfNoResults, 
+				Boolean.FALSE, Boolean.FALSE, null, null, null, null, 
+				null, null, null, null, null, null, null, resultSeekers);
+	}
+	
 	/**
 	 * This constructor is bound to a stapler request. All parameters here are 
 	 * passed by Jenkins.
@@ -159,6 +263,19 @@ extends Builder
 	 * @param transactional Whether the build's execution is transactional or not.
 	 * @param failedTestsMarkBuildAsFailure Whether failed tests mark the build as failure or not.
 	 * @param failIfNoResults If true marks the build as FAILURE.
+	 * @param ignoreUnchangedResultFiles If true result files not changed since the last build are ignored.
+	 * @param parallelSeekers If true the result seekers run concurrently.
+	 * @param parallelIterations Number of test cases iterated at the same time.
+	 * @param shardLabel Label expression of the nodes where the test cases are iterated.
+	 * @param batchSize Number of test cases iterated by each execution of the iterative build steps.
+	 * @param runnerCommand Command line of a test runner that executes all the test cases.
+	 * @param runnerTimeout Time, in seconds, that the test runner has to answer each test case.
+	 * @param onlyUsedEnvironmentVariables If true only the environment variables used by the iterative build steps are created.
+	 * @param timeBudget Time budget of the iterative build steps, in minutes.
+	 * @param testCaseOrder Name of the order in which the test cases are executed.
+	 * @param failFast If true the iteration stops at the first failure in a transactional build.
+	 * @param impactCustomField Custom field with the classes or packages tested by each test case.
+	 * @param notesMaxSize Maximum size, in bytes, of the notes of each test case.
 	 * @param resultSeekers List of result seekers.
 	 */
 	public AbstractTestLinkBuilder(
@@ -174,6 +291,19 @@ extends Builder
 		Boolean transactional, 
 		Boolean failedTestsMarkBuildAsFailure, 
 		Boolean failIfNoResults, 
+		Boolean ignoreUnchangedResultFiles, 
+		Boolean parallelSeekers, 
+		Integer parallelIterations, 
+		String shardLabel, 
+		Integer batchSize, 
+		String runnerCommand, 
+		Integer runnerTimeout, 
+		Boolean onlyUsedEnvironmentVariables, 
+		Integer timeBudget, 
+		String testCaseOrder, 
+		Boolean failFast, 
+		String impactCustomField, 
+		Integer notesMaxSize, 
 		List<ResultSeeker> resultSeekers
 	) {
 		super();
@@ -189,6 +319,19 @@ extends Builder
 		this.transactional = transactional;
 		this.failedTestsMarkBuildAsFailure = failedTestsMarkBuildAsFailure;
 		this.failIfNoResults = failIfNoResults;
+		this.ignoreUnchangedResultFiles = ignoreUnchangedResultFiles;
+		this.parallelSeekers = parallelSeekers;
+		this.parallelIterations = parallelIterations;
+		this.shardLabel = shardLabel;
+		this.batchSize = batchSize;
+		this.runnerCommand = runnerCommand;
+		this.runnerTimeout = runnerTimeout;
+		this.onlyUsedEnvironmentVariables = onlyUsedEnvironmentVariables;
+		this.timeBudget = timeBudget;
+		this.testCaseOrder = testCaseOrder;
+		this.failFast = failFast;
+		this.impactCustomField = impactCustomField;
+		this.notesMaxSize = notesMaxSize;
 		this.resultSeekers = resultSeekers;
 	}
 	
@@ -279,6 +422,97 @@ extends Builder
 		return failIfNoResults;
 	}
 	
+	/**
+	 * @return the ignoreUnchangedResultFiles
+	 */
+	public Boolean getIgnoreUnchangedResultFiles() {
+		return ignoreUnchangedResultFiles;
+	}
+	
+	/**
+	 * @return the parallelSeekers
+	 */
+	public Boolean getParallelSeekers() {
+		return parallelSeekers;
+	}
+	
+	/**
+	 * @return the parallelIterations
+	 */
+	public Integer getParallelIterations() {
+		return parallelIterations;
+	}
+	
+	/**
+	 * @return the shardLabel
+	 */
+	public String getShardLabel() {
+		return shardLabel;
+	}
+	
+	/**
+	 * @return the batchSize
+	 */
+	public Integer getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * @return the runnerCommand
+	 */
+	public String getRunnerCommand() {
+		return runnerCommand;
+	}
+	
+	/**
+	 * @return the runnerTimeout
+	 */
+	public Integer getRunnerTimeout() {
+		return runnerTimeout;
+	}
+	
+	/**
+	 * @return the onlyUsedEnvironmentVariables
+	 */
+	public Boolean getOnlyUsedEnvironmentVariables() {
+		return onlyUsedEnvironmentVariables;
+	}
+	
+	/**
+	 * @return the timeBudget
+	 */
+	public Integer getTimeBudget() {
+		return timeBudget;
+	}
+	
+	/**
+	 * @return the testCaseOrder
+	 */
+	public String getTestCaseOrder() {
+		return testCaseOrder;
+	}
+	
+	/**
+	 * @return the failFast
+	 */
+	public Boolean getFailFast() {
+		return failFast;
+	}
+	
+	/**
+	 * @return the impactCustomField
+	 */
+	public String getImpactCustomField() {
+		return impactCustomField;
+	}
+	
+	/**
+	 * @return the notesMaxSize
+	 */
+	public Integer getNotesMaxSize() {
+		return notesMaxSize;
+	}
+	
 	/**
 	 * @return the resultSeekers
 	 */
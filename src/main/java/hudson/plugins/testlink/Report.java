@@ -26,14 +26,18 @@ package hudson.plugins.testlink;
 import hudson.plugins.testlink.result.TestCaseWrapper;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
 import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
 
 /**
- * Build Report.
+ * Build Report. The counters are updated without locking, and the test
+ * cases are appended and copied under a short lock, so test cases can be 
+ * reported concurrently. The serialized form is the same as before.
  *
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @since 2.0
@@ -42,10 +46,19 @@ public class Report implements Serializable {
 
 	private static final long serialVersionUID = 3686192971774873173L;
 
-	private int passed 	= 0;
-	private int failed 	= 0;
-	private int blocked	= 0;
-	private int notRun	= 0;
+	private volatile int passed 	= 0;
+	private volatile int failed 	= 0;
+	private volatile int blocked	= 0;
+	private volatile int notRun	= 0;
+
+	private static final AtomicIntegerFieldUpdater<Report> PASSED =
+			AtomicIntegerFieldUpdater.newUpdater(Report.class, "passed");
+	private static final AtomicIntegerFieldUpdater<Report> FAILED =
+			AtomicIntegerFieldUpdater.newUpdater(Report.class, "failed");
+	private static final AtomicIntegerFieldUpdater<Report> BLOCKED =
+			AtomicIntegerFieldUpdater.newUpdater(Report.class, "blocked");
+	private static final AtomicIntegerFieldUpdater<Report> NOT_RUN =
+			AtomicIntegerFieldUpdater.newUpdater(Report.class, "notRun");
 
     private final TestProject testProject;
     private final TestPlan testPlan;
@@ -74,6 +87,15 @@ public class Report implements Serializable {
 		return passed + failed + blocked + notRun;
 	}
 
+	/**
+	 * @return the tests with a result, that is the tests total without the 
+	 * tests that did not run
+	 * @since 3.1.9
+	 */
+	public int getTestsFound() {
+		return passed + failed + blocked;
+	}
+
 	/**
 	 * @return the passed
 	 */
@@ -119,6 +141,46 @@ public class Report implements Serializable {
 		this.blocked = blocked;
 	}
 
+	/**
+	 * Increments the passed counter.
+	 *
+	 * @return the new value
+	 * @since 3.1.9
+	 */
+	public int incrementPassed() {
+		return PASSED.incrementAndGet(this);
+	}
+
+	/**
+	 * Increments the failed counter.
+	 *
+	 * @return the new value
+	 * @since 3.1.9
+	 */
+	public int incrementFailed() {
+		return FAILED.incrementAndGet(this);
+	}
+
+	/**
+	 * Increments the blocked counter.
+	 *
+	 * @return the new value
+	 * @since 3.1.9
+	 */
+	public int incrementBlocked() {
+		return BLOCKED.incrementAndGet(this);
+	}
+
+	/**
+	 * Increments the not run counter.
+	 *
+	 * @return the new value
+	 * @since 3.1.9
+	 */
+	public int incrementNotRun() {
+		return NOT_RUN.incrementAndGet(this);
+	}
+
 	/**
 	 * @return the notRun
 	 */
@@ -166,14 +228,19 @@ public class Report implements Serializable {
 	 * @param testCase
 	 */
 	public void addTestCase(TestCaseWrapper testCase) {
-		this.testCases.add(testCase);
+		synchronized (this.testCases) {
+			this.testCases.add(testCase);
+		}
 	}
 
 	/**
-	 * @return the testCases
+	 * @return a copy of the testCases, taken under the lock, so it can be 
+	 * iterated while test cases are still being added
 	 */
 	public List<TestCaseWrapper> getTestCases() {
-		return testCases;
+		synchronized (this.testCases) {
+			return new ArrayList<TestCaseWrapper>(this.testCases);
+		}
 	}
 
 }
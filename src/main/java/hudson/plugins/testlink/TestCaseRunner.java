@@ -0,0 +1,421 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.BuildListener;
+import hudson.plugins.testlink.result.TestCaseWrapper;
+import hudson.plugins.testlink.util.Messages;
+import hudson.util.QuotedStringTokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * <p>
+ * A long-lived test runner process, started once per build, that executes 
+ * the automated test cases one at a time. This saves starting a process, 
+ * or warming up a JVM, for each test case.
+ * </p>
+ * 
+ * <p>
+ * The protocol is newline-delimited JSON. For each test case, one line is 
+ * written to the standard input of the runner, with the test case ID, its 
+ * name and the same environment variables given to the iterative build 
+ * steps:
+ * </p>
+ * 
+ * <pre>
+ * {"id":12,"name":"Login","environment":{"TESTLINK_TESTCASE_ID":"12",...}}
+ * </pre>
+ * 
+ * <p>
+ * The runner executes the test case and answers with one line on its 
+ * standard output, with the same ID, the status (passed, failed or 
+ * blocked) and optional notes:
+ * </p>
+ * 
+ * <pre>
+ * {"id":12,"status":"passed","notes":"Took 0.2 s"}
+ * </pre>
+ * 
+ * <p>
+ * Any other line printed by the runner is copied to the build log. The 
+ * standard input is closed once all the test cases were sent, and the 
+ * runner is expected to exit.
+ * </p>
+ * 
+ * <p>
+ * The output of the runner is read in a separate thread, so a runner that 
+ * hangs does not hang the build. If a timeout is given and the runner does 
+ * not answer a test case in time, it is stopped.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestCaseRunner {
+
+	private static final Logger LOGGER = Logger.getLogger("hudson.plugins.testlink");
+
+	private static final String UTF_8 = "UTF-8";
+
+	/**
+	 * Put in the queue of lines once the output of the runner ends. Compared 
+	 * by identity.
+	 */
+	private static final String END_OF_OUTPUT = new String("");
+
+	private final BuildListener listener;
+
+	private final Proc proc;
+
+	private final Writer stdin;
+
+	/**
+	 * Lines printed by the runner, filled by the reader thread.
+	 */
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+
+	/**
+	 * Time, in milliseconds, that the runner has to answer each test case. 
+	 * Zero waits forever.
+	 */
+	private final long timeout;
+
+	/**
+	 * Whether the runner stopped answering.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Whether the runner was stopped because it did not answer the last 
+	 * test case in time.
+	 */
+	private boolean timedOut = false;
+
+	/**
+	 * Starts the runner.
+	 * 
+	 * @param command command line of the runner
+	 * @param launcher Jenkins launcher
+	 * @param workspace directory where the runner is started
+	 * @param envVars environment variables of the runner
+	 * @param timeout time, in seconds, that the runner has to answer each 
+	 * test case, or <code>null</code> to wait forever
+	 * @param listener Jenkins build listener
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public TestCaseRunner(String command, Launcher launcher, FilePath workspace, 
+			EnvVars envVars, Integer timeout, BuildListener listener) throws IOException, InterruptedException {
+		this.listener = listener;
+		this.timeout = timeout != null && timeout > 0 ? TimeUnit.SECONDS.toMillis(timeout) : 0L;
+		listener.getLogger().println(Messages.TestLinkBuilder_StartingRunner(command));
+		this.proc = launcher.launch()
+				.cmds(QuotedStringTokenizer.tokenize(command))
+				.envs(envVars)
+				.pwd(workspace)
+				.stderr(listener.getLogger())
+				.readStdout()
+				.writeStdin()
+				.start();
+		this.stdin = new OutputStreamWriter(this.proc.getStdin(), UTF_8);
+		final BufferedReader stdout = new BufferedReader(new InputStreamReader(this.proc.getStdout(), UTF_8));
+		final Thread reader = new Thread("TestLink test runner output reader") {
+			@Override
+			public void run() {
+				try {
+					String line;
+					while ((line = stdout.readLine()) != null) {
+						lines.add(line);
+					}
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "Failed to read the output of the test runner", e);
+				} finally {
+					lines.add(END_OF_OUTPUT);
+				}
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Executes a test case in the runner and waits for its result. The 
+	 * status and the notes answered by the runner are set in the test case.
+	 * 
+	 * @param testCase automated test case
+	 * @param environment environment variables of the test case
+	 * @return status answered by the runner, or <code>null</code> if the 
+	 * runner exited, or was stopped, before answering
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public ExecutionStatus execute(TestCaseWrapper testCase, Map<String, String> environment) throws IOException, InterruptedException {
+		timedOut = false;
+		if (closed) {
+			return null;
+		}
+		try {
+			stdin.write(createRequest(testCase, environment));
+			stdin.write('\n');
+			stdin.flush();
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to send test case " + testCase.getId() + " to the test runner", e);
+			closed = true;
+			return null;
+		}
+		final long deadline = System.currentTimeMillis() + timeout;
+		String line;
+		while ((line = nextLine(deadline)) != END_OF_OUTPUT) {
+			if (line == null) {
+				LOGGER.log(Level.WARNING, "The test runner did not answer test case " + testCase.getId() + " in " + timeout + " ms, stopping it");
+				listener.getLogger().println(Messages.TestLinkBuilder_RunnerTimedOut(testCase.getId(), TimeUnit.MILLISECONDS.toSeconds(timeout)));
+				timedOut = true;
+				closed = true;
+				kill();
+				return null;
+			}
+			final JSONObject response = parseResponse(line);
+			if (response == null) {
+				listener.getLogger().println(line);
+				continue;
+			}
+			if (!String.valueOf(testCase.getId()).equals(response.optString("id"))) {
+				listener.getLogger().println(Messages.TestLinkBuilder_RunnerUnexpectedResponse(line));
+				continue;
+			}
+			final ExecutionStatus status = toExecutionStatus(response.optString("status"));
+			if (status == null) {
+				listener.getLogger().println(Messages.TestLinkBuilder_RunnerUnexpectedResponse(line));
+				continue;
+			}
+			testCase.setExecutionStatus(status);
+			final String notes = response.optString("notes");
+			if (notes.length() > 0) {
+				testCase.appendNotes(notes);
+			}
+			return status;
+		}
+		LOGGER.log(Level.WARNING, "The test runner exited before answering test case " + testCase.getId());
+		listener.getLogger().println(Messages.TestLinkBuilder_RunnerExitedBeforeAnswering(testCase.getId()));
+		closed = true;
+		return null;
+	}
+
+	/**
+	 * @param deadline time when the runner must have answered, ignored if 
+	 * there is no timeout
+	 * @return next line printed by the runner, {@link #END_OF_OUTPUT}, or 
+	 * <code>null</code> if the deadline passed
+	 * @throws InterruptedException
+	 */
+	private String nextLine(long deadline) throws InterruptedException {
+		if (timeout == 0L) {
+			return lines.take();
+		}
+		final long remaining = deadline - System.currentTimeMillis();
+		return remaining > 0 ? lines.poll(remaining, TimeUnit.MILLISECONDS) : lines.poll();
+	}
+
+	/**
+	 * @return whether the runner was stopped because it did not answer the 
+	 * last test case in time
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	/**
+	 * Closes the standard input of the runner, copies the rest of its output 
+	 * to the build log, and waits for it to exit. If a timeout is given, the 
+	 * runner has that time to exit, and is stopped otherwise.
+	 * 
+	 * @return exit code of the runner
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public int close() throws IOException, InterruptedException {
+		try {
+			stdin.close();
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to close the standard input of the test runner", e);
+		}
+		final long deadline = System.currentTimeMillis() + timeout;
+		String line;
+		while ((line = nextLine(deadline)) != END_OF_OUTPUT) {
+			if (line == null) {
+				LOGGER.log(Level.WARNING, "The test runner did not exit " + timeout + " ms after its standard input was closed, stopping it");
+				listener.getLogger().println(Messages.TestLinkBuilder_RunnerDidNotExit(TimeUnit.MILLISECONDS.toSeconds(timeout)));
+				kill();
+				break;
+			}
+			listener.getLogger().println(line);
+		}
+		final int exitCode;
+		if (timeout == 0L || line == null) {
+			exitCode = proc.join();
+		} else {
+			// the runner may close its output and still not exit
+			exitCode = proc.joinWithTimeout(Math.max(deadline - System.currentTimeMillis(), 1L), TimeUnit.MILLISECONDS, listener);
+		}
+		listener.getLogger().println(Messages.TestLinkBuilder_RunnerFinished(exitCode));
+		return exitCode;
+	}
+
+	/**
+	 * Stops the runner, if it is still running.
+	 */
+	public void kill() {
+		try {
+			proc.kill();
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to stop the test runner", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Creates the JSON line sent to the runner for a test case.
+	 * 
+	 * @param testCase automated test case
+	 * @param environment environment variables of the test case
+	 * @return JSON object, in a single line
+	 */
+	static String createRequest(TestCaseWrapper testCase, Map<String, String> environment) {
+		final StringBuilder request = new StringBuilder();
+		request.append("{\"id\":").append(testCase.getId());
+		request.append(",\"name\":");
+		quote(testCase.getName(), request);
+		request.append(",\"environment\":{");
+		boolean first = true;
+		for (Map.Entry<String, String> entry : environment.entrySet()) {
+			if (!first) {
+				request.append(',');
+			}
+			first = false;
+			quote(entry.getKey(), request);
+			request.append(':');
+			quote(entry.getValue(), request);
+		}
+		request.append("}}");
+		return request.toString();
+	}
+
+	/**
+	 * Appends a JSON string. The string is written by hand, as json-lib would 
+	 * turn values that look like JSON, e.g. "[1]", into arrays.
+	 * 
+	 * @param text text, or <code>null</code>
+	 * @param out where the JSON string is appended
+	 */
+	private static void quote(String text, StringBuilder out) {
+		if (text == null) {
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < text.length(); ++i) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case '"':
+				out.append("\\\"");
+				break;
+			case '\\':
+				out.append("\\\\");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			default:
+				if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+					out.append(String.format("\\u%04x", (int) c));
+				} else {
+					out.append(c);
+				}
+			}
+		}
+		out.append('"');
+	}
+
+	/**
+	 * @param line line printed by the runner
+	 * @return the line as a JSON object, or <code>null</code> if it is not 
+	 * a result
+	 */
+	static JSONObject parseResponse(String line) {
+		final String trimmed = line.trim();
+		if (!trimmed.startsWith("{") || !trimmed.endsWith("}")) {
+			return null;
+		}
+		try {
+			final JSONObject response = JSONObject.fromObject(trimmed);
+			return response.has("id") && response.has("status") ? response : null;
+		} catch (JSONException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param status status answered by the runner, e.g. passed or p
+	 * @return execution status, or <code>null</code> if it is not known
+	 */
+	static ExecutionStatus toExecutionStatus(String status) {
+		final String value = status.trim().toLowerCase();
+		if (value.equals("passed") || value.equals("p")) {
+			return ExecutionStatus.PASSED;
+		} else if (value.equals("failed") || value.equals("f")) {
+			return ExecutionStatus.FAILED;
+		} else if (value.equals("blocked") || value.equals("b")) {
+			return ExecutionStatus.BLOCKED;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,368 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.BuildListener;
+import hudson.model.Computer;
+import hudson.model.Hudson;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.TopLevelItem;
+import hudson.model.AbstractBuild;
+import hudson.plugins.testlink.result.TestCaseWrapper;
+import hudson.plugins.testlink.util.Messages;
+import hudson.plugins.testlink.util.TestCaseDurations;
+import hudson.plugins.testlink.util.TestLinkEnvironmentTemplate;
+import hudson.plugins.testlink.util.TestLinkHelper;
+import hudson.scm.NullSCM;
+import hudson.slaves.WorkspaceList;
+import hudson.tasks.BuildStep;
+import hudson.tasks.CommandInterpreter;
+import hudson.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * <p>
+ * Executes the iterative build steps of the automated test cases on several 
+ * nodes. The test cases are split into one shard per online node matching a 
+ * label expression, balanced with the durations of the previous build (see 
+ * {@link TestCaseDurations}), and each shard is iterated in the workspace of the job 
+ * in its node. The shards run at the same time, and the test cases of a 
+ * shard are iterated one after the other, in their execution order.
+ * </p>
+ * 
+ * <p>
+ * Only build steps that run a script, like Execute shell or Execute Windows 
+ * batch command, can be executed in another node. Once a shard finishes, 
+ * the result files found in its workspace are copied to the workspace of 
+ * the build, where the result seekers look for them.
+ * </p>
+ * 
+ * <p>
+ * The workspace of a shard in another node is leased for the time of the 
+ * shard, as a build does, so concurrent builds of the job get different 
+ * directories. It is not a checkout of the SCM of the job, and the shards 
+ * do not take an executor of their node. The result files left in it by a 
+ * previous build are deleted before iterating.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestCaseShards {
+
+	private static final Logger LOGGER = Logger.getLogger("hudson.plugins.testlink");
+
+	private final AbstractBuild<?, ?> build;
+
+	private final BuildListener listener;
+
+	private final TestLinkSite testLinkSite;
+
+	private final List<CommandInterpreter> iterativeBuildSteps;
+
+	private final boolean transactional;
+
+	private final boolean failFast;
+
+	private final TestCaseDurations testCaseDurations;
+
+	private final TestLinkEnvironmentTemplate environmentTemplate;
+
+	/**
+	 * Set once a build step fails, in any shard.
+	 */
+	private volatile boolean failure = false;
+
+	/**
+	 * @param build Jenkins build
+	 * @param listener Jenkins build listener
+	 * @param testLinkSite TestLink site
+	 * @param iterativeBuildSteps build steps executed for each test case
+	 * @param transactional whether test cases are blocked after a build step 
+	 * fails
+	 * @param failFast whether the build steps of a test case are skipped 
+	 * after a build step fails
+	 * @param testCaseDurations where the wall time of each test case is 
+	 * recorded
+	 * @param environmentTemplate environment variables of each test case
+	 * @throws AbortException if a build step cannot be executed in another 
+	 * node
+	 */
+	public TestCaseShards(AbstractBuild<?, ?> build, BuildListener listener, 
+			TestLinkSite testLinkSite, List<BuildStep> iterativeBuildSteps, 
+			boolean transactional, boolean failFast, TestCaseDurations testCaseDurations, 
+			TestLinkEnvironmentTemplate environmentTemplate) throws AbortException {
+		this.build = build;
+		this.listener = listener;
+		this.testLinkSite = testLinkSite;
+		this.transactional = transactional;
+		this.failFast = failFast;
+		this.testCaseDurations = testCaseDurations;
+		this.environmentTemplate = environmentTemplate;
+		this.iterativeBuildSteps = new ArrayList<CommandInterpreter>(iterativeBuildSteps.size());
+		for (BuildStep b : iterativeBuildSteps) {
+			if (!(b instanceof CommandInterpreter)) {
+				throw new AbortException(Messages.TestLinkBuilder_ShardBuildStepNotSupported(b.getClass().getName()));
+			}
+			this.iterativeBuildSteps.add((CommandInterpreter) b);
+		}
+	}
+
+	/**
+	 * @return whether a build step failed
+	 */
+	public boolean isFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the online nodes matching a label expression, sorted by name.
+	 * 
+	 * @param labelExpression label expression
+	 * @return online nodes matching the label expression
+	 * @throws AbortException if no online node matches the label expression
+	 */
+	public static List<Node> getNodes(String labelExpression) throws AbortException {
+		final Label label = Hudson.getInstance().getLabel(labelExpression.trim());
+		final List<Node> nodes = new ArrayList<Node>();
+		if (label != null) {
+			for (Node node : label.getNodes()) {
+				final Computer computer = node.toComputer();
+				if (computer != null && computer.isOnline()) {
+					nodes.add(node);
+				}
+			}
+		}
+		if (nodes.isEmpty()) {
+			throw new AbortException(Messages.TestLinkBuilder_ShardNoNodes(labelExpression));
+		}
+		Collections.sort(nodes, new Comparator<Node>() {
+			public int compare(Node o1, Node o2) {
+				return o1.getNodeName().compareTo(o2.getNodeName());
+			}
+		});
+		return nodes;
+	}
+
+	/**
+	 * Iterates each shard in its node, and waits for all of them. The first 
+	 * failure is rethrown, after the shards still running are interrupted.
+	 * 
+	 * @param nodes nodes
+	 * @param shards test cases of each node
+	 * @param resultIncludePatterns include patterns of the result files to 
+	 * copy back to the workspace of the build
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void execute(List<Node> nodes, List<List<TestCaseWrapper>> shards, 
+			final List<String> resultIncludePatterns) throws IOException, InterruptedException {
+		final EnvVars buildEnvironment = build.getEnvironment(listener);
+		final ExecutorService executor = Executors.newFixedThreadPool(nodes.size(), new DaemonThreadFactory());
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>(nodes.size());
+			for (int i = 0; i < nodes.size(); ++i) {
+				final Node node = nodes.get(i);
+				final List<TestCaseWrapper> shard = shards.get(i);
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException, InterruptedException {
+						TestCaseShards.this.execute(node, shard, buildEnvironment, resultIncludePatterns);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException ee) {
+					final Throwable cause = ee.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new IOException(cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Iterates the test cases of a shard in a node. In another node, a 
+	 * workspace of the job is leased for the time of the shard.
+	 * 
+	 * @param node node
+	 * @param shard test cases
+	 * @param buildEnvironment environment variables of the build
+	 * @param resultIncludePatterns include patterns of the result files
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void execute(Node node, List<TestCaseWrapper> shard, 
+			EnvVars buildEnvironment, List<String> resultIncludePatterns) throws IOException, InterruptedException {
+		final String nodeName = StringUtils.defaultIfEmpty(node.getNodeName(), "master");
+		if (node == build.getBuiltOn()) {
+			this.execute(node, nodeName, build.getWorkspace(), shard, buildEnvironment, null);
+			return;
+		}
+		final FilePath workspace = build.getProject() instanceof TopLevelItem ? node.getWorkspaceFor((TopLevelItem) build.getProject()) : null;
+		final Computer computer = node.toComputer();
+		if (workspace == null || computer == null) {
+			throw new AbortException(Messages.TestLinkBuilder_ShardNoWorkspace(nodeName));
+		}
+		if (!(build.getProject().getScm() instanceof NullSCM)) {
+			listener.getLogger().println(Messages.TestLinkBuilder_ShardNoCheckout(nodeName));
+		}
+		final WorkspaceList.Lease lease = computer.getWorkspaceList().allocate(workspace);
+		try {
+			this.execute(node, nodeName, lease.path, shard, buildEnvironment, resultIncludePatterns);
+		} finally {
+			lease.release();
+		}
+	}
+
+	/**
+	 * Iterates the test cases of a shard in a workspace. When include 
+	 * patterns are given, the result files matching them are deleted before 
+	 * iterating, and copied back to the workspace of the build after.
+	 * 
+	 * @param node node
+	 * @param nodeName name of the node, for the build log
+	 * @param workspace workspace in the node
+	 * @param shard test cases
+	 * @param buildEnvironment environment variables of the build
+	 * @param resultIncludePatterns include patterns of the result files, or 
+	 * <code>null</code> when iterating in the workspace of the build
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void execute(Node node, String nodeName, FilePath workspace, List<TestCaseWrapper> shard, 
+			EnvVars buildEnvironment, List<String> resultIncludePatterns) throws IOException, InterruptedException {
+		workspace.mkdirs();
+		if (resultIncludePatterns != null) {
+			// Old result files would be copied back as results of this build
+			int deleted = 0;
+			for (String includePattern : resultIncludePatterns) {
+				if (StringUtils.isNotBlank(includePattern)) {
+					for (FilePath resultFile : workspace.list(includePattern)) {
+						resultFile.delete();
+						deleted++;
+					}
+				}
+			}
+			listener.getLogger().println(Messages.TestLinkBuilder_ShardResultFilesDeleted(deleted, nodeName));
+		}
+		final Launcher launcher = node.createLauncher(listener);
+		listener.getLogger().println(Messages.TestLinkBuilder_ShardStarted(nodeName, shard.size()));
+		final long start = System.currentTimeMillis();
+
+		for (TestCaseWrapper automatedTestCase : shard) {
+			if (this.failure && this.transactional) {
+				automatedTestCase.setExecutionStatus(ExecutionStatus.BLOCKED);
+				continue;
+			}
+			final EnvVars envVars = new EnvVars(buildEnvironment);
+			envVars.putAll(TestLinkHelper.buildTestCaseEnvVars(automatedTestCase,
+					testLinkSite.getTestProject(),
+					testLinkSite.getTestPlan(),
+					testLinkSite.getBuild(), listener, environmentTemplate));
+			envVars.put("WORKSPACE", workspace.getRemote());
+			final long testCaseStart = System.currentTimeMillis();
+			for (CommandInterpreter b : iterativeBuildSteps) {
+				if (!this.run(b, launcher, workspace, envVars)) {
+					this.failure = true;
+				}
+				if (this.failure && this.failFast) {
+					break;
+				}
+			}
+			testCaseDurations.record(automatedTestCase, System.currentTimeMillis() - testCaseStart);
+		}
+
+		listener.getLogger().println(Messages.TestLinkBuilder_ShardFinished(nodeName, System.currentTimeMillis() - start));
+
+		if (resultIncludePatterns != null) {
+			int copied = 0;
+			for (String includePattern : resultIncludePatterns) {
+				if (StringUtils.isNotBlank(includePattern)) {
+					copied += workspace.copyRecursiveTo(includePattern, build.getWorkspace());
+				}
+			}
+			listener.getLogger().println(Messages.TestLinkBuilder_ShardResultFilesCopied(copied, nodeName));
+		}
+	}
+
+	/**
+	 * Runs the script of a build step in a workspace.
+	 * 
+	 * @param b build step
+	 * @param launcher launcher of the node
+	 * @param workspace workspace in the node
+	 * @param envVars environment variables
+	 * @return whether the script exited with 0
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private boolean run(CommandInterpreter b, Launcher launcher, FilePath workspace, EnvVars envVars) throws IOException, InterruptedException {
+		final FilePath script = b.createScriptFile(workspace);
+		try {
+			final int exitCode = launcher.launch().cmds(b.buildCommandLine(script)).envs(envVars).stdout(listener).pwd(workspace).join();
+			return exitCode == 0;
+		} finally {
+			try {
+				script.delete();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to delete script file " + script, e);
+			}
+		}
+	}
+
+}
@@ -25,9 +25,12 @@ package hudson.plugins.testlink;
 
 import hudson.model.Action;
 import hudson.model.AbstractBuild;
+import hudson.plugins.testlink.util.TestCaseHistory;
 import hudson.plugins.testlink.util.TestLinkHelper;
 
 import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
 
 import org.kohsuke.stapler.StaplerProxy;
 
@@ -48,6 +51,22 @@ implements Action, Serializable, StaplerProxy
 	private AbstractBuild<?, ?> build;
 	private TestLinkResult result;
 	
+	/**
+	 * Wall time taken by the iterative build steps of each test case, in 
+	 * milliseconds, by test case ID.
+	 */
+	private Map<Integer, Long> testCaseDurations;
+	
+	/**
+	 * Outcome of the last runs of each test case, by test case ID.
+	 */
+	private Map<Integer, TestCaseHistory.Record> testCaseHistory;
+	
+	/**
+	 * Source paths of each value of the impact custom field.
+	 */
+	private Map<String, Set<String>> testCaseImpactIndex;
+	
 	public TestLinkBuildAction(AbstractBuild<?, ?> build, TestLinkResult result)
 	{
 		this.build = build;
@@ -86,6 +105,61 @@ implements Action, Serializable, StaplerProxy
 		return this.result;
 	}
 	
+	/**
+	 * @return wall time taken by the iterative build steps of each test 
+	 * case, in milliseconds, by test case ID. <code>null</code> for builds 
+	 * made before the durations were recorded
+	 */
+	public Map<Integer, Long> getTestCaseDurations()
+	{
+		return this.testCaseDurations;
+	}
+	
+	/**
+	 * @param testCaseDurations wall time taken by the iterative build steps 
+	 * of each test case, in milliseconds, by test case ID
+	 */
+	public void setTestCaseDurations(Map<Integer, Long> testCaseDurations)
+	{
+		this.testCaseDurations = testCaseDurations;
+	}
+	
+	/**
+	 * @return outcome of the last runs of each test case, by test case ID. 
+	 * <code>null</code> for builds made before the history was recorded
+	 */
+	public Map<Integer, TestCaseHistory.Record> getTestCaseHistory()
+	{
+		return this.testCaseHistory;
+	}
+	
+	/**
+	 * @param testCaseHistory outcome of the last runs of each test case, by 
+	 * test case ID
+	 */
+	public void setTestCaseHistory(Map<Integer, TestCaseHistory.Record> testCaseHistory)
+	{
+		this.testCaseHistory = testCaseHistory;
+	}
+	
+	/**
+	 * @return source paths of each value of the impact custom field. 
+	 * <code>null</code> if the test cases were not selected by impact
+	 */
+	public Map<String, Set<String>> getTestCaseImpactIndex()
+	{
+		return this.testCaseImpactIndex;
+	}
+	
+	/**
+	 * @param testCaseImpactIndex source paths of each value of the impact 
+	 * custom field
+	 */
+	public void setTestCaseImpactIndex(Map<String, Set<String>> testCaseImpactIndex)
+	{
+		this.testCaseImpactIndex = testCaseImpactIndex;
+	}
+	
 	/**
 	 * @return Previous TestLink report
 	 */
@@ -26,29 +26,54 @@ package hudson.plugins.testlink;
 import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.BuildListener;
-import hudson.model.EnvironmentContributingAction;
+import hudson.model.Node;
 import hudson.model.Result;
 import hudson.model.AbstractBuild;
+import hudson.plugins.testlink.result.ResultFileManifest;
+import hudson.plugins.testlink.result.ResultFileTracker;
 import hudson.plugins.testlink.result.ResultSeeker;
 import hudson.plugins.testlink.result.ResultSeekerException;
 import hudson.plugins.testlink.result.TestCaseWrapper;
 import hudson.plugins.testlink.util.Messages;
+import hudson.plugins.testlink.util.ParsedResultCache;
+import hudson.plugins.testlink.util.TestCaseBudget;
+import hudson.plugins.testlink.util.TestCaseDurations;
+import hudson.plugins.testlink.util.TestCaseHistory;
+import hudson.plugins.testlink.util.TestCaseImpactIndex;
+import hudson.plugins.testlink.util.TestCaseOrder;
+import hudson.plugins.testlink.util.TestLinkEnvironmentTemplate;
 import hudson.plugins.testlink.util.TestLinkHelper;
+import hudson.scm.ChangeLogSet;
 import hudson.tasks.BuildStep;
+import hudson.tasks.CommandInterpreter;
+import hudson.util.DaemonThreadFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
@@ -70,13 +95,28 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 
 	private static final Logger LOGGER = Logger.getLogger("hudson.plugins.testlink");
 
+	/**
+	 * Directory of the build where test case notes too big to be sent to
+	 * TestLink are written.
+	 */
+	private static final String NOTES_DIRECTORY = "testlink-notes";
+
+	/**
+	 * Directory of the workspace where the batch manifest files are written.
+	 */
+	private static final String BATCH_DIRECTORY = "testlink-batches";
+
 	/**
 	 * The Descriptor of this Builder. It contains the TestLink installation.
 	 */
 	@Extension
 	public static final TestLinkBuilderDescriptor DESCRIPTOR = new TestLinkBuilderDescriptor();
 
-	@DataBoundConstructor
+	/**
+	 * @deprecated since 3.1.9, use the {@link DataBoundConstructor} 
+	 * constructor, that has all the options
+	 */
+	@Deprecated
 	public TestLinkBuilder(String testLinkName, String testProjectName,
 			String testPlanName, String buildName, String customFields,
 			List<BuildStep> singleBuildSteps,
@@ -85,11 +125,41 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 			List<BuildStep> afterIteratingAllTestCasesBuildSteps,
 			Boolean transactional, Boolean failedTestsMarkBuildAsFailure,
 			Boolean failIfNoResults, List<ResultSeeker> resultSeekers) {
+		this(testLinkName, testProjectName, testPlanName, buildName,
+				customFields, singleBuildSteps,
+				beforeIteratingAllTestCasesBuildSteps, iterativeBuildSteps,
+				afterIteratingAllTestCasesBuildSteps, transactional,
+				failedTestsMarkBuildAsFailure, failIfNoResults, 
+				Boolean.FALSE, Boolean.FALSE, null, null, null, null, 
+				null, null, null, null, null, null, null, resultSeekers);
+	}
+
+	@DataBoundConstructor
+	public TestLinkBuilder(String testLinkName, String testProjectName,
+			String testPlanName, String buildName, String customFields,
+			List<BuildStep> singleBuildSteps,
+			List<BuildStep> beforeIteratingAllTestCasesBuildSteps,
+			List<BuildStep> iterativeBuildSteps,
+			List<BuildStep> afterIteratingAllTestCasesBuildSteps,
+			Boolean transactional, Boolean failedTestsMarkBuildAsFailure,
+			Boolean failIfNoResults, Boolean ignoreUnchangedResultFiles, 
+			Boolean parallelSeekers, Integer parallelIterations, 
+			String shardLabel, Integer batchSize, String runnerCommand, 
+			Integer runnerTimeout, 
+			Boolean onlyUsedEnvironmentVariables, Integer timeBudget, 
+			String testCaseOrder, Boolean failFast, 
+			String impactCustomField, Integer notesMaxSize, 
+			List<ResultSeeker> resultSeekers) {
 		super(testLinkName, testProjectName, testPlanName, buildName,
 				customFields, singleBuildSteps,
 				beforeIteratingAllTestCasesBuildSteps, iterativeBuildSteps,
 				afterIteratingAllTestCasesBuildSteps, transactional,
-				failedTestsMarkBuildAsFailure, failIfNoResults, resultSeekers);
+				failedTestsMarkBuildAsFailure, failIfNoResults, 
+				ignoreUnchangedResultFiles, parallelSeekers, 
+				parallelIterations, shardLabel, batchSize, runnerCommand, 
+				runnerTimeout, onlyUsedEnvironmentVariables, timeBudget, 
+				testCaseOrder, failFast, impactCustomField, notesMaxSize, 
+				resultSeekers);
 	}
 
 	/**
@@ -114,7 +184,7 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 		TestLinkHelper.setTestLinkJavaAPIProperties(installation.getTestLinkJavaAPIProperties(), listener);
 
 		final TestLinkSite testLinkSite;
-		final TestCaseWrapper[] automatedTestCases;
+		TestCaseWrapper[] automatedTestCases;
 		final String testLinkUrl = installation.getUrl();
 		final String testLinkDevKey = installation.getDevKey();
 		listener.getLogger().println(Messages.TestLinkBuilder_UsedTLURL(testLinkUrl));
@@ -135,7 +205,11 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 			}
 			// TestLink Site object
 			testLinkSite = this.getTestLinkSite(testLinkUrl, testLinkDevKey, testProjectName, testPlanName, buildName, buildNotes);
-			final String[] customFieldsNames = this.createArrayOfCustomFieldsNames(build.getBuildVariableResolver(), build.getEnvironment(listener));
+			String[] customFieldsNames = this.createArrayOfCustomFieldsNames(build.getBuildVariableResolver(), build.getEnvironment(listener));
+			// The impact custom field is retrieved even if not listed
+			if (StringUtils.isNotBlank(this.getImpactCustomField()) && !Arrays.asList(customFieldsNames).contains(this.getImpactCustomField())) {
+				customFieldsNames = (String[]) ArrayUtils.add(customFieldsNames, this.getImpactCustomField());
+			}
 			// Array of automated test cases
 			TestCase[] testCases = testLinkSite.getAutomatedTestCases(customFieldsNames);
 
@@ -144,6 +218,14 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 
 			testCases = null;
 
+			final File notesDirectory = new File(build.getRootDir(), NOTES_DIRECTORY);
+			for (int i = 0; i < automatedTestCases.length; ++i) {
+				if (this.getNotesMaxSize() != null && this.getNotesMaxSize() > 0) {
+					automatedTestCases[i].setNotesMaxSize(this.getNotesMaxSize());
+				}
+				automatedTestCases[i].setNotesSpillFile(new File(notesDirectory, "notes-" + i + "-" + automatedTestCases[i].getId() + ".txt"));
+			}
+
 			listener.getLogger().println(Messages.TestLinkBuilder_ShowFoundAutomatedTestCases(automatedTestCases.length));
 
 			// Sorts test cases by each execution order (this info comes from
@@ -164,11 +246,42 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 			}
 		}
 
+		// The test cases of the test plan, before any of them is left out
+		final TestCaseWrapper[] testPlanTestCases = automatedTestCases.clone();
+		final TestLinkBuildAction previousBuildAction = this.getPreviousBuildAction(build);
+		final TestCaseDurations testCaseDurations = new TestCaseDurations(previousBuildAction != null ? previousBuildAction.getTestCaseDurations() : null);
+		final TestCaseHistory testCaseHistory = new TestCaseHistory(previousBuildAction != null ? previousBuildAction.getTestCaseHistory() : null);
+		final List<TestCaseWrapper> leftOutTestCases = new ArrayList<TestCaseWrapper>();
+		final TestCaseImpactIndex testCaseImpactIndex;
+		if (StringUtils.isNotBlank(this.getImpactCustomField())) {
+			testCaseImpactIndex = new TestCaseImpactIndex(previousBuildAction != null ? previousBuildAction.getTestCaseImpactIndex() : null);
+			automatedTestCases = this.selectImpactedTestCases(automatedTestCases, build, listener, testCaseImpactIndex, leftOutTestCases);
+		} else {
+			testCaseImpactIndex = null;
+		}
+		final TestCaseBudget.Selection selection = this.selectTestCases(automatedTestCases, build, listener, testCaseDurations, testCaseHistory);
+		if (selection != null) {
+			automatedTestCases = selection.getSelected();
+			leftOutTestCases.addAll(selection.getLeftOut());
+		}
+		final TestCaseOrder testCaseOrder = TestCaseOrder.forName(this.getTestCaseOrder());
+		if (testCaseOrder != TestCaseOrder.EXECUTION_ORDER) {
+			listener.getLogger().println(Messages.TestLinkBuilder_OrderingTestCases(testCaseOrder.getDisplayName()));
+			testCaseOrder.sort(automatedTestCases, testCaseHistory);
+		}
+
 		listener.getLogger().println(Messages.TestLinkBuilder_ExecutingSingleBuildSteps());
 		this.executeSingleBuildSteps(build, launcher, listener);
 
 		listener.getLogger().println(Messages.TestLinkBuilder_ExecutingIterativeBuildSteps());
-		this.executeIterativeBuildSteps(automatedTestCases, testLinkSite, build, launcher, listener);
+		// The results answered by a test runner and the ones found by the 
+		// seekers are only recorded, and each test case is reported once, 
+		// after all the seekers ran
+		testLinkSite.setDeferred(true);
+		this.executeIterativeBuildSteps(automatedTestCases, testLinkSite, build, launcher, listener, testCaseDurations);
+		if (this.failure && this.isFailFast()) {
+			automatedTestCases = this.blockNotExecutedTestCases(automatedTestCases, testLinkSite, build, listener);
+		}
 
 		// Here we search for test results. The return if a wrapped Test Case
 		// that
@@ -176,39 +289,63 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 		try {
 			listener.getLogger().println(Messages.Results_LookingForTestResults());
 
+			final ResultFileTracker resultFiles = this.isIgnoreUnchangedResultFiles() ? new ResultFileTracker(ResultFileManifest.loadPrevious(build)) : null;
 			if(getResultSeekers() != null) {
-				for (ResultSeeker resultSeeker : getResultSeekers()) {
-					LOGGER.log(Level.INFO, "Seeking test results. Using: " + resultSeeker.getDescriptor().getDisplayName());
-					resultSeeker.seek(automatedTestCases, build, launcher, listener, testLinkSite);
+				if (this.isParallelSeekers() && getResultSeekers().size() > 1) {
+					this.seekInParallel(automatedTestCases, build, launcher, listener, testLinkSite, resultFiles);
+				} else {
+					for (ResultSeeker resultSeeker : getResultSeekers()) {
+						this.seek(resultSeeker, automatedTestCases, build, launcher, listener, testLinkSite, resultFiles);
+					}
 				}
 			}
+			// A test case that could not be reported does not abort the build, 
+			// so the durations, history and impact index are still recorded below
+			final int failedToReport = testLinkSite.commit(listener.getLogger());
+			if(failedToReport > 0) {
+				listener.getLogger().println(Messages.TestLinkBuilder_CommitFailures(failedToReport));
+				build.setResult(Result.UNSTABLE);
+			} else if(resultFiles != null) {
+				// only once all the results were reported, otherwise the 
+				// next build would skip the files of the missing results
+				this.recordResultFiles(build, listener, resultFiles);
+			}
 		} catch (ResultSeekerException trse) {
 			trse.printStackTrace(listener.fatalError(trse.getMessage()));
 			throw new AbortException(Messages.Results_ErrorToLookForTestResults(trse.getMessage()));
 		} catch (TestLinkAPIException tlae) {
 			tlae.printStackTrace(listener.fatalError(tlae.getMessage()));
 			throw new AbortException(Messages.TestLinkBuilder_FailedToUpdateTL(tlae.getMessage()));
+		} finally {
+			testLinkSite.setDeferred(false);
+			this.clearParsedResultCache(build, listener);
 		}
 
 		// This report is used to generate the graphs and to store the list of
 		// test cases with each found status.
 		final Report report = testLinkSite.getReport();
+		// TestLink has no result for test cases that did not run, so they 
+		// are only counted in the report of the build
+		for (TestCaseWrapper leftOut : leftOutTestCases) {
+			report.addTestCase(leftOut);
+			report.incrementNotRun();
+		}
 
-		listener.getLogger().println(Messages.TestLinkBuilder_ShowFoundTestResults(report.getTestsTotal()));
+		listener.getLogger().println(Messages.TestLinkBuilder_ShowFoundTestResults(report.getTestsFound()));
 
 		final TestLinkResult result = new TestLinkResult(report, build);
 		final TestLinkBuildAction buildAction = new TestLinkBuildAction(build, result);
+		buildAction.setTestCaseDurations(testCaseDurations.toMap(testPlanTestCases));
+		testCaseHistory.record(build.getNumber(), report.getTestCases());
+		buildAction.setTestCaseHistory(testCaseHistory.toMap());
+		if (testCaseImpactIndex != null) {
+			buildAction.setTestCaseImpactIndex(testCaseImpactIndex.toMap());
+		}
 		build.addAction(buildAction);
 
-		if(report.getTestsTotal() <= 0 && this.getFailIfNoResults() == Boolean.TRUE) {
-			listener.getLogger().println("No test results found. Setting the build result as FAILURE.");
-			build.setResult(Result.FAILURE);
-		} else if (report.getFailed() > 0) {
-			if (this.failedTestsMarkBuildAsFailure != null && this.failedTestsMarkBuildAsFailure) {
-				build.setResult(Result.FAILURE);
-			} else {
-				build.setResult(Result.UNSTABLE);
-			}
+		final Result buildResult = this.getBuildResult(report, listener.getLogger());
+		if (buildResult != null) {
+			build.setResult(buildResult);
 		}
 
 		LOGGER.log(Level.INFO, "TestLink builder finished");
@@ -217,6 +354,162 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 		return Boolean.TRUE;
 	}
 
+	/**
+	 * @return whether the iteration stops at the first failure
+	 */
+	private boolean isFailFast() {
+		return this.getFailFast() != null && this.getFailFast() 
+				&& this.getTransactional() != null && this.getTransactional();
+	}
+
+	/**
+	 * Reports the test cases blocked after the first failure as BLOCKED, 
+	 * and leaves them out of the result seeking, as there are no results 
+	 * for them. They are reported as soon as the iteration stops, and not 
+	 * with the other results, so TestLink shows why the run stopped even 
+	 * if the result seeking fails later.
+	 *
+	 * @param automatedTestCases array of automated test cases
+	 * @param testLinkSite The TestLink Site object
+	 * @param build Jenkins build
+	 * @param listener Jenkins build listener
+	 * @return test cases executed, where the result seekers look for results
+	 */
+	private TestCaseWrapper[] blockNotExecutedTestCases(TestCaseWrapper[] automatedTestCases, 
+			TestLinkSite testLinkSite, AbstractBuild<?, ?> build, BuildListener listener) {
+		final List<TestCaseWrapper> executed = new ArrayList<TestCaseWrapper>(automatedTestCases.length);
+		final List<TestCaseWrapper> blocked = new ArrayList<TestCaseWrapper>();
+		for (TestCaseWrapper automatedTestCase : automatedTestCases) {
+			// Test cases answered by a test runner are already recorded
+			if (automatedTestCase.getExecutionStatus() == ExecutionStatus.BLOCKED && !testLinkSite.isPending(automatedTestCase)) {
+				automatedTestCase.appendNotes(Messages.TestLinkBuilder_FailFastBlocked());
+				testLinkSite.updateTestCase(automatedTestCase);
+				blocked.add(automatedTestCase);
+			} else {
+				executed.add(automatedTestCase);
+			}
+		}
+		listener.getLogger().println(Messages.TestLinkBuilder_FailFast(blocked.size()));
+		final int failedToReport = testLinkSite.commit(blocked, listener.getLogger());
+		if (failedToReport > 0) {
+			listener.getLogger().println(Messages.TestLinkBuilder_CommitFailures(failedToReport));
+			build.setResult(Result.UNSTABLE);
+		}
+		return executed.toArray(new TestCaseWrapper[executed.size()]);
+	}
+
+	/**
+	 * @return whether the result seekers run concurrently
+	 */
+	private boolean isParallelSeekers() {
+		return this.getParallelSeekers() != null && this.getParallelSeekers();
+	}
+
+	/**
+	 * Runs a result seeker, logging how long it took.
+	 *
+	 * @param resultSeeker result seeker
+	 * @param automatedTestCases automated test cases
+	 * @param build Jenkins build
+	 * @param launcher Jenkins launcher
+	 * @param listener Jenkins build listener
+	 * @param testLinkSite TestLink site
+	 * @param resultFiles result files of the build, or <code>null</code>
+	 * @throws ResultSeekerException
+	 */
+	private void seek(ResultSeeker resultSeeker, TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testLinkSite, ResultFileTracker resultFiles) throws ResultSeekerException {
+		final String displayName = resultSeeker.getDescriptor().getDisplayName();
+		LOGGER.log(Level.INFO, "Seeking test results. Using: " + displayName);
+		final long start = System.currentTimeMillis();
+		resultSeeker.seek(automatedTestCases, build, launcher, listener, testLinkSite, resultFiles);
+		listener.getLogger().println(Messages.Results_SeekerFinished(displayName, System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * Runs the result seekers concurrently, one thread each, and waits for 
+	 * all of them. The first failure is rethrown.
+	 *
+	 * @param automatedTestCases automated test cases
+	 * @param build Jenkins build
+	 * @param launcher Jenkins launcher
+	 * @param listener Jenkins build listener
+	 * @param testLinkSite TestLink site
+	 * @param resultFiles result files of the build, or <code>null</code>
+	 * @throws ResultSeekerException
+	 * @throws InterruptedException
+	 */
+	private void seekInParallel(final TestCaseWrapper[] automatedTestCases, final AbstractBuild<?, ?> build, final Launcher launcher, final BuildListener listener, final TestLinkSite testLinkSite, final ResultFileTracker resultFiles) throws ResultSeekerException, InterruptedException {
+		final long start = System.currentTimeMillis();
+		final ExecutorService executor = Executors.newFixedThreadPool(getResultSeekers().size(), new DaemonThreadFactory());
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (final ResultSeeker resultSeeker : getResultSeekers()) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws ResultSeekerException {
+						TestLinkBuilder.this.seek(resultSeeker, automatedTestCases, build, launcher, listener, testLinkSite, resultFiles);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException ee) {
+					final Throwable cause = ee.getCause();
+					if (cause instanceof ResultSeekerException) {
+						throw (ResultSeekerException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new ResultSeekerException(cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		listener.getLogger().println(Messages.Results_SeekersFinished(getResultSeekers().size(), System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * @return whether result files not changed since the last build are ignored
+	 */
+	private boolean isIgnoreUnchangedResultFiles() {
+		return this.getIgnoreUnchangedResultFiles() != null && this.getIgnoreUnchangedResultFiles();
+	}
+
+	/**
+	 * Records the result files read by the result seekers in the build 
+	 * directory, so that the next builds can ignore them if they do not 
+	 * change.
+	 *
+	 * @param build Jenkins build
+	 * @param listener Jenkins build listener
+	 * @param resultFiles result files of the build
+	 * @throws IOException
+	 */
+	private void recordResultFiles(AbstractBuild<?, ?> build, BuildListener listener, ResultFileTracker resultFiles) throws IOException {
+		final ResultFileManifest readResultFiles = resultFiles.getReadResultFiles();
+		readResultFiles.save(new File(build.getRootDir(), ResultFileManifest.FILE_NAME));
+		listener.getLogger().println(Messages.Results_ResultFilesRecorded(readResultFiles.size()));
+	}
+
+	/**
+	 * Releases the result files parsed by the result seekers in this build.
+	 *
+	 * @param build Jenkins build
+	 * @param listener Jenkins build listener
+	 * @throws InterruptedException
+	 */
+	private void clearParsedResultCache(AbstractBuild<?, ?> build, BuildListener listener) throws InterruptedException {
+		try {
+			build.getWorkspace().act(new ParsedResultCache.ClearCallable(ParsedResultCache.getScope(build)));
+		} catch (IOException e) {
+			e.printStackTrace(listener.getLogger());
+		}
+	}
+
 	/**
 	 * @param testCases
 	 * @return
@@ -320,12 +613,16 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 	 *            The TestLink Site object
 	 * @param launcher
 	 * @param listener
+	 * @param testCaseDurations
+	 *            durations of the previous build, where the durations of 
+	 *            this build are recorded too
 	 * @throws InterruptedException
 	 * @throws IOException
 	 */
 	protected void executeIterativeBuildSteps(TestCaseWrapper[] automatedTestCases,
 			TestLinkSite testLinkSite, AbstractBuild<?, ?> build,
-			Launcher launcher, BuildListener listener) throws IOException,
+			Launcher launcher, BuildListener listener, 
+			TestCaseDurations testCaseDurations) throws IOException,
 			InterruptedException {
 
 		if (beforeIteratingAllTestCasesBuildSteps != null) {
@@ -337,37 +634,50 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 			}
 		}
 
-		for (TestCaseWrapper automatedTestCase : automatedTestCases) {
-			if (this.failure && this.transactional) {
-				automatedTestCase.setExecutionStatus(ExecutionStatus.BLOCKED);
-			} else {
-				if (iterativeBuildSteps != null) {
-					final EnvVars iterativeEnvVars = TestLinkHelper.buildTestCaseEnvVars(automatedTestCase,
-									testLinkSite.getTestProject(),
-									testLinkSite.getTestPlan(),
-									testLinkSite.getBuild(), listener);
-
-					build.addAction(new EnvironmentContributingAction() {
-						public void buildEnvVars(AbstractBuild<?, ?> build, EnvVars env) {
-							env.putAll(iterativeEnvVars);
-						}
-						public String getUrlName() {
-							return null;
-						}
-						public String getIconFileName() {
-							return null;
-						}
-						public String getDisplayName() {
-							return null;
-						}
-					});
-					for (BuildStep b : iterativeBuildSteps) {
-						final boolean success = b.perform(build, launcher, listener);
-						if (!success) {
-							this.failure = Boolean.TRUE;
+		final int threads = this.getIterationThreads(automatedTestCases.length);
+		if (StringUtils.isNotBlank(this.getRunnerCommand())) {
+			this.executeTestCasesInRunner(automatedTestCases, testLinkSite, build, launcher, listener, testCaseDurations);
+		} else if (StringUtils.isNotBlank(this.getShardLabel()) && iterativeBuildSteps != null && automatedTestCases.length > 0) {
+			this.executeIterativeBuildStepsInShards(automatedTestCases, testLinkSite, build, listener, testCaseDurations, this.createEnvironmentTemplate(listener));
+		} else if (this.getBatchSize() != null && this.getBatchSize() > 1 && iterativeBuildSteps != null) {
+			this.executeIterativeBuildStepsInBatches(this.getBatchSize(), automatedTestCases, testLinkSite, build, launcher, listener, testCaseDurations, this.createEnvironmentTemplate(listener));
+		} else if (threads > 1 && iterativeBuildSteps != null) {
+			listener.getLogger().println(Messages.TestLinkBuilder_ExecutingIterativeBuildStepsInParallel(automatedTestCases.length, threads));
+			this.executeIterativeBuildStepsInParallel(threads, automatedTestCases, testLinkSite, build, launcher, listener, testCaseDurations, this.createEnvironmentTemplate(listener));
+		} else {
+			// A single action contributes the variables of the test case 
+			// being iterated, and it is removed afterwards
+			final TestLinkEnvironmentTemplate environmentTemplate = this.createEnvironmentTemplate(listener);
+			final TestLinkEnvironmentAction environmentAction = new TestLinkEnvironmentAction();
+			build.addAction(environmentAction);
+			try {
+				for (TestCaseWrapper automatedTestCase : automatedTestCases) {
+					if (this.failure && this.transactional) {
+						automatedTestCase.setExecutionStatus(ExecutionStatus.BLOCKED);
+					} else {
+						if (iterativeBuildSteps != null) {
+							final EnvVars iterativeEnvVars = TestLinkHelper.buildTestCaseEnvVars(automatedTestCase,
+											testLinkSite.getTestProject(),
+											testLinkSite.getTestPlan(),
+											testLinkSite.getBuild(), listener, environmentTemplate);
+							environmentAction.setTestCaseEnvVars(iterativeEnvVars);
+							final long start = System.currentTimeMillis();
+							for (BuildStep b : iterativeBuildSteps) {
+								final boolean success = b.perform(build, launcher, listener);
+								if (!success) {
+									this.failure = Boolean.TRUE;
+								}
+								if (this.failure && this.isFailFast()) {
+									break;
+								}
+							}
+							testCaseDurations.record(automatedTestCase, System.currentTimeMillis() - start);
 						}
 					}
 				}
+			} finally {
+				environmentAction.setTestCaseEnvVars(null);
+				build.getActions().remove(environmentAction);
 			}
 		}
 
@@ -380,4 +690,500 @@ public class TestLinkBuilder extends AbstractTestLinkBuilder {
 			}
 		}
 	}
+
+	/**
+	 * Executes the iterative build steps in the online nodes matching the 
+	 * shard label, one shard of test cases per node. The shards are 
+	 * balanced using the durations of the previous build.
+	 *
+	 * @param automatedTestCases array of automated test cases
+	 * @param testLinkSite The TestLink Site object
+	 * @param build Jenkins build
+	 * @param listener Jenkins build listener
+	 * @param testCaseDurations test case durations
+	 * @param environmentTemplate environment variables of each test case
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void executeIterativeBuildStepsInShards(TestCaseWrapper[] automatedTestCases, 
+			TestLinkSite testLinkSite, AbstractBuild<?, ?> build, 
+			BuildListener listener, TestCaseDurations testCaseDurations, 
+			TestLinkEnvironmentTemplate environmentTemplate) throws IOException, InterruptedException {
+		final TestCaseShards testCaseShards = new TestCaseShards(build, listener, testLinkSite, 
+				iterativeBuildSteps, this.transactional != null && this.transactional, this.isFailFast(), testCaseDurations, 
+				environmentTemplate);
+		final List<Node> nodes = TestCaseShards.getNodes(this.getShardLabel());
+		final TestCaseDurations.Schedule schedule = testCaseDurations.schedule(automatedTestCases, Math.min(nodes.size(), automatedTestCases.length));
+		final List<List<TestCaseWrapper>> shards = schedule.getLanes();
+		listener.getLogger().println(Messages.TestLinkBuilder_ShardingTestCases(automatedTestCases.length, shards.size(), this.getShardLabel()));
+		this.printPredictedMakespan(schedule, listener);
+		final long start = System.currentTimeMillis();
+		final List<String> includePatterns = new ArrayList<String>();
+		if (getResultSeekers() != null) {
+			for (ResultSeeker resultSeeker : getResultSeekers()) {
+				includePatterns.add(resultSeeker.getIncludePattern());
+			}
+		}
+		try {
+			testCaseShards.execute(nodes.subList(0, shards.size()), shards, includePatterns);
+		} finally {
+			if (testCaseShards.isFailure()) {
+				this.failure = Boolean.TRUE;
+			}
+		}
+		listener.getLogger().println(Messages.TestLinkBuilder_ActualMakespan(System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * Gives the result of the build from the test results. The test cases 
+	 * left out by the time budget or the impact index are counted in the 
+	 * report, but they are not results: a build where all the test cases 
+	 * were left out has no test results.
+	 * 
+	 * @param report report of the build
+	 * @param logger logger of the build
+	 * @return result of the build, or <code>null</code> if the test results 
+	 * do not change it
+	 */
+	Result getBuildResult(Report report, PrintStream logger) {
+		if(report.getTestsFound() <= 0 && this.getFailIfNoResults() == Boolean.TRUE) {
+			logger.println("No test results found. Setting the build result as FAILURE.");
+			return Result.FAILURE;
+		} else if (report.getFailed() > 0) {
+			if (this.failedTestsMarkBuildAsFailure != null && this.failedTestsMarkBuildAsFailure) {
+				return Result.FAILURE;
+			} else {
+				return Result.UNSTABLE;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Executes the test cases in a test runner started once for all of them, 
+	 * instead of executing the iterative build steps. The status answered by 
+	 * the runner for each test case is recorded in the TestLink site, to be 
+	 * reported with the results found by the result seekers.
+	 * </p>
+	 *
+	 * <p>
+	 * A test case that fails, or that the runner does not answer because it 
+	 * exited, fails the build. In a transactional build, the test cases 
+	 * after it are marked as BLOCKED and not sent to the runner.
+	 * </p>
+	 *
+	 * <p>
+	 * If the runner does not answer a test case within the runner timeout, 
+	 * it is stopped. That test case, and all the ones after it, are marked 
+	 * as BLOCKED.
+	 * </p>
+	 *
+	 * <p>
+	 * Fail fast is honoured too: a test case is a single request to the 
+	 * runner, so there are no later build steps to skip, and no other test 
+	 * case is sent after the first failure. The blocked test cases are then 
+	 * reported as for the iterative build steps.
+	 * </p>
+	 *
+	 * @param automatedTestCases array of automated test cases
+	 * @param testLinkSite The TestLink Site object
+	 * @param build Jenkins build
+	 * @param launcher Jenkins launcher
+	 * @param listener Jenkins build listener
+	 * @param testCaseDurations test case durations
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @see TestCaseRunner
+	 */
+	private void executeTestCasesInRunner(TestCaseWrapper[] automatedTestCases, 
+			TestLinkSite testLinkSite, AbstractBuild<?, ?> build, 
+			Launcher launcher, BuildListener listener, 
+			TestCaseDurations testCaseDurations) throws IOException, InterruptedException {
+		final EnvVars buildEnvironment = build.getEnvironment(listener);
+		final String command = Util.replaceMacro(buildEnvironment.expand(this.getRunnerCommand()), build.getBuildVariableResolver());
+		final TestCaseRunner runner = new TestCaseRunner(command, launcher, build.getWorkspace(), buildEnvironment, this.getRunnerTimeout(), listener);
+		final TestLinkEnvironmentTemplate environmentTemplate = new TestLinkEnvironmentTemplate();
+		boolean closed = false;
+		try {
+			for (TestCaseWrapper automatedTestCase : automatedTestCases) {
+				if (this.failure && this.transactional) {
+					automatedTestCase.setExecutionStatus(ExecutionStatus.BLOCKED);
+					continue;
+				}
+				final Map<String, String> environment = environmentTemplate.createEnvironmentVariables(automatedTestCase, 
+						testLinkSite.getTestProject(), 
+						testLinkSite.getTestPlan(), 
+						testLinkSite.getBuild());
+				final long start = System.currentTimeMillis();
+				final ExecutionStatus status = runner.execute(automatedTestCase, environment);
+				if (status == null) {
+					automatedTestCase.setExecutionStatus(ExecutionStatus.BLOCKED);
+					automatedTestCase.appendNotes(runner.isTimedOut() ? Messages.TestLinkBuilder_RunnerTimedOutNotes() : Messages.TestLinkBuilder_RunnerExited());
+					this.failure = Boolean.TRUE;
+				} else {
+					testCaseDurations.record(automatedTestCase, System.currentTimeMillis() - start);
+					if (status != ExecutionStatus.PASSED) {
+						this.failure = Boolean.TRUE;
+					}
+				}
+				testLinkSite.updateTestCase(automatedTestCase);
+			}
+			if (runner.close() != 0) {
+				this.failure = Boolean.TRUE;
+			}
+			closed = true;
+		} finally {
+			if (!closed) {
+				runner.kill();
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Executes the iterative build steps once for each batch of test cases, 
+	 * in execution order. The build steps get the environment variables of 
+	 * all the test cases of the batch, indexed by their position in the 
+	 * batch, and the path of a manifest file with the same variables in 
+	 * TESTLINK_BATCH_FILE.
+	 * </p>
+	 *
+	 * <p>
+	 * In a transactional build, the test cases of the batches after a 
+	 * failed batch are marked as BLOCKED. The duration of a batch is split 
+	 * evenly between its test cases.
+	 * </p>
+	 *
+	 * @param batchSize maximum number of test cases in a batch
+	 * @param automatedTestCases array of automated test cases
+	 * @param testLinkSite The TestLink Site object
+	 * @param build Jenkins build
+	 * @param launcher Jenkins launcher
+	 * @param listener Jenkins build listener
+	 * @param testCaseDurations test case durations
+	 * @param environmentTemplate environment variables of each test case
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void executeIterativeBuildStepsInBatches(int batchSize, 
+			TestCaseWrapper[] automatedTestCases, TestLinkSite testLinkSite, 
+			AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, 
+			TestCaseDurations testCaseDurations, 
+			TestLinkEnvironmentTemplate environmentTemplate) throws IOException, InterruptedException {
+		final FilePath batchDirectory = build.getWorkspace().child(BATCH_DIRECTORY);
+		batchDirectory.deleteRecursive();
+		batchDirectory.mkdirs();
+		final TestLinkEnvironmentAction environmentAction = new TestLinkEnvironmentAction();
+		build.addAction(environmentAction);
+		try {
+			int batchNumber = 0;
+			for (int first = 0; first < automatedTestCases.length; first += batchSize) {
+				++batchNumber;
+				final List<TestCaseWrapper> batch = Arrays.asList(automatedTestCases).subList(first, Math.min(first + batchSize, automatedTestCases.length));
+				if (this.failure && this.transactional) {
+					for (TestCaseWrapper automatedTestCase : batch) {
+						automatedTestCase.setExecutionStatus(ExecutionStatus.BLOCKED);
+					}
+					continue;
+				}
+				final Map<String, String> batchEnvVars = TestLinkHelper.createBatchEnvironmentVariables(batch, batchNumber, 
+						testLinkSite.getTestProject(), 
+						testLinkSite.getTestPlan(), 
+						testLinkSite.getBuild(), environmentTemplate);
+				final FilePath manifest = batchDirectory.child("batch-" + batchNumber + ".properties");
+				manifest.write(TestLinkHelper.createBatchManifest(batchEnvVars), "UTF-8");
+				final EnvVars iterativeEnvVars = new EnvVars(batchEnvVars);
+				iterativeEnvVars.put(TestLinkHelper.TESTLINK_BATCH_FILE_ENVVAR, manifest.getRemote());
+				environmentAction.setTestCaseEnvVars(iterativeEnvVars);
+
+				listener.getLogger().println(Messages.TestLinkBuilder_ExecutingBatch(batchNumber, batch.size()));
+				final long start = System.currentTimeMillis();
+				for (BuildStep b : iterativeBuildSteps) {
+					final boolean success = b.perform(build, launcher, listener);
+					if (!success) {
+						this.failure = Boolean.TRUE;
+					}
+					if (this.failure && this.isFailFast()) {
+						break;
+					}
+				}
+				final long duration = System.currentTimeMillis() - start;
+				for (TestCaseWrapper automatedTestCase : batch) {
+					testCaseDurations.record(automatedTestCase, duration / batch.size());
+				}
+			}
+		} finally {
+			environmentAction.setTestCaseEnvVars(null);
+			build.getActions().remove(environmentAction);
+		}
+	}
+
+	/**
+	 * Selects the test cases impacted by the SCM changes of the build. The 
+	 * values of the impact custom field not indexed yet are looked up in the 
+	 * workspace, and the files added by the changes are indexed. A test 
+	 * case without values, or with a value that matches no source, is 
+	 * always executed.
+	 *
+	 * @param automatedTestCases array of automated test cases
+	 * @param build Jenkins build
+	 * @param listener Jenkins build listener
+	 * @param testCaseImpactIndex index of the previous build, updated
+	 * @param leftOutTestCases where the test cases not impacted are added
+	 * @return impacted test cases
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private TestCaseWrapper[] selectImpactedTestCases(TestCaseWrapper[] automatedTestCases, 
+			AbstractBuild<?, ?> build, BuildListener listener, 
+			TestCaseImpactIndex testCaseImpactIndex, List<TestCaseWrapper> leftOutTestCases) 
+			throws IOException, InterruptedException {
+		final String impactCustomField = this.getImpactCustomField();
+		final Set<String> values = new HashSet<String>();
+		for (TestCaseWrapper automatedTestCase : automatedTestCases) {
+			values.addAll(Arrays.asList(automatedTestCase.getKeyCustomFieldValues(impactCustomField)));
+		}
+		final Set<String> missingValues = testCaseImpactIndex.getMissingValues(values);
+		if (!missingValues.isEmpty()) {
+			listener.getLogger().println(Messages.TestLinkBuilder_ImpactIndexing(missingValues.size(), impactCustomField));
+			testCaseImpactIndex.addAll(build.getWorkspace().act(new TestCaseImpactIndex.ScanCallable(missingValues)));
+		}
+		final List<String> changedPaths = new ArrayList<String>();
+		for (ChangeLogSet.Entry entry : build.getChangeSet()) {
+			changedPaths.addAll(entry.getAffectedPaths());
+		}
+		testCaseImpactIndex.index(new ArrayList<String>(testCaseImpactIndex.getValues()), changedPaths);
+
+		if (Boolean.parseBoolean(build.getEnvironment(listener).get(TestCaseImpactIndex.FULL_RUN_VARIABLE))) {
+			listener.getLogger().println(Messages.TestLinkBuilder_ImpactFullRun(TestCaseImpactIndex.FULL_RUN_VARIABLE));
+			return automatedTestCases;
+		}
+		if (changedPaths.isEmpty()) {
+			listener.getLogger().println(Messages.TestLinkBuilder_ImpactNoChanges());
+			return automatedTestCases;
+		}
+		final Set<String> impactedValues = testCaseImpactIndex.getImpactedValues(changedPaths);
+		final List<TestCaseWrapper> impacted = new ArrayList<TestCaseWrapper>(automatedTestCases.length);
+		for (TestCaseWrapper automatedTestCase : automatedTestCases) {
+			final String[] testCaseValues = automatedTestCase.getKeyCustomFieldValues(impactCustomField);
+			boolean execute = testCaseValues.length == 0;
+			for (String value : testCaseValues) {
+				if (!testCaseImpactIndex.isMapped(value) || impactedValues.contains(value)) {
+					execute = true;
+					break;
+				}
+			}
+			if (execute) {
+				impacted.add(automatedTestCase);
+			} else {
+				listener.getLogger().println(Messages.TestLinkBuilder_ImpactLeftOut(automatedTestCase.getId(), automatedTestCase.getName()));
+				leftOutTestCases.add(automatedTestCase);
+			}
+		}
+		listener.getLogger().println(Messages.TestLinkBuilder_ImpactSelected(impacted.size(), automatedTestCases.length, changedPaths.size()));
+		return impacted.toArray(new TestCaseWrapper[impacted.size()]);
+	}
+
+	/**
+	 * Selects the test cases that fit in the time budget, if there is one.
+	 *
+	 * @param automatedTestCases array of automated test cases
+	 * @param build Jenkins build
+	 * @param listener Jenkins build listener
+	 * @param testCaseDurations durations of the previous builds
+	 * @param testCaseHistory history of the previous builds
+	 * @return selected test cases, or <code>null</code> if all of them are 
+	 * executed
+	 */
+	private TestCaseBudget.Selection selectTestCases(TestCaseWrapper[] automatedTestCases, 
+			AbstractBuild<?, ?> build, BuildListener listener, 
+			TestCaseDurations testCaseDurations, TestCaseHistory testCaseHistory) {
+		final Integer timeBudget = this.getTimeBudget();
+		if (timeBudget == null || timeBudget <= 0) {
+			return null;
+		}
+		final TestCaseBudget testCaseBudget = new TestCaseBudget(testCaseDurations, testCaseHistory, build.getNumber());
+		final TestCaseBudget.Selection selection = testCaseBudget.select(automatedTestCases, timeBudget * 60000L);
+		if (selection.getEstimatedDuration() < 0) {
+			listener.getLogger().println(Messages.TestLinkBuilder_NoDurationHistoryForTimeBudget(timeBudget));
+			return null;
+		}
+		for (TestCaseWrapper leftOut : selection.getLeftOut()) {
+			listener.getLogger().println(Messages.TestLinkBuilder_TestCaseLeftOut(leftOut.getId(), leftOut.getName()));
+		}
+		listener.getLogger().println(Messages.TestLinkBuilder_SelectedTestCases(selection.getSelected().length, 
+				automatedTestCases.length, timeBudget, selection.getEstimatedDuration()));
+		return selection;
+	}
+
+	/**
+	 * Creates the template of the environment variables of the test cases. 
+	 * If only the used variables are wanted, the template is restricted to 
+	 * the variables found in the commands of the iterative build steps. 
+	 * Other build steps do not have commands, so if there is any, all the 
+	 * variables are created.
+	 *
+	 * @param listener Jenkins build listener
+	 * @return environment variables template
+	 */
+	private TestLinkEnvironmentTemplate createEnvironmentTemplate(BuildListener listener) {
+		if (this.getOnlyUsedEnvironmentVariables() == null || !this.getOnlyUsedEnvironmentVariables() || iterativeBuildSteps == null) {
+			return new TestLinkEnvironmentTemplate();
+		}
+		final List<String> commands = new ArrayList<String>(iterativeBuildSteps.size());
+		for (BuildStep b : iterativeBuildSteps) {
+			if (!(b instanceof CommandInterpreter)) {
+				listener.getLogger().println(Messages.TestLinkBuilder_AllEnvironmentVariables(b.getClass().getName()));
+				return new TestLinkEnvironmentTemplate();
+			}
+			commands.add(((CommandInterpreter) b).getCommand());
+		}
+		listener.getLogger().println(Messages.TestLinkBuilder_OnlyUsedEnvironmentVariables());
+		return new TestLinkEnvironmentTemplate(commands);
+	}
+
+	/**
+	 * Prints how long iterating the test cases should take.
+	 *
+	 * @param schedule test cases balanced between lanes
+	 * @param listener Jenkins build listener
+	 */
+	private void printPredictedMakespan(TestCaseDurations.Schedule schedule, BuildListener listener) {
+		if (schedule.getPredictedMakespan() < 0) {
+			listener.getLogger().println(Messages.TestLinkBuilder_NoDurationHistory());
+		} else {
+			listener.getLogger().println(Messages.TestLinkBuilder_PredictedMakespan(schedule.getPredictedMakespan(), schedule.getTestCasesWithHistory()));
+		}
+	}
+
+	/**
+	 * Returns the action of the last build that ran this builder, where the 
+	 * test case durations and history were recorded.
+	 *
+	 * @param build Jenkins build
+	 * @return previous build action, or <code>null</code>
+	 */
+	private TestLinkBuildAction getPreviousBuildAction(AbstractBuild<?, ?> build) {
+		AbstractBuild<?, ?> previousBuild = build.getPreviousBuild();
+		while (previousBuild != null) {
+			final TestLinkBuildAction previousAction = previousBuild.getAction(TestLinkBuildAction.class);
+			if (previousAction != null) {
+				return previousAction;
+			}
+			previousBuild = previousBuild.getPreviousBuild();
+		}
+		return null;
+	}
+
+	/**
+	 * @param testCases number of automated test cases
+	 * @return number of test cases iterated at the same time, never more 
+	 * than the number of test cases
+	 */
+	private int getIterationThreads(int testCases) {
+		final Integer parallelIterations = this.getParallelIterations();
+		if (parallelIterations == null || parallelIterations <= 1) {
+			return 1;
+		}
+		return Math.min(parallelIterations, testCases);
+	}
+
+	/**
+	 * <p>
+	 * Executes the iterative build steps of several test cases at the same 
+	 * time, each one with its own environment variables. The test cases that 
+	 * took longest in the previous build are started first, and the test 
+	 * cases without history keep their execution order. When the test cases 
+	 * were sorted by a {@link TestCaseOrder} other than the execution order, 
+	 * they are started in that order instead.
+	 * </p>
+	 *
+	 * <p>
+	 * In a transactional build, the test cases not started yet when a build 
+	 * step fails are marked as BLOCKED. The test cases already started are 
+	 * not interrupted.
+	 * </p>
+	 *
+	 * @param threads number of test cases iterated at the same time
+	 * @param automatedTestCases array of automated test cases
+	 * @param testLinkSite The TestLink Site object
+	 * @param build Jenkins build
+	 * @param launcher Jenkins launcher
+	 * @param listener Jenkins build listener
+	 * @param testCaseDurations test case durations
+	 * @param environmentTemplate environment variables of each test case
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void executeIterativeBuildStepsInParallel(int threads, 
+			TestCaseWrapper[] automatedTestCases, final TestLinkSite testLinkSite, 
+			final AbstractBuild<?, ?> build, final Launcher launcher, 
+			final BuildListener listener, final TestCaseDurations testCaseDurations, 
+			final TestLinkEnvironmentTemplate environmentTemplate) throws IOException, InterruptedException {
+		final boolean keepOrder = TestCaseOrder.forName(this.getTestCaseOrder()) != TestCaseOrder.EXECUTION_ORDER;
+		if (keepOrder) {
+			listener.getLogger().println(Messages.TestLinkBuilder_ParallelIterationsKeepOrder());
+		}
+		final TestCaseDurations.Schedule schedule = testCaseDurations.schedule(automatedTestCases, threads, keepOrder);
+		this.printPredictedMakespan(schedule, listener);
+		final long start = System.currentTimeMillis();
+		final TestLinkEnvironmentAction environmentAction = new TestLinkEnvironmentAction();
+		build.addAction(environmentAction);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>(automatedTestCases.length);
+			for (final TestCaseWrapper automatedTestCase : schedule.getOrder()) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException, InterruptedException {
+						if (TestLinkBuilder.this.failure && TestLinkBuilder.this.transactional) {
+							automatedTestCase.setExecutionStatus(ExecutionStatus.BLOCKED);
+							return null;
+						}
+						environmentAction.setTestCaseEnvVars(TestLinkHelper.buildTestCaseEnvVars(automatedTestCase,
+								testLinkSite.getTestProject(),
+								testLinkSite.getTestPlan(),
+								testLinkSite.getBuild(), listener, environmentTemplate));
+						final long testCaseStart = System.currentTimeMillis();
+						try {
+							for (BuildStep b : iterativeBuildSteps) {
+								final boolean success = b.perform(build, launcher, listener);
+								if (!success) {
+									TestLinkBuilder.this.failure = Boolean.TRUE;
+								}
+								if (TestLinkBuilder.this.failure && TestLinkBuilder.this.isFailFast()) {
+									break;
+								}
+							}
+						} finally {
+							environmentAction.setTestCaseEnvVars(null);
+						}
+						testCaseDurations.record(automatedTestCase, System.currentTimeMillis() - testCaseStart);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException ee) {
+					final Throwable cause = ee.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					} else if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new IOException(cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			build.getActions().remove(environmentAction);
+		}
+		listener.getLogger().println(Messages.TestLinkBuilder_ActualMakespan(System.currentTimeMillis() - start));
+	}
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import hudson.model.Descriptor;
 import hudson.model.FreeStyleProject;
 import hudson.plugins.testlink.result.ResultSeeker;
 import hudson.plugins.testlink.util.Messages;
+import hudson.plugins.testlink.util.TestCaseOrder;
 import hudson.tasks.BuildStep;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
@@ -76,6 +77,13 @@ public class TestLinkBuilderDescriptor extends BuildStepDescriptor<Builder> {
 		return this.installations;
 	}
 
+	/**
+	 * @return Orders in which the test cases can be executed
+	 */
+	public TestCaseOrder[] getTestCaseOrders() {
+		return TestCaseOrder.values();
+	}
+
 	public TestLinkInstallation getInstallationByTestLinkName(
 			String testLinkName) {
 		TestLinkInstallation installation = null;
@@ -0,0 +1,88 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink;
+
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.EnvironmentContributingAction;
+import hudson.model.InvisibleAction;
+
+/**
+ * <p>
+ * Contributes the environment variables of the test case being iterated. The 
+ * variables are kept per thread, so that test cases iterated at the same 
+ * time by different threads only see their own variables.
+ * </p>
+ * 
+ * <p>
+ * A single action is added to the build for all the iterations, and the 
+ * variables are swapped for each test case. Adding one action per test case 
+ * would make every later call to getEnvironment replay all of them, and 
+ * would fill build.xml. The variables are transient, and the action is 
+ * removed from the build once the iterations finish.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestLinkEnvironmentAction 
+extends InvisibleAction 
+implements EnvironmentContributingAction {
+
+	/**
+	 * Environment variables of the test case iterated by each thread.
+	 */
+	private transient ThreadLocal<EnvVars> testCaseEnvVars = new ThreadLocal<EnvVars>();
+
+	/**
+	 * Sets the environment variables contributed to the build steps executed 
+	 * by the current thread.
+	 * 
+	 * @param envVars test case environment variables, or <code>null</code> 
+	 * to contribute nothing
+	 */
+	public void setTestCaseEnvVars(EnvVars envVars) {
+		if (envVars == null) {
+			this.testCaseEnvVars.remove();
+		} else {
+			this.testCaseEnvVars.set(envVars);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see hudson.model.EnvironmentContributingAction#buildEnvVars(hudson.model.AbstractBuild, hudson.EnvVars)
+	 */
+	public void buildEnvVars(AbstractBuild<?, ?> build, EnvVars env) {
+		final EnvVars envVars = this.testCaseEnvVars.get();
+		if (envVars != null) {
+			env.putAll(envVars);
+		}
+	}
+
+	private Object readResolve() {
+		this.testCaseEnvVars = new ThreadLocal<EnvVars>();
+		return this;
+	}
+
+}
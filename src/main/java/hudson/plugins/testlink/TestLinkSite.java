@@ -23,7 +23,28 @@
  */
 package hudson.plugins.testlink;
 
+import hudson.FilePath;
+import hudson.FilePath.FileCallable;
 import hudson.plugins.testlink.result.TestCaseWrapper;
+import hudson.plugins.testlink.util.Messages;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
 import br.eti.kinoshita.testlinkjavaapi.TestLinkAPI;
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionType;
@@ -35,6 +56,7 @@ import br.eti.kinoshita.testlinkjavaapi.model.ReportTCResultResponse;
 import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
 import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
 import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
+import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
 
 /**
  * Immutable object that represents the TestLink site with a Test Project,
@@ -52,6 +74,15 @@ public class TestLinkSite
 	protected final Build build;
 	protected final Report report;
 
+	/**
+	 * Test cases waiting to be reported, when reporting is deferred. The
+	 * execution ID returned for a deferred test case is its position in
+	 * this list plus one. The test cases already reported leave a
+	 * <code>null</code> slot.
+	 */
+	private List<PendingExecution> pendingExecutions;
+	private Map<TestCaseWrapper, PendingExecution> pendingTestCases;
+
 	/**
 	 * @param api TestLink Java API object
 	 * @param testProject TestLink Test Project
@@ -156,17 +187,246 @@ public class TestLinkSite
 		return testCases;
 	}
 
+	/**
+	 * Defers reporting the test cases to TestLink until {@link #commit()} is
+	 * called. Then each test case is reported once, with the worst status
+	 * and all the notes and attachments found for it.
+	 *
+	 * @param deferred whether reporting is deferred
+	 * @since 3.1.9
+	 */
+	public synchronized void setDeferred( boolean deferred )
+	{
+		if ( deferred && this.pendingExecutions == null )
+		{
+			this.pendingExecutions = new ArrayList<PendingExecution>();
+			this.pendingTestCases = new LinkedHashMap<TestCaseWrapper, PendingExecution>();
+		}
+		else if ( !deferred )
+		{
+			this.pendingExecutions = null;
+			this.pendingTestCases = null;
+		}
+	}
+
+	/**
+	 * @return whether reporting is deferred
+	 * @since 3.1.9
+	 */
+	public synchronized boolean isDeferred()
+	{
+		return this.pendingExecutions != null;
+	}
+
+	/**
+	 * @param testCase Test Case
+	 * @return whether the test case is recorded to be reported on commit
+	 * @since 3.1.9
+	 */
+	public synchronized boolean isPending( TestCaseWrapper testCase )
+	{
+		return this.pendingTestCases != null && this.pendingTestCases.containsKey(testCase);
+	}
+
+	/**
+	 * Reports the deferred test cases to TestLink, once each, and uploads
+	 * their attachments. A test case that TestLink fails to report is
+	 * logged and counted, and the others are still reported.
+	 *
+	 * @param logger logger of the build
+	 * @return number of test cases that could not be reported
+	 * @since 3.1.9
+	 */
+	public synchronized int commit( PrintStream logger )
+	{
+		if ( this.pendingExecutions == null )
+		{
+			return 0;
+		}
+		final List<PendingExecution> executions = this.pendingExecutions;
+		this.pendingExecutions = new ArrayList<PendingExecution>();
+		this.pendingTestCases = new LinkedHashMap<TestCaseWrapper, PendingExecution>();
+		return this.report(executions, logger);
+	}
+
+	/**
+	 * Reports some of the deferred test cases to TestLink now, e.g. the test
+	 * cases blocked when the iteration stopped, and leaves the others
+	 * deferred. A test case reported here is recorded again if updated
+	 * later.
+	 *
+	 * @param testCases Test Cases to report
+	 * @param logger logger of the build
+	 * @return number of test cases that could not be reported
+	 * @since 3.1.9
+	 */
+	public synchronized int commit( Collection<TestCaseWrapper> testCases, PrintStream logger )
+	{
+		if ( this.pendingExecutions == null )
+		{
+			return 0;
+		}
+		final List<PendingExecution> executions = new ArrayList<PendingExecution>();
+		for ( TestCaseWrapper testCase : testCases )
+		{
+			final PendingExecution execution = this.pendingTestCases.remove(testCase);
+			if ( execution != null )
+			{
+				// the slot is kept, so the other execution IDs do not change
+				this.pendingExecutions.set(execution.executionId - 1, null);
+				executions.add(execution);
+			}
+		}
+		return this.report(executions, logger);
+	}
+
+	/**
+	 * Reports pending executions, each one on its own.
+	 *
+	 * @return number of executions that could not be reported
+	 */
+	private int report( List<PendingExecution> executions, PrintStream logger )
+	{
+		int reported = 0;
+		int failures = 0;
+		for ( PendingExecution execution : executions )
+		{
+			if ( execution == null )
+			{
+				// already reported
+				continue;
+			}
+			final TestCaseWrapper testCase = execution.testCase;
+			try
+			{
+				final int executionId = this.reportTestCase(testCase, execution.status);
+				if ( executionId > 0 )
+				{
+					for ( PendingAttachment attachment : execution.attachments )
+					{
+						this.uploadPendingAttachment(executionId, attachment, logger);
+					}
+				}
+				reported++;
+			}
+			catch ( TestLinkAPIException tlae )
+			{
+				failures++;
+				logger.println(Messages.TestLinkBuilder_CommitFailed(testCase.getId(), testCase.getName(), tlae.getMessage()));
+				tlae.printStackTrace(logger);
+			}
+		}
+		logger.println(Messages.TestLinkBuilder_CommittedTestCases(reported));
+		return failures;
+	}
+
+	/**
+	 * Uploads an attachment recorded while reporting was deferred. A file
+	 * of the workspace is only read now, and its content is released once
+	 * uploaded. A file that cannot be read is logged and skipped.
+	 */
+	private void uploadPendingAttachment( int executionId, PendingAttachment pending, PrintStream logger )
+	{
+		final Attachment attachment = pending.attachment;
+		if ( pending.file != null )
+		{
+			try
+			{
+				attachment.setContent(readBase64Content(pending.file));
+			}
+			catch ( IOException e )
+			{
+				logger.println(Messages.TestLinkBuilder_AttachmentFailed(attachment.getFileName(), e.getMessage()));
+				return;
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				logger.println(Messages.TestLinkBuilder_AttachmentFailed(attachment.getFileName(), e.getMessage()));
+				return;
+			}
+		}
+		try
+		{
+			this.uploadExecutionAttachment(executionId, attachment);
+		}
+		finally
+		{
+			if ( pending.file != null )
+			{
+				attachment.setContent(null);
+			}
+		}
+	}
+
 	/**
 	 * Updates the test cases status in TestLink (note and status) and
-	 * uploads any existing attachments.
+	 * uploads any existing attachments. When reporting is deferred, the
+	 * test case is only recorded.
 	 *
 	 * @param testCases Test Cases
 	 */
 	public int updateTestCase( TestCaseWrapper testCase )
+	{
+		return this.updateTestCase(testCase, testCase.getExecutionStatus());
+	}
+
+	/**
+	 * Updates the test case in TestLink with the given status, instead of
+	 * the status last set in the test case, that result seekers running at
+	 * the same time may change. When reporting is deferred, the test case
+	 * is only recorded.
+	 *
+	 * @param testCase Test Case
+	 * @param status execution status computed for the test case
+	 * @return the execution ID, or a pseudo execution ID when deferred
+	 * @since 3.1.9
+	 */
+	public synchronized int updateTestCase( TestCaseWrapper testCase, ExecutionStatus status )
+	{
+		if ( this.pendingExecutions != null )
+		{
+			PendingExecution execution = this.pendingTestCases.get(testCase);
+			if ( execution == null )
+			{
+				execution = new PendingExecution(testCase, this.pendingExecutions.size() + 1);
+				this.pendingExecutions.add(execution);
+				this.pendingTestCases.put(testCase, execution);
+			}
+			execution.status = TestCaseWrapper.worstOf(execution.status, status);
+			return execution.executionId;
+		}
+		return this.reportTestCase(testCase, status);
+	}
+
+	/**
+	 * Reports the test case to TestLink with the given status. The status
+	 * is set in the test case, under its lock, so that the report gets it.
+	 *
+	 * @param testCase Test Case
+	 * @param status execution status
+	 * @return the execution ID
+	 */
+	private int reportTestCase( TestCaseWrapper testCase, ExecutionStatus status )
+	{
+		synchronized ( testCase )
+		{
+			testCase.setExecutionStatus(status);
+			return this.reportTestCase(testCase);
+		}
+	}
+
+	/**
+	 * Reports the test case status to TestLink.
+	 *
+	 * @param testCase Test Case
+	 * @return the execution ID
+	 */
+	protected int reportTestCase( TestCaseWrapper testCase )
 	{
 		int executionId = 0;
 
-		if ( testCase.getExecutionStatus() != null || testCase.getExecutionStatus() != ExecutionStatus.NOT_RUN )
+		if ( testCase.getExecutionStatus() != null && testCase.getExecutionStatus() != ExecutionStatus.NOT_RUN )
 		{
 			// Update Test Case status
 			final ReportTCResultResponse reportTCResultResponse = api.reportTCResult(
@@ -186,13 +446,13 @@ public class TestLinkSite
 
 			switch(testCase.getExecutionStatus()) {
 			case PASSED:
-				report.setPassed(report.getPassed()+1);
+				report.incrementPassed();
 				break;
 			case FAILED:
-				report.setFailed(report.getFailed()+1);
+				report.incrementFailed();
 				break;
 			case BLOCKED:
-				report.setBlocked(report.getBlocked()+1);
+				report.incrementBlocked();
 				break;
 			default:
 				break;
@@ -205,7 +465,74 @@ public class TestLinkSite
 		return executionId;
 	}
 
-	public void uploadAttachment(int executionId, Attachment attachment) {
+	public synchronized void uploadAttachment(int executionId, Attachment attachment) {
+		if ( this.pendingExecutions != null )
+		{
+			final PendingExecution execution = this.getPendingExecution(executionId);
+			if ( execution != null )
+			{
+				execution.addAttachment(new PendingAttachment(attachment, null,
+						DigestUtils.md5Hex(String.valueOf(attachment.getContent()))));
+			}
+			return;
+		}
+		this.uploadExecutionAttachment(executionId, attachment);
+	}
+
+	/**
+	 * Uploads a file, that may be in another node, as attachment of an
+	 * execution. When reporting is deferred, only the file and its digest
+	 * are recorded, and the file is read when the test case is reported,
+	 * so the contents of the result files are not kept in memory.
+	 *
+	 * @param executionId execution ID, or pseudo execution ID when deferred
+	 * @param file file to attach
+	 * @param attachment attachment without content, with the title,
+	 * description, file name and type
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @since 3.1.9
+	 */
+	public void uploadAttachment(int executionId, FilePath file, Attachment attachment) throws IOException, InterruptedException {
+		if ( this.isDeferred() )
+		{
+			// the file is read out of the lock, as other seekers may report
+			final String digest = file.digest();
+			synchronized ( this )
+			{
+				if ( this.pendingExecutions != null )
+				{
+					final PendingExecution execution = this.getPendingExecution(executionId);
+					if ( execution != null )
+					{
+						execution.addAttachment(new PendingAttachment(attachment, file, digest));
+					}
+					return;
+				}
+			}
+		}
+		attachment.setContent(readBase64Content(file));
+		this.uploadAttachment(executionId, attachment);
+	}
+
+	/**
+	 * @return the pending execution with a pseudo execution ID, or
+	 * <code>null</code> if there is none, or it was already reported
+	 */
+	private PendingExecution getPendingExecution(int executionId) {
+		return executionId > 0 && executionId <= this.pendingExecutions.size()
+				? this.pendingExecutions.get(executionId - 1) : null;
+	}
+
+	/**
+	 * @param file file, that may be in another node
+	 * @return content of the file encoded in Base64
+	 */
+	private static String readBase64Content(FilePath file) throws IOException, InterruptedException {
+		return file.act(new Base64Content());
+	}
+
+	protected void uploadExecutionAttachment(int executionId, Attachment attachment) {
 		api.uploadExecutionAttachment(
 				executionId,
 				attachment.getTitle(),
@@ -215,4 +542,65 @@ public class TestLinkSite
 				attachment.getContent());
 	}
 
+	/**
+	 * A test case waiting to be reported.
+	 */
+	private static final class PendingExecution
+	{
+		private final TestCaseWrapper testCase;
+		private final int executionId;
+		private final List<PendingAttachment> attachments = new ArrayList<PendingAttachment>();
+		private final Set<List<String>> attachmentKeys = new HashSet<List<String>>();
+		private ExecutionStatus status = null;
+
+		PendingExecution( TestCaseWrapper testCase, int executionId )
+		{
+			this.testCase = testCase;
+			this.executionId = executionId;
+		}
+
+		/**
+		 * Adds an attachment, unless the same file was already attached,
+		 * e.g. by a result seeker run for each suite of a file.
+		 */
+		void addAttachment( PendingAttachment attachment )
+		{
+			if ( this.attachmentKeys.add(Arrays.asList(attachment.attachment.getFileName(), attachment.digest)) )
+			{
+				this.attachments.add(attachment);
+			}
+		}
+	}
+
+	/**
+	 * An attachment waiting to be uploaded. Either its content is already
+	 * in the attachment, or it is read from the file on upload.
+	 */
+	private static final class PendingAttachment
+	{
+		private final Attachment attachment;
+		private final FilePath file;
+		private final String digest;
+
+		PendingAttachment( Attachment attachment, FilePath file, String digest )
+		{
+			this.attachment = attachment;
+			this.file = file;
+			this.digest = digest;
+		}
+	}
+
+	/**
+	 * Reads a file, in its node, encoded in Base64.
+	 */
+	private static final class Base64Content implements FileCallable<String>
+	{
+		private static final long serialVersionUID = 4203625370462431781L;
+
+		public String invoke( File f, VirtualChannel channel ) throws IOException
+		{
+			return Base64.encodeBase64String(FileUtils.readFileToByteArray(f));
+		}
+	}
+
 }
@@ -0,0 +1,160 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.junit;
+
+import java.io.Serializable;
+
+/**
+ * Represents a JUnit <testcase> tag. Only what the JUnit result seekers 
+ * need is kept. 
+ *
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class Case 
+implements Serializable
+{
+
+	private static final long serialVersionUID = 4471716563917342093L;
+
+	/**
+	 * The name attribute.
+	 */
+	private String name;
+	
+	/**
+	 * The classname attribute, or the suite name when absent.
+	 */
+	private String className;
+	
+	/**
+	 * Whether the test case contains a <skipped> tag.
+	 */
+	private boolean skipped;
+	
+	/**
+	 * Whether the test case contains an <error> or a <failure> tag.
+	 */
+	private boolean failed;
+	
+	/**
+	 * The suite this test case belongs to.
+	 */
+	private Suite suite;
+	
+	public Case()
+	{
+		super();
+	}
+	
+	/**
+	 * @param className the class name
+	 * @param name the test case name
+	 * @param skipped whether the test case was skipped
+	 * @param failed whether the test case has an error or a failure
+	 */
+	public Case( String className, String name, boolean skipped, boolean failed )
+	{
+		super();
+		this.className = className;
+		this.name = name;
+		this.skipped = skipped;
+		this.failed = failed;
+	}
+
+	public String getName() 
+	{
+		return name;
+	}
+
+	public void setName( String name ) 
+	{
+		this.name = name;
+	}
+
+	public String getClassName() 
+	{
+		return className;
+	}
+
+	public void setClassName( String className ) 
+	{
+		this.className = className;
+	}
+
+	public boolean isSkipped() 
+	{
+		return skipped;
+	}
+
+	public void setSkipped( boolean skipped ) 
+	{
+		this.skipped = skipped;
+	}
+
+	public boolean isFailed() 
+	{
+		return failed;
+	}
+
+	public void setFailed( boolean failed ) 
+	{
+		this.failed = failed;
+	}
+	
+	/**
+	 * @return true if the test case was neither skipped nor failed
+	 */
+	public boolean isPassed()
+	{
+		return !skipped && !failed;
+	}
+	
+	/**
+	 * @return 1 if the test case failed, 0 otherwise
+	 */
+	public int getFailCount()
+	{
+		return (!isPassed() && !isSkipped()) ? 1 : 0;
+	}
+	
+	/**
+	 * @return 1 if the test case was skipped, 0 otherwise
+	 */
+	public int getSkipCount()
+	{
+		return isSkipped() ? 1 : 0;
+	}
+
+	public Suite getSuite() 
+	{
+		return suite;
+	}
+
+	public void setSuite( Suite suite ) 
+	{
+		this.suite = suite;
+	}
+	
+}
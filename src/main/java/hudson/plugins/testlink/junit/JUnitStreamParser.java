@@ -0,0 +1,337 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.junit;
+
+import hudson.AbortException;
+import hudson.Util;
+import hudson.plugins.testlink.util.Messages;
+import hudson.plugins.testlink.util.ParsedResultCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.commons.io.FileUtils;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+
+/**
+ * <p>Streaming JUnit XML parser used by the JUnit result seekers instead of 
+ * Jenkins <code>hudson.tasks.junit.JUnitParser</code>.</p>
+ * 
+ * <p>Produces the same suites and cases, in the same order, as Jenkins 
+ * <code>TestResult</code> when parsed with <code>keepLongStdio</code> 
+ * disabled, but never builds a DOM and only keeps stdout and stderr when 
+ * they are going to be used in the test notes.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class JUnitStreamParser 
+implements Serializable
+{
+
+	private static final long serialVersionUID = 6393727395453018462L;
+
+	private static final String APACHE_EXT_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+	
+	/**
+	 * Surefire writes the test output to TEST-*-output.txt when 
+	 * redirectTestOutputToFile is enabled.
+	 */
+	private static final Pattern SUREFIRE_FILENAME = Pattern.compile("TEST-(.+)\\.xml");
+	
+	/**
+	 * Half of the size kept of stdout and stderr of suites without failures.
+	 */
+	private static final int HALF_MAX_SIZE = 500;
+	
+	/**
+	 * Error margin, in milliseconds, when comparing report files with the 
+	 * build time.
+	 */
+	private static final long ERROR_MARGIN = 3000L;
+	
+	/**
+	 * Whether <system-out> and <system-err> must be kept.
+	 */
+	private final boolean captureStdio;
+	
+	/**
+	 * Scope of the build in the parsed result cache, or <code>null</code> 
+	 * to parse every file.
+	 */
+	private final String cacheScope;
+	
+	/**
+	 * @param captureStdio whether stdout and stderr must be kept
+	 */
+	public JUnitStreamParser( boolean captureStdio )
+	{
+		this( captureStdio, null );
+	}
+	
+	/**
+	 * @param captureStdio whether stdout and stderr must be kept
+	 * @param cacheScope scope of the build in the {@link ParsedResultCache}, 
+	 * or <code>null</code> to parse every file
+	 */
+	public JUnitStreamParser( boolean captureStdio, String cacheScope )
+	{
+		super();
+		this.captureStdio = captureStdio;
+		this.cacheScope = cacheScope;
+	}
+	
+	/**
+	 * @return whether stdout and stderr are kept
+	 */
+	public boolean isCaptureStdio()
+	{
+		return captureStdio;
+	}
+	
+	/**
+	 * Parses the report files that were updated during the build.
+	 * 
+	 * @param buildTime build time, already adjusted to this node clock
+	 * @param baseDir directory the file names are relative to
+	 * @param includedFiles report files found
+	 * @return the suites found, without duplicates
+	 * @throws AbortException if no report was found, or none is new
+	 * @throws IOException if a file cannot be read
+	 */
+	public List<Suite> parse( long buildTime, File baseDir, String[] includedFiles ) 
+	throws IOException
+	{
+		if ( includedFiles.length == 0 )
+		{
+			// no test result. Most likely a configuration error or fatal problem
+			throw new AbortException( Messages.Parser_JUnit_NoReportsFound() );
+		}
+		
+		final List<Suite> suites = new ArrayList<Suite>();
+		final Set<List<String>> keys = new HashSet<List<String>>();
+		boolean parsed = false;
+		
+		for ( String value : includedFiles )
+		{
+			final File reportFile = new File( baseDir, value );
+			// only count files that were actually updated during this build
+			if ( buildTime - ERROR_MARGIN <= reportFile.lastModified() )
+			{
+				for ( Suite suite : this.parseCached( reportFile ) )
+				{
+					if ( keys.add( Arrays.asList( suite.getName(), suite.getTimestamp(), suite.getId() ) ) )
+					{
+						suites.add( suite );
+					}
+				}
+				parsed = true;
+			}
+		}
+		
+		if ( !parsed )
+		{
+			final long localTime = System.currentTimeMillis();
+			if ( localTime < buildTime - 1000 )
+			{
+				// build time is in the future. clock on this node must be running behind
+				throw new AbortException( Messages.Parser_JUnit_ClockOutOfSync() );
+			}
+			final File f = new File( baseDir, includedFiles[0] );
+			throw new AbortException( Messages.Parser_JUnit_NoNewReports( f, Util.getTimeSpanString( buildTime - f.lastModified() ) ) );
+		}
+		
+		return suites;
+	}
+	
+	/**
+	 * Parses a single report file, unless it was already parsed during this 
+	 * build and did not change since. Cached suites are shared, and must 
+	 * not be modified.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Suite> parseCached( File reportFile ) 
+	throws IOException
+	{
+		if ( cacheScope == null )
+		{
+			return this.parse( reportFile );
+		}
+		final String parserName = captureStdio ? JUnitStreamParser.class.getName() + "#stdio" : JUnitStreamParser.class.getName();
+		List<Suite> suites = ParsedResultCache.get( cacheScope, parserName, reportFile, List.class );
+		if ( suites == null )
+		{
+			suites = this.parse( reportFile );
+			ParsedResultCache.put( cacheScope, parserName, reportFile, suites );
+		}
+		return suites;
+	}
+	
+	/**
+	 * Parses a single report file.
+	 * 
+	 * @param reportFile the report file
+	 * @return the suites found in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public List<Suite> parse( File reportFile ) 
+	throws IOException
+	{
+		final List<Suite> suites = new ArrayList<Suite>();
+		
+		if ( reportFile.length() == 0 )
+		{
+			// typical when the JVM quits abnormally, like OutOfMemoryError during a test.
+			suites.add( this.failedSuite( reportFile ) );
+			return suites;
+		}
+		
+		final JUnitXmlHandler handler = new JUnitXmlHandler( reportFile, captureStdio );
+		
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setValidating(false);
+		try {
+            factory.setFeature(APACHE_EXT_DTD, false);
+        } catch (ParserConfigurationException e) {
+        } catch (SAXNotRecognizedException e) {
+        } catch (SAXNotSupportedException e) {
+        }
+		
+		try
+		{
+			final SAXParser parser = factory.newSAXParser();
+			parser.parse( reportFile, handler );
+		}
+		catch ( ParserConfigurationException e )
+		{
+			throw new IOException( Messages.Parser_Error( reportFile, e.getMessage() ), e );
+		}
+		catch ( RuntimeException e )
+		{
+			throw new IOException( Messages.Parser_Error( reportFile, e.getMessage() ), e );
+		}
+		catch ( SAXException e )
+		{
+			if ( !reportFile.getPath().endsWith(".xml") )
+			{
+				throw new IOException( Messages.Parser_Error( reportFile, e.getMessage() ), e );
+			}
+			suites.add( this.failedSuite( reportFile ) );
+			return suites;
+		}
+		
+		for ( Suite suite : handler.getSuites() )
+		{
+			if ( captureStdio )
+			{
+				this.readStdio( reportFile, suite );
+			}
+			suites.add( suite );
+		}
+		
+		return suites;
+	}
+	
+	/**
+	 * Looks for surefire -output.txt files, and trims stdout and stderr of 
+	 * suites without failures, as Jenkins does.
+	 */
+	private void readStdio( File reportFile, Suite suite ) 
+	throws IOException
+	{
+		String stdout = suite.getStdout();
+		String stderr = suite.getStderr();
+		
+		if ( stdout == null && stderr == null )
+		{
+			final Matcher m = SUREFIRE_FILENAME.matcher( reportFile.getName() );
+			if ( m.matches() )
+			{
+				final File mavenOutputFile = new File( reportFile.getParentFile(), m.group(1) + "-output.txt" );
+				if ( mavenOutputFile.exists() )
+				{
+					stdout = FileUtils.readFileToString( mavenOutputFile );
+				}
+			}
+		}
+		
+		suite.setStdout( this.possiblyTrimStdio( suite.getCases(), stdout ) );
+		suite.setStderr( this.possiblyTrimStdio( suite.getCases(), stderr ) );
+	}
+	
+	private String possiblyTrimStdio( List<Case> cases, String stdio )
+	{
+		if ( stdio == null )
+		{
+			return null;
+		}
+		for ( Case c : cases )
+		{
+			if ( c.isFailed() )
+			{
+				return stdio;
+			}
+		}
+		final int len = stdio.length();
+		final int middle = len - HALF_MAX_SIZE * 2;
+		if ( middle <= 0 )
+		{
+			return stdio;
+		}
+		return stdio.substring( 0, HALF_MAX_SIZE ) + "...[truncated " + middle + " chars]..." + stdio.substring( len - HALF_MAX_SIZE, len );
+	}
+	
+	/**
+	 * Creates a suite with a single failed test case, used for report files 
+	 * that could not be read.
+	 */
+	private Suite failedSuite( File reportFile )
+	{
+		final Suite suite = new Suite();
+		suite.setName( reportFile.getName() );
+		suite.setFile( reportFile.getAbsolutePath() );
+		if ( captureStdio )
+		{
+			suite.setStdout( "" );
+			suite.setStderr( "" );
+		}
+		suite.addCase( new Case( reportFile.getName(), JUnitXmlHandler.INIT, false, true ) );
+		return suite;
+	}
+	
+}
@@ -0,0 +1,383 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.junit;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * <p>The JUnit XML Handler.</p>
+ * 
+ * <p>Builds the same suites and cases Jenkins JUnit parser would, but keeps 
+ * only names, skip/fail flags and timestamps. The content of 
+ * <system-out> and <system-err> is only buffered when asked to.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class JUnitXmlHandler 
+extends DefaultHandler 
+{
+
+	private static final String TEST_SUITE = "testsuite";
+	private static final String TEST_CASE = "testcase";
+	private static final String ERROR = "error";
+	private static final String FAILURE = "failure";
+	private static final String SKIPPED = "skipped";
+	private static final String SYSTEM_OUT = "system-out";
+	private static final String SYSTEM_ERR = "system-err";
+	private static final String NAME = "name";
+	private static final String PACKAGE = "package";
+	private static final String CLASS_NAME = "classname";
+	private static final String TIMESTAMP = "timestamp";
+	private static final String ID = "id";
+	private static final String TIME = "time";
+	
+	/**
+	 * Name given to the test case created for a suite level <error>.
+	 */
+	static final String INIT = "<init>";
+	
+	/**
+	 * The XML file being parsed.
+	 */
+	private final File file;
+	
+	/**
+	 * Whether <system-out> and <system-err> must be kept.
+	 */
+	private final boolean captureStdio;
+	
+	/**
+	 * Suites found, in the same order Jenkins would add them (nested suites 
+	 * before their parents).
+	 */
+	private final List<Suite> suites = new ArrayList<Suite>();
+	
+	/**
+	 * One entry per open element. <code>null</code> for elements that are not 
+	 * suite candidates.
+	 */
+	private final LinkedList<SuiteFrame> frames = new LinkedList<SuiteFrame>();
+	
+	/**
+	 * Test case being read, if any, and the depth it was opened at.
+	 */
+	private CaseFrame testCase;
+	private int testCaseDepth = -1;
+	
+	/**
+	 * Buffer for <system-out> or <system-err>, when captured.
+	 */
+	private StringBuilder text;
+	
+	/**
+	 * @param file the XML file being parsed
+	 * @param captureStdio whether stdout and stderr must be kept
+	 */
+	public JUnitXmlHandler( File file, boolean captureStdio )
+	{
+		super();
+		this.file = file;
+		this.captureStdio = captureStdio;
+	}
+	
+	/**
+	 * @return the suites found
+	 */
+	public List<Suite> getSuites()
+	{
+		return suites;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+	 */
+	@Override
+	public void startElement(
+			String uri, 
+			String localName, 
+			String qName,
+			Attributes attributes) 
+	throws SAXException 
+	{
+		final int depth = frames.size();
+		final SuiteFrame parent = frames.isEmpty() ? null : frames.getLast();
+		
+		if ( depth == 0 || ( parent != null && TEST_SUITE.equals( qName ) ) )
+		{
+			// the root element and testsuite elements directly under another 
+			// candidate may become suites
+			frames.add( new SuiteFrame( attributes ) );
+			return;
+		}
+		
+		frames.add( null );
+		
+		if ( parent != null )
+		{
+			if ( TEST_CASE.equals( qName ) )
+			{
+				testCase = new CaseFrame( attributes );
+				testCaseDepth = depth;
+				parent.hasTestCase = true;
+			}
+			else if ( ERROR.equals( qName ) )
+			{
+				parent.hasError = true;
+			}
+			else if ( SKIPPED.equals( qName ) )
+			{
+				parent.hasSkipped = true;
+			}
+			else if ( SYSTEM_OUT.equals( qName ) && parent.stdout == null )
+			{
+				parent.stdout = "";
+				if ( captureStdio )
+				{
+					text = new StringBuilder();
+				}
+			}
+			else if ( SYSTEM_ERR.equals( qName ) && parent.stderr == null )
+			{
+				parent.stderr = "";
+				if ( captureStdio )
+				{
+					text = new StringBuilder();
+				}
+			}
+		}
+		else if ( testCase != null && depth == testCaseDepth + 1 )
+		{
+			// same as CaseResult#getError: its error stack trace is the text 
+			// of the <error> or <failure> child, and dom4j returns an empty 
+			// text, not null, for <failure/>. So the element alone, even 
+			// empty, fails the test case
+			if ( ERROR.equals( qName ) || FAILURE.equals( qName ) )
+			{
+				testCase.failed = true;
+			}
+			else if ( SKIPPED.equals( qName ) )
+			{
+				testCase.skipped = true;
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+	 */
+	@Override
+	public void characters( char[] ch, int start, int length )
+	throws SAXException 
+	{
+		if ( text != null )
+		{
+			text.append( ch, start, length );
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void endElement( String uri, String localName, String qName )
+	throws SAXException 
+	{
+		final SuiteFrame frame = frames.removeLast();
+		final int depth = frames.size();
+		
+		if ( frame != null )
+		{
+			if ( frame.hasTestCase || frame.hasError )
+			{
+				suites.add( frame.toSuite() );
+			}
+			return;
+		}
+		
+		final SuiteFrame parent = frames.isEmpty() ? null : frames.getLast();
+		
+		if ( testCase != null && depth == testCaseDepth )
+		{
+			parent.cases.add( testCase );
+			testCase = null;
+			testCaseDepth = -1;
+		}
+		else if ( text != null && parent != null )
+		{
+			if ( SYSTEM_OUT.equals( qName ) )
+			{
+				parent.stdout = text.toString();
+			}
+			else
+			{
+				parent.stderr = text.toString();
+			}
+			text = null;
+		}
+	}
+	
+	/**
+	 * Same as Jenkins <code>TestObject#safe(String)</code>.
+	 */
+	static String safe( String s )
+	{
+		return s.replace('/', '_').replace('\\', '_').replace(':', '_').replace('?', '_').replace('#', '_').replace('%', '_');
+	}
+	
+	/**
+	 * Same as Jenkins <code>CaseResult#parseTime(Element)</code>.
+	 */
+	static float parseTime( String time )
+	{
+		if ( time != null )
+		{
+			time = time.replace(",", "");
+			try
+			{
+				return Float.parseFloat( time );
+			}
+			catch ( NumberFormatException e )
+			{
+				try
+				{
+					return new java.text.DecimalFormat().parse( time ).floatValue();
+				}
+				catch ( java.text.ParseException x )
+				{
+					// hmm, don't know what this format is.
+				}
+			}
+		}
+		return 0.0f;
+	}
+	
+	/**
+	 * A <testcase> being read.
+	 */
+	private static final class CaseFrame
+	{
+		private final String name;
+		private final String className;
+		private final float duration;
+		private boolean failed;
+		private boolean skipped;
+		
+		CaseFrame( Attributes attributes )
+		{
+			this.name = attributes.getValue( NAME );
+			this.className = attributes.getValue( CLASS_NAME );
+			this.duration = parseTime( attributes.getValue( TIME ) );
+		}
+	}
+	
+	/**
+	 * An element that may become a suite.
+	 */
+	private final class SuiteFrame
+	{
+		private final String name;
+		private final String packageName;
+		private final String timestamp;
+		private final String id;
+		private final float duration;
+		private final List<CaseFrame> cases = new ArrayList<CaseFrame>();
+		private boolean hasTestCase;
+		private boolean hasError;
+		private boolean hasSkipped;
+		private String stdout;
+		private String stderr;
+		
+		SuiteFrame( Attributes attributes )
+		{
+			this.name = attributes.getValue( NAME );
+			this.packageName = attributes.getValue( PACKAGE );
+			this.timestamp = attributes.getValue( TIMESTAMP );
+			this.id = attributes.getValue( ID );
+			this.duration = parseTime( attributes.getValue( TIME ) );
+		}
+		
+		Suite toSuite()
+		{
+			final Suite suite = new Suite();
+			
+			String suiteName = this.name;
+			if ( suiteName == null )
+			{
+				suiteName = '(' + file.getName() + ')';
+			}
+			else if ( packageName != null && packageName.length() > 0 )
+			{
+				suiteName = packageName + '.' + suiteName;
+			}
+			suite.setName( safe( suiteName ) );
+			suite.setTimestamp( timestamp );
+			suite.setId( id );
+			suite.setFile( file.getAbsolutePath() );
+			
+			float total = 0.0f;
+			
+			if ( hasError )
+			{
+				// the test class failed to load
+				suite.addCase( new Case( INIT, this.name, hasSkipped, true ) );
+				total += duration;
+			}
+			
+			for ( CaseFrame frame : cases )
+			{
+				String className = frame.className;
+				String caseName = frame.name;
+				if ( className == null )
+				{
+					className = this.name;
+				}
+				if ( className == null && caseName != null && caseName.contains(".") )
+				{
+					className = caseName.substring( 0, caseName.lastIndexOf('.') );
+					caseName = caseName.substring( caseName.lastIndexOf('.') + 1 );
+				}
+				suite.addCase( new Case( className, caseName, frame.skipped, frame.failed ) );
+				total += frame.duration;
+			}
+			
+			suite.setDuration( total );
+			if ( captureStdio )
+			{
+				suite.setStdout( stdout );
+				suite.setStderr( stderr );
+			}
+			
+			return suite;
+		}
+	}
+	
+}
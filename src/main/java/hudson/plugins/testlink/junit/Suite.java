@@ -0,0 +1,184 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.junit;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a JUnit <testsuite> tag. Only what the JUnit result seekers 
+ * need is kept. 
+ *
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class Suite 
+implements Serializable
+{
+
+	private static final long serialVersionUID = -2137516367328962286L;
+
+	/**
+	 * The name attribute.
+	 */
+	private String name;
+	
+	/**
+	 * The timestamp attribute.
+	 */
+	private String timestamp;
+	
+	/**
+	 * The id attribute.
+	 */
+	private String id;
+	
+	/**
+	 * The duration in seconds.
+	 */
+	private float duration;
+	
+	/**
+	 * The <system-out> tag, if captured.
+	 */
+	private String stdout;
+	
+	/**
+	 * The <system-err> tag, if captured.
+	 */
+	private String stderr;
+	
+	/**
+	 * Absolute path of the file that contains this suite.
+	 */
+	private String file;
+	
+	/**
+	 * The list of <testcase> tags.
+	 */
+	private final List<Case> cases;
+	
+	/**
+	 * Default constructor. Initializes the list of <testcase> tags.
+	 */
+	public Suite()
+	{
+		super();
+		
+		this.cases = new ArrayList<Case>();
+	}
+
+	public String getName() 
+	{
+		return name;
+	}
+
+	public void setName( String name ) 
+	{
+		this.name = name;
+	}
+
+	public String getTimestamp() 
+	{
+		return timestamp;
+	}
+
+	public void setTimestamp( String timestamp ) 
+	{
+		this.timestamp = timestamp;
+	}
+
+	public String getId() 
+	{
+		return id;
+	}
+
+	public void setId( String id ) 
+	{
+		this.id = id;
+	}
+
+	public float getDuration() 
+	{
+		return duration;
+	}
+
+	public void setDuration( float duration ) 
+	{
+		this.duration = duration;
+	}
+
+	public String getStdout() 
+	{
+		return stdout;
+	}
+
+	public void setStdout( String stdout ) 
+	{
+		this.stdout = stdout;
+	}
+
+	public String getStderr() 
+	{
+		return stderr;
+	}
+
+	public void setStderr( String stderr ) 
+	{
+		this.stderr = stderr;
+	}
+
+	public String getFile() 
+	{
+		return file;
+	}
+
+	public void setFile( String file ) 
+	{
+		this.file = file;
+	}
+
+	/**
+	 * Retrieves the list of <testcase> tags.
+	 * 
+	 * @return the cases
+	 */
+	public List<Case> getCases() 
+	{
+		return cases;
+	}
+	
+	/**
+	 * Adds a test case to this suite, and sets this suite as its parent.
+	 * 
+	 * @param testCase the test case.
+	 */
+	public void addCase( Case testCase )
+	{
+		testCase.setSuite( this );
+		this.cases.add( testCase );
+	}
+	
+}
@@ -23,20 +23,34 @@
  */
 package hudson.plugins.testlink.result;
 
+import hudson.FilePath;
 import hudson.FilePath.FileCallable;
+import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.Result;
 import hudson.model.AbstractBuild;
 import hudson.plugins.testlink.TestLinkSite;
+import hudson.plugins.testlink.junit.Case;
+import hudson.plugins.testlink.junit.JUnitStreamParser;
+import hudson.plugins.testlink.junit.Suite;
 import hudson.plugins.testlink.util.Messages;
+import hudson.plugins.testlink.util.ParsedResultCache;
 import hudson.remoting.VirtualChannel;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.JUnitParser;
 import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
-import br.eti.kinoshita.testlinkjavaapi.model.Attachment;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
 
 /**
@@ -51,14 +65,37 @@ public abstract class AbstractJUnitResultSeeker extends ResultSeeker {
 	
 	private boolean attachJUnitXML = false;
 	
+	/**
+	 * Whether the JUnit XML files are read with the streaming parser instead 
+	 * of Jenkins JUnit parser.
+	 * 
+	 * @since 3.1.9
+	 */
+	private boolean streamingParser = false;
+	
 	/**
 	 * @param includePattern
 	 * @param keyCustomField
 	 * @param attachJunitXML
+	 * @deprecated since 3.1.9, use {@link #AbstractJUnitResultSeeker(String, String, boolean, boolean, boolean)}
 	 */
+	@Deprecated
 	public AbstractJUnitResultSeeker(String includePattern, String keyCustomField, boolean attachJunitXML, boolean includeNotes) {
+		this(includePattern, keyCustomField, attachJunitXML, includeNotes, false);
+	}
+	
+	/**
+	 * @param includePattern
+	 * @param keyCustomField
+	 * @param attachJunitXML
+	 * @param includeNotes
+	 * @param streamingParser
+	 * @since 3.1.9
+	 */
+	public AbstractJUnitResultSeeker(String includePattern, String keyCustomField, boolean attachJunitXML, boolean includeNotes, boolean streamingParser) {
 		super(includePattern, keyCustomField, includeNotes);
 		this.attachJUnitXML = attachJunitXML;
+		this.streamingParser = streamingParser;
 	}
 	
 	/**
@@ -74,36 +111,175 @@ public abstract class AbstractJUnitResultSeeker extends ResultSeeker {
 	public boolean isAttachJUnitXML() {
 		return attachJUnitXML;
 	}
+	
+	/**
+	 * @param streamingParser the streamingParser to set
+	 */
+	public void setStreamingParser(boolean streamingParser) {
+		this.streamingParser = streamingParser;
+	}
+	
+	/**
+	 * @return the streamingParser
+	 */
+	public boolean isStreamingParser() {
+		return streamingParser;
+	}
+	
+	/* (non-Javadoc)
+	 * @see hudson.plugins.testlink.result.ResultSeeker#seek(hudson.plugins.testlink.result.TestCaseWrapper[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite)
+	 */
+	@Override
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+		this.seek(automatedTestCases, build, launcher, listener, testlink, null);
+	}
+	
+	/**
+	 * <p>Parses the JUnit XML files matching the include pattern.</p>
+	 * 
+	 * <p>By default Jenkins JUnit parser is used, and its result converted. 
+	 * When the streaming parser is enabled, the files are read in the node 
+	 * without building a DOM or a Jenkins test result, and stdout and stderr 
+	 * are only kept if the notes are included.</p>
+	 * 
+	 * <p>Result files that did not change since a previous build are ignored, 
+	 * when the builder tracks the result files.</p>
+	 * 
+	 * @param build the build
+	 * @param launcher the launcher
+	 * @param listener the build listener
+	 * @param resultFiles result files of the build, or <code>null</code>
+	 * @return the suites found
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	protected List<Suite> parse(AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, ResultFileTracker resultFiles) throws IOException, InterruptedException {
+		final ResultFileManifest previousResultFiles = resultFiles != null ? resultFiles.getPreviousResultFiles() : null;
+		final boolean trackResultFiles = resultFiles != null;
+		if(this.isStreamingParser()) {
+			final long buildTime = build.getTimestamp().getTimeInMillis();
+			final long timeOnMaster = System.currentTimeMillis();
+			final JUnitStreamParser parser = new JUnitStreamParser(this.isIncludeNotes(), ParsedResultCache.getScope(build));
+			
+			final ResultFileTracker.Scanned<List<Suite>> scanned = build.getWorkspace().act(new FileCallable<ResultFileTracker.Scanned<List<Suite>>>() {
+				
+				private static final long serialVersionUID = 8127323466531743011L;
+
+				public ResultFileTracker.Scanned<List<Suite>> invoke(File workspace, VirtualChannel channel) 
+						throws IOException, InterruptedException {
+					final long nowSlave = System.currentTimeMillis();
+					final String[] files = AbstractJUnitResultSeeker.this.scan(workspace, includePattern, listener);
+					final ResultFileManifest readResultFiles = trackResultFiles ? new ResultFileManifest() : null;
+					final String[] changed = AbstractJUnitResultSeeker.this.filterUnchanged(workspace, files, previousResultFiles, readResultFiles, listener);
+					if(changed.length == 0 && files.length > 0) {
+						// every file was already read in a previous build
+						return new ResultFileTracker.Scanned<List<Suite>>(new ArrayList<Suite>(), readResultFiles);
+					}
+					return new ResultFileTracker.Scanned<List<Suite>>(parser.parse(buildTime + (nowSlave - timeOnMaster), workspace, changed), readResultFiles);
+				}
+			});
+			return resultFiles != null ? resultFiles.collect(scanned) : scanned.getValue();
+		}
+		
+		final JUnitParser parser = new JUnitParser(false);
+		final TestResult testResult = parser.parse(this.includePattern, build, launcher, listener);
+		
+		final Set<String> unchanged = resultFiles != null ? resultFiles.collect(this.findUnchanged(build, listener, previousResultFiles)) : Collections.<String>emptySet();
+		
+		final List<Suite> suites = new ArrayList<Suite>();
+		for(SuiteResult suiteResult : testResult.getSuites()) {
+			if(!unchanged.contains(suiteResult.getFile())) {
+				suites.add(this.toSuite(suiteResult));
+			}
+		}
+		return suites;
+	}
+	
+	/**
+	 * Finds the result files that did not change since a previous build.
+	 * 
+	 * @param build the build
+	 * @param listener the build listener
+	 * @param previousResultFiles result files of a previous build, may be <code>null</code>
+	 * @return absolute paths of the files that did not change, and the files read
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private ResultFileTracker.Scanned<Set<String>> findUnchanged(AbstractBuild<?, ?> build, final BuildListener listener, final ResultFileManifest previousResultFiles) throws IOException, InterruptedException {
+		return build.getWorkspace().act(new FileCallable<ResultFileTracker.Scanned<Set<String>>>() {
+			
+			private static final long serialVersionUID = -6181245069447916380L;
 
-	protected void handleResult(TestCaseWrapper automatedTestCase, AbstractBuild<?, ?> build, BuildListener listener, TestLinkSite testlink, final SuiteResult suiteResult) {
-		if(automatedTestCase.getExecutionStatus(this.keyCustomField) != ExecutionStatus.NOT_RUN) {
+			public ResultFileTracker.Scanned<Set<String>> invoke(File workspace, VirtualChannel channel) 
+					throws IOException, InterruptedException {
+				final String[] files = AbstractJUnitResultSeeker.this.scan(workspace, includePattern, listener);
+				final ResultFileManifest readResultFiles = new ResultFileManifest();
+				final Set<String> changed = new HashSet<String>(Arrays.asList(AbstractJUnitResultSeeker.this.filterUnchanged(workspace, files, previousResultFiles, readResultFiles, listener)));
+				final Set<String> unchanged = new HashSet<String>();
+				for(String file : files) {
+					if(!changed.contains(file)) {
+						unchanged.add(new File(workspace, file).getAbsolutePath());
+					}
+				}
+				return new ResultFileTracker.Scanned<Set<String>>(unchanged, readResultFiles);
+			}
+		});
+	}
+	
+	/**
+	 * Converts a Jenkins suite result into a suite.
+	 * 
+	 * @param suiteResult the Jenkins suite result
+	 * @return the suite
+	 */
+	private Suite toSuite(SuiteResult suiteResult) {
+		final Suite suite = new Suite();
+		suite.setName(suiteResult.getName());
+		suite.setTimestamp(suiteResult.getTimestamp());
+		suite.setDuration(suiteResult.getDuration());
+		suite.setFile(suiteResult.getFile());
+		if(this.isIncludeNotes()) {
+			suite.setStdout(suiteResult.getStdout());
+			suite.setStderr(suiteResult.getStderr());
+		}
+		for(CaseResult caseResult : suiteResult.getCases()) {
+			suite.addCase(new Case(caseResult.getClassName(), caseResult.getName(), caseResult.isSkipped(), caseResult.getErrorStackTrace() != null));
+		}
+		return suite;
+	}
+
+	protected void handleResult(TestCaseWrapper automatedTestCase, AbstractBuild<?, ?> build, BuildListener listener, TestLinkSite testlink, final Suite suite) {
+		this.handleResult(automatedTestCase, build, listener, testlink, Collections.singletonList(suite));
+	}
+	
+	/**
+	 * Updates the automated test case once and, if enabled, attaches the 
+	 * file of each of the suites that matched it. Suites read from the same 
+	 * file are attached only once.
+	 * 
+	 * @param automatedTestCase automated test case
+	 * @param build build
+	 * @param listener listener
+	 * @param testlink TestLink site
+	 * @param suites suites that matched the automated test case
+	 * @since 3.1.9
+	 */
+	protected void handleResult(TestCaseWrapper automatedTestCase, AbstractBuild<?, ?> build, BuildListener listener, TestLinkSite testlink, List<Suite> suites) {
+		// The status is passed on, as other seekers may change the one of the test case
+		final ExecutionStatus testCaseStatus = automatedTestCase.getExecutionStatus(this.keyCustomField);
+		if(testCaseStatus != ExecutionStatus.NOT_RUN) {
 			try {
 				listener.getLogger().println( Messages.TestLinkBuilder_Update_AutomatedTestCases() );
-				final int executionId = testlink.updateTestCase(automatedTestCase);
+				final int executionId = testlink.updateTestCase(automatedTestCase, testCaseStatus);
 				
-				if(executionId > 0 && this.isAttachJUnitXML()) {
-					Attachment attachment = build.getWorkspace().act( new FileCallable<Attachment>() {
-
-						private static final long serialVersionUID = -5411683541842375558L;
-
-						public Attachment invoke(File f,
-								VirtualChannel channel)
-								throws IOException,
-								InterruptedException {
-							
-							File reportFile = new File(suiteResult.getFile());
-							final Attachment attachment = new Attachment();
-							attachment.setContent(AbstractJUnitResultSeeker.this.getBase64FileContent(reportFile));
-							attachment.setDescription(reportFile.getName());
-							attachment.setFileName(reportFile.getName());
-							attachment.setFileSize(reportFile.length());
-							attachment.setFileType(TEXT_XML_CONTENT_TYPE);
-							attachment.setTitle(reportFile.getName());
-							
-							return attachment;
-						}
-					});
-					testlink.uploadAttachment(executionId, attachment);
+				final Set<String> attached = new HashSet<String>();
+				for(final Suite suite : suites) {
+					if(executionId <= 0 || !this.isAttachJUnitXML() || !attached.add(suite.getFile())) {
+						continue;
+					}
+					// the file is read only when the test case is reported
+					final FilePath reportFile = new FilePath(build.getWorkspace().getChannel(), suite.getFile());
+					testlink.uploadAttachment(executionId, reportFile, this.createAttachment(reportFile, TEXT_XML_CONTENT_TYPE));
 				}
 			} catch ( TestLinkAPIException te ) {
 				build.setResult(Result.UNSTABLE);
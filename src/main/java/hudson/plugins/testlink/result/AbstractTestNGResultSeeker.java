@@ -23,20 +23,27 @@
  */
 package hudson.plugins.testlink.result;
 
+import hudson.FilePath;
 import hudson.FilePath.FileCallable;
+import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.Result;
 import hudson.model.AbstractBuild;
 import hudson.plugins.testlink.TestLinkSite;
 import hudson.plugins.testlink.testng.Suite;
 import hudson.plugins.testlink.testng.TestNGParser;
+import hudson.plugins.testlink.util.ParsedResultCache;
 import hudson.remoting.VirtualChannel;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
-import br.eti.kinoshita.testlinkjavaapi.model.Attachment;
 import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
 
 /**
@@ -81,34 +88,85 @@ public abstract class AbstractTestNGResultSeeker extends ResultSeeker {
 		return markSkippedTestAsBlocked;
 	}
 	
+	/* (non-Javadoc)
+	 * @see hudson.plugins.testlink.result.ResultSeeker#seek(hudson.plugins.testlink.result.TestCaseWrapper[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite)
+	 */
+	@Override
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+		this.seek(automatedTestCases, build, launcher, listener, testlink, null);
+	}
+	
+	/**
+	 * <p>Parses the TestNG XML files matching the include pattern.</p>
+	 * 
+	 * <p>Files already parsed by another TestNG seeker during this build, 
+	 * and not changed since, are not parsed again. The suites returned may 
+	 * be shared with the other seekers, and must not be modified.</p>
+	 * 
+	 * @param build the build
+	 * @param listener the build listener
+	 * @param resultFiles result files of the build, or <code>null</code>
+	 * @return the suites found
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @since 3.1.9
+	 */
+	protected List<Suite> parse(AbstractBuild<?, ?> build, final BuildListener listener, ResultFileTracker resultFiles) throws IOException, InterruptedException {
+		final ResultFileManifest previousResultFiles = resultFiles != null ? resultFiles.getPreviousResultFiles() : null;
+		final boolean trackResultFiles = resultFiles != null;
+		final String cacheScope = ParsedResultCache.getScope(build);
+		final ResultFileTracker.Scanned<List<Suite>> scanned = build.getWorkspace().act(new FileCallable<ResultFileTracker.Scanned<List<Suite>>>() {
+			private static final long serialVersionUID = -2904745497893451917L;
+
+			public ResultFileTracker.Scanned<List<Suite>> invoke(File workspace, VirtualChannel channel)
+					throws IOException, InterruptedException {
+				final ResultFileManifest readResultFiles = trackResultFiles ? new ResultFileManifest() : null;
+				final String[] xmls = AbstractTestNGResultSeeker.this.filterUnchanged(workspace, 
+						AbstractTestNGResultSeeker.this.scan(workspace, includePattern, listener), previousResultFiles, readResultFiles, listener);
+				final List<Suite> suites = new ArrayList<Suite>();
+				
+				for(String xml : xmls) {
+					final File input = new File(workspace, xml);
+					Suite suite = ParsedResultCache.get(cacheScope, TestNGParser.class.getName(), input, Suite.class);
+					if(suite == null) {
+						suite = parser.parse(input);
+						ParsedResultCache.put(cacheScope, TestNGParser.class.getName(), input, suite);
+					}
+					suites.add(suite);
+				}
+				
+				return new ResultFileTracker.Scanned<List<Suite>>(suites, readResultFiles);
+			}
+		});
+		return resultFiles != null ? resultFiles.collect(scanned) : scanned.getValue();
+	}
+	
 	protected void handleResult(TestCaseWrapper automatedTestCase, AbstractBuild<?, ?> build, BuildListener listener, TestLinkSite testlink, ExecutionStatus status, final Suite suiteResult) {
-		if(automatedTestCase.getExecutionStatus(this.keyCustomField) != ExecutionStatus.NOT_RUN) {
+		this.handleResult(automatedTestCase, build, listener, testlink, status, Collections.singletonList(suiteResult));
+	}
+	
+	/**
+	 * Updates the automated test case once and, if enabled, attaches the 
+	 * file of each of the suites that matched it. Suites read from the same 
+	 * file are attached only once.
+	 * 
+	 * @since 3.1.9
+	 */
+	protected void handleResult(TestCaseWrapper automatedTestCase, AbstractBuild<?, ?> build, BuildListener listener, TestLinkSite testlink, ExecutionStatus status, List<Suite> suiteResults) {
+		// The status is passed on, as other seekers may change the one of the test case
+		final ExecutionStatus testCaseStatus = automatedTestCase.getExecutionStatus(this.keyCustomField);
+		if(testCaseStatus != ExecutionStatus.NOT_RUN) {
 			try {
-				final int executionId = testlink.updateTestCase(automatedTestCase);
+				final int executionId = testlink.updateTestCase(automatedTestCase, testCaseStatus);
 				
-				if(executionId > 0 && this.isAttachTestNGXML()) {
-					Attachment attachment = build.getWorkspace().act( new FileCallable<Attachment>() {
-
-						private static final long serialVersionUID = -5411683541842375558L;
-
-						public Attachment invoke(File f,
-								VirtualChannel channel)
-								throws IOException,
-								InterruptedException {
-							
-							File reportFile = new File(suiteResult.getFile());
-							final Attachment attachment = new Attachment();
-							attachment.setContent(AbstractTestNGResultSeeker.this.getBase64FileContent(reportFile));
-							attachment.setDescription(reportFile.getName());
-							attachment.setFileName(reportFile.getName());
-							attachment.setFileSize(reportFile.length());
-							attachment.setFileType(TEXT_XML_CONTENT_TYPE);
-							attachment.setTitle(reportFile.getName());
-							
-							return attachment;
-						}
-					});
-					testlink.uploadAttachment(executionId, attachment);
+				final Set<String> attached = new HashSet<String>();
+				for(final Suite suiteResult : suiteResults) {
+					if(executionId <= 0 || !this.isAttachTestNGXML() || !attached.add(suiteResult.getFile())) {
+						continue;
+					}
+					// the file is read only when the test case is reported
+					final FilePath reportFile = new FilePath(build.getWorkspace().getChannel(), suiteResult.getFile());
+					testlink.uploadAttachment(executionId, reportFile, this.createAttachment(reportFile, TEXT_XML_CONTENT_TYPE));
 				}
 			} catch ( TestLinkAPIException te ) {
 				build.setResult(Result.UNSTABLE);
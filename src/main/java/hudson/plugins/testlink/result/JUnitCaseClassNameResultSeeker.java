@@ -28,16 +28,16 @@ import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
 import hudson.plugins.testlink.TestLinkSite;
+import hudson.plugins.testlink.junit.Case;
+import hudson.plugins.testlink.junit.Suite;
 import hudson.plugins.testlink.util.Messages;
-import hudson.tasks.junit.JUnitParser;
-import hudson.tasks.junit.SuiteResult;
-import hudson.tasks.junit.TestResult;
-import hudson.tasks.junit.CaseResult;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +52,12 @@ import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
  * 
  * <p>Skips JUnit Case Results that were disabled.</p>
  * 
+ * <p>With package prefixes, a key custom field value also matches the 
+ * classes in the packages under it, e.g. <code>com.acme.checkout</code> 
+ * matches <code>com.acme.checkout.CartTest</code>. The test case is updated 
+ * once, with the worst status of all these classes, and the result files of 
+ * all their suites are attached to its execution.</p>
+ * 
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @author Oliver Merkel - Merkel.Oliver at web.de
  * @since 3.1
@@ -59,17 +65,43 @@ import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
 public class JUnitCaseClassNameResultSeeker extends AbstractJUnitResultSeeker {
 
 	private static final long serialVersionUID = -7504474094868139409L;
+	
+	private boolean packagePrefix = false;
 
 	/**
 	 * @param includePattern Include pattern used when looking for results
 	 * @param keyCustomField Key custom field to match against the results
 	 * @param attachJunitXML Bit that enables attaching result file to TestLink
+	 * @deprecated since 3.1.9, use {@link #JUnitCaseClassNameResultSeeker(String, String, boolean, boolean, boolean, boolean)}
 	 */
-	@DataBoundConstructor
+	@Deprecated
 	public JUnitCaseClassNameResultSeeker(String includePattern, String keyCustomField, boolean attachJUnitXML, boolean includeNotes) {
 		super(includePattern, keyCustomField, attachJUnitXML, includeNotes);
 	}
 	
+	/**
+	 * @param includePattern Include pattern used when looking for results
+	 * @param keyCustomField Key custom field to match against the results
+	 * @param attachJUnitXML Bit that enables attaching result file to TestLink
+	 * @param includeNotes Bit that enables including notes
+	 * @param streamingParser Bit that enables the streaming JUnit parser
+	 * @param packagePrefix Bit that enables matching key custom field values as package prefixes
+	 * @since 3.1.9
+	 */
+	@DataBoundConstructor
+	public JUnitCaseClassNameResultSeeker(String includePattern, String keyCustomField, boolean attachJUnitXML, boolean includeNotes, boolean streamingParser, boolean packagePrefix) {
+		super(includePattern, keyCustomField, attachJUnitXML, includeNotes, streamingParser);
+		this.packagePrefix = packagePrefix;
+	}
+	
+	public void setPackagePrefix(boolean packagePrefix) {
+		this.packagePrefix = packagePrefix;
+	}
+	
+	public boolean isPackagePrefix() {
+		return packagePrefix;
+	}
+	
 	@Extension
 	public static class DescriptorImpl extends ResultSeekerDescriptor {
 		/*
@@ -87,46 +119,61 @@ public class JUnitCaseClassNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @see hudson.plugins.testlink.result.ResultSeeker#seekAndUpdate(hudson.plugins.testlink.result.TestCaseWrapper<?>[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite, hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
 		listener.getLogger().println( Messages.Results_JUnit_LookingForTestClasses() ); // i18n
 		try {
-			final JUnitParser parser = new JUnitParser(false);
-			final TestResult testResult = parser.parse(this.includePattern, build, launcher, listener);
+			final List<Suite> suites = this.parse(build, launcher, listener, resultFiles);
+			final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField, this.isPackagePrefix());
+			// With package prefixes, the test cases are updated after all the suites were seen, 
+			// and the files of all the suites under the prefix are attached
+			final Map<TestCaseWrapper, List<Suite>> packageTestCase = new LinkedHashMap<TestCaseWrapper, List<Suite>>();
 			
-			for(final SuiteResult suiteResult : testResult.getSuites()) {
+			for(final Suite suite : suites) {
 				
-				final List<CaseResult> caseResults = this.filter(suiteResult.getCases()); 
+				final List<Case> caseResults = this.filter(suite.getCases()); 
 				
 				// We need this map because a class has many case results, so we create a map by class name
 				final Map<String, TestCaseWrapper> classNameTestCase = new HashMap<String, TestCaseWrapper>();
 				
-				for(CaseResult caseResult : caseResults) {
-					for(TestCaseWrapper automatedTestCase : automatedTestCases) {
+				for(Case caseResult : caseResults) {
+					if(caseResult.isSkipped()) {
+						continue;
+					}
+					for(KeyCustomFieldMatcher.Match match : matcher.match(caseResult.getClassName())) {
+						final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
 						final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-						for(String value : commaSeparatedValues) {
-							if(! caseResult.isSkipped() && caseResult.getClassName().equals(value)) {
-								// A class can have many case results, so we check if the class has failed anywhere
-								//final ExecutionStatus previousStatus = automatedTestCase.getCustomFieldAndStatus().get(value);
-								final ExecutionStatus status = this.getExecutionStatus(caseResult);
-								automatedTestCase.addCustomFieldAndStatus(value, status);
-								
-								if(this.isIncludeNotes()) {
-									final String notes = this.getJUnitNotes(caseResult);
-									automatedTestCase.appendNotes(notes);
-								}
-								
-								classNameTestCase.put(Integer.valueOf(automatedTestCase.getId())+"#"+Arrays.toString(commaSeparatedValues), automatedTestCase);
-							}
+						// A class can have many case results, so we check if the class has failed anywhere
+						final ExecutionStatus status = this.getExecutionStatus(caseResult);
+						match.addStatus(status);
+						
+						if(this.isIncludeNotes()) {
+							final String notes = this.getJUnitNotes(caseResult);
+							automatedTestCase.appendNotes(notes);
 						}
+						
+						classNameTestCase.put(Integer.valueOf(automatedTestCase.getId())+"#"+Arrays.toString(commaSeparatedValues), automatedTestCase);
 					}
 				}
 				
 				// Here we update testlink with our findings
 				for(Map.Entry<String, TestCaseWrapper> entry : classNameTestCase.entrySet()) {
-					super.handleResult(entry.getValue(), build, listener, testlink, suiteResult);
+					if(this.isPackagePrefix()) {
+						List<Suite> matchedSuites = packageTestCase.get(entry.getValue());
+						if(matchedSuites == null) {
+							matchedSuites = new ArrayList<Suite>();
+							packageTestCase.put(entry.getValue(), matchedSuites);
+						}
+						matchedSuites.add(suite);
+					} else {
+						super.handleResult(entry.getValue(), build, listener, testlink, suite);
+					}
 				}
 			}
 			
+			for(Map.Entry<TestCaseWrapper, List<Suite>> entry : packageTestCase.entrySet()) {
+				super.handleResult(entry.getKey(), build, listener, testlink, entry.getValue());
+			}
+			
 		} catch (IOException e) {
 			throw new ResultSeekerException(e);
 		} catch (InterruptedException e) {
@@ -138,11 +185,11 @@ public class JUnitCaseClassNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param cases
 	 * @return
 	 */
-	private List<CaseResult> filter(List<CaseResult> cases) {
-		final List<CaseResult> filtered = new LinkedList<CaseResult>();
+	private List<Case> filter(List<Case> cases) {
+		final List<Case> filtered = new LinkedList<Case>();
 		
-		for(CaseResult caseResult : cases) {
-			final CaseResult c = this.find(filtered, caseResult);
+		for(Case caseResult : cases) {
+			final Case c = this.find(filtered, caseResult);
 			if(c != null) {
 				if(c.getFailCount()<=0) { // didn't fail
 					this.remove(filtered, c);
@@ -161,8 +208,8 @@ public class JUnitCaseClassNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param caseResult
 	 * @return
 	 */
-	private CaseResult find(List<CaseResult> filtered, CaseResult caseResult) {
-		for(CaseResult c : filtered) {
+	private Case find(List<Case> filtered, Case caseResult) {
+		for(Case c : filtered) {
 			if(c.getClassName().equals(caseResult.getClassName())) {
 				return c;
 			}
@@ -175,10 +222,10 @@ public class JUnitCaseClassNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param caseResult
 	 * @return
 	 */
-	private void remove(List<CaseResult> filtered, CaseResult caseResult) {
-		final Iterator<CaseResult> iterator = filtered.iterator();
+	private void remove(List<Case> filtered, Case caseResult) {
+		final Iterator<Case> iterator = filtered.iterator();
 		while(iterator.hasNext()) {
-			CaseResult c = iterator.next();
+			Case c = iterator.next();
 			if(c.getClassName().equals(caseResult.getClassName())) {
 				iterator.remove();
 			}
@@ -189,7 +236,7 @@ public class JUnitCaseClassNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param caseResult the case result
 	 * @return NOT_RUN in case it is skipped, PASSED if it passed, and FAILED otherwise
 	 */
-	private ExecutionStatus getExecutionStatus(CaseResult caseResult) {
+	private ExecutionStatus getExecutionStatus(Case caseResult) {
 		if(caseResult.isSkipped()) {
 			return ExecutionStatus.NOT_RUN;
 		} else if(caseResult.getFailCount() > 0) {
@@ -205,13 +252,13 @@ public class JUnitCaseClassNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param testCase JUnit test.
 	 * @return Notes about the JUnit test.
 	 */
-	private String getJUnitNotes( CaseResult testCase )
+	private String getJUnitNotes( Case testCase )
 	{
 		StringBuilder notes = new StringBuilder();
 		notes.append( 
 				Messages.Results_JUnit_NotesForTestClass(
 						testCase.getClassName(), 
-						(testCase.getSuiteResult() != null ? testCase.getSuiteResult().getTimestamp() : null))
+						(testCase.getSuite() != null ? testCase.getSuite().getTimestamp() : null))
 		);
 		
 		return notes.toString();
@@ -28,13 +28,12 @@ import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
 import hudson.plugins.testlink.TestLinkSite;
+import hudson.plugins.testlink.junit.Case;
+import hudson.plugins.testlink.junit.Suite;
 import hudson.plugins.testlink.util.Messages;
-import hudson.tasks.junit.JUnitParser;
-import hudson.tasks.junit.SuiteResult;
-import hudson.tasks.junit.TestResult;
-import hudson.tasks.junit.CaseResult;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 
@@ -59,12 +58,26 @@ public class JUnitMethodNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param includePattern Include pattern used when looking for results
 	 * @param keyCustomField Key custom field to match against the results
 	 * @param attachJunitXML Bit that enables attaching result file to TestLink
+	 * @deprecated since 3.1.9, use {@link #JUnitMethodNameResultSeeker(String, String, boolean, boolean, boolean)}
 	 */
-	@DataBoundConstructor
+	@Deprecated
 	public JUnitMethodNameResultSeeker(String includePattern, String keyCustomField, boolean attachJUnitXML, boolean includeNotes) {
 		super(includePattern, keyCustomField, attachJUnitXML, includeNotes);
 	}
 	
+	/**
+	 * @param includePattern Include pattern used when looking for results
+	 * @param keyCustomField Key custom field to match against the results
+	 * @param attachJUnitXML Bit that enables attaching result file to TestLink
+	 * @param includeNotes Bit that enables including notes
+	 * @param streamingParser Bit that enables the streaming JUnit parser
+	 * @since 3.1.9
+	 */
+	@DataBoundConstructor
+	public JUnitMethodNameResultSeeker(String includePattern, String keyCustomField, boolean attachJUnitXML, boolean includeNotes, boolean streamingParser) {
+		super(includePattern, keyCustomField, attachJUnitXML, includeNotes, streamingParser);
+	}
+	
 	@Extension
 	public static class DescriptorImpl extends ResultSeekerDescriptor {
 		/*
@@ -82,30 +95,29 @@ public class JUnitMethodNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @see hudson.plugins.testlink.result.ResultSeeker#seekAndUpdate(hudson.plugins.testlink.result.TestCaseWrapper<?>[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite, hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
 		listener.getLogger().println( Messages.Results_JUnit_LookingForTestMethods() ); // i18n
 		try {
-			final JUnitParser parser = new JUnitParser(false);
-			final TestResult testResult = parser.parse(this.includePattern, build, launcher, listener);
+			final List<Suite> suites = this.parse(build, launcher, listener, resultFiles);
+			final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField);
 			
-			for(final SuiteResult suiteResult : testResult.getSuites()) {
-				for(CaseResult caseResult : suiteResult.getCases()) {
+			for(final Suite suite : suites) {
+				for(Case caseResult : suite.getCases()) {
+					if(caseResult.isSkipped()) {
+						continue;
+					}
 					final String methodName = caseResult.getClassName() + "#" + caseResult.getName();
-					for(TestCaseWrapper automatedTestCase : automatedTestCases) {
-						final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-						for(String value : commaSeparatedValues) {
-							if(! caseResult.isSkipped() && methodName.equals(value)) {
-								final ExecutionStatus status = this.getExecutionStatus(caseResult);
-								automatedTestCase.addCustomFieldAndStatus(value, status);
-								
-								if(this.isIncludeNotes()) {
-									final String notes = this.getJUnitNotes(caseResult);
-									automatedTestCase.appendNotes(notes);
-								}
-								
-								super.handleResult(automatedTestCase, build, listener, testlink, suiteResult);
-							}
+					for(KeyCustomFieldMatcher.Match match : matcher.match(methodName)) {
+						final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
+						final ExecutionStatus status = this.getExecutionStatus(caseResult);
+						match.addStatus(status);
+						
+						if(this.isIncludeNotes()) {
+							final String notes = this.getJUnitNotes(caseResult);
+							automatedTestCase.appendNotes(notes);
 						}
+						
+						super.handleResult(automatedTestCase, build, listener, testlink, suite);
 					}
 				}
 			}
@@ -120,7 +132,7 @@ public class JUnitMethodNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param caseResult the case result
 	 * @return NOT_RUN in case it is skipped, PASSED if it passed, and FAILED otherwise
 	 */
-	private ExecutionStatus getExecutionStatus(CaseResult caseResult) {
+	private ExecutionStatus getExecutionStatus(Case caseResult) {
 		if(caseResult.isSkipped()) {
 			return ExecutionStatus.NOT_RUN;
 		} else if(caseResult.isPassed()) {
@@ -136,7 +148,7 @@ public class JUnitMethodNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * @param testCase JUnit test.
 	 * @return Notes about the JUnit test.
 	 */
-	private String getJUnitNotes( CaseResult testCase )
+	private String getJUnitNotes( Case testCase )
 	{
 		StringBuilder notes = new StringBuilder();
 		notes.append( 
@@ -145,7 +157,7 @@ public class JUnitMethodNameResultSeeker extends AbstractJUnitResultSeeker {
 						testCase.getClassName(), 
 						testCase.getSkipCount(), 
 						testCase.getFailCount(), 
-						(testCase.getSuiteResult() != null ? testCase.getSuiteResult().getTimestamp() : null))
+						(testCase.getSuite() != null ? testCase.getSuite().getTimestamp() : null))
 		);
 		
 		return notes.toString();
@@ -28,11 +28,9 @@ import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
 import hudson.plugins.testlink.TestLinkSite;
+import hudson.plugins.testlink.junit.Case;
+import hudson.plugins.testlink.junit.Suite;
 import hudson.plugins.testlink.util.Messages;
-import hudson.tasks.junit.JUnitParser;
-import hudson.tasks.junit.SuiteResult;
-import hudson.tasks.junit.TestResult;
-import hudson.tasks.junit.CaseResult;
 
 import java.io.IOException;
 import java.util.List;
@@ -57,11 +55,25 @@ public class JUnitSuiteNameResultSeeker extends AbstractJUnitResultSeeker {
 	/**
 	 * @param includePattern Include pattern used when looking for results
 	 * @param keyCustomField Key custom field to match against the results
+	 * @deprecated since 3.1.9, use {@link #JUnitSuiteNameResultSeeker(String, String, boolean, boolean, boolean)}
 	 */
-	@DataBoundConstructor
+	@Deprecated
 	public JUnitSuiteNameResultSeeker(String includePattern, String keyCustomField, boolean attachJUnitXML, boolean includeNotes) {
 		super(includePattern, keyCustomField, attachJUnitXML, includeNotes);
 	}
+	
+	/**
+	 * @param includePattern Include pattern used when looking for results
+	 * @param keyCustomField Key custom field to match against the results
+	 * @param attachJUnitXML Bit that enables attaching result file to TestLink
+	 * @param includeNotes Bit that enables including notes
+	 * @param streamingParser Bit that enables the streaming JUnit parser
+	 * @since 3.1.9
+	 */
+	@DataBoundConstructor
+	public JUnitSuiteNameResultSeeker(String includePattern, String keyCustomField, boolean attachJUnitXML, boolean includeNotes, boolean streamingParser) {
+		super(includePattern, keyCustomField, attachJUnitXML, includeNotes, streamingParser);
+	}
 
 	@Extension
 	public static class DescriptorImpl extends ResultSeekerDescriptor {
@@ -85,28 +97,24 @@ public class JUnitSuiteNameResultSeeker extends AbstractJUnitResultSeeker {
 	 * hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(TestCaseWrapper[] automatedTestCases,AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(TestCaseWrapper[] automatedTestCases,AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
 		listener.getLogger().println( Messages.Results_JUnit_LookingForTestSuites() );
 		try {
-			final JUnitParser parser = new JUnitParser(false);
-			final TestResult testResult = parser.parse(this.includePattern, build, launcher, listener);
+			final List<Suite> suites = this.parse(build, launcher, listener, resultFiles);
+			final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField);
 			
-			for(SuiteResult suiteResult : testResult.getSuites()) {
-				for(TestCaseWrapper automatedTestCase : automatedTestCases) {
-					final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-					for(String value : commaSeparatedValues) {
-						if(suiteResult.getName().equals(value)) {
-							ExecutionStatus status = this.getExecutionStatus(suiteResult);
-							automatedTestCase.addCustomFieldAndStatus(value, status);
-							
-							if(this.isIncludeNotes()) {
-								final String notes = this.getJUnitNotes(suiteResult);
-								automatedTestCase.appendNotes(notes);
-							}
-							
-							super.handleResult(automatedTestCase, build, listener, testlink, suiteResult);
-						}
+			for(Suite suite : suites) {
+				for(KeyCustomFieldMatcher.Match match : matcher.match(suite.getName())) {
+					final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
+					ExecutionStatus status = this.getExecutionStatus(suite);
+					match.addStatus(status);
+					
+					if(this.isIncludeNotes()) {
+						final String notes = this.getJUnitNotes(suite);
+						automatedTestCase.appendNotes(notes);
 					}
+					
+					super.handleResult(automatedTestCase, build, listener, testlink, suite);
 				}
 			}
 		} catch (IOException e) {
@@ -116,9 +124,9 @@ public class JUnitSuiteNameResultSeeker extends AbstractJUnitResultSeeker {
 		}
 	}
 	
-	private ExecutionStatus getExecutionStatus(SuiteResult suiteResult) {
-		List<CaseResult> cases = suiteResult.getCases();
-		for(CaseResult caseResult : cases) {
+	private ExecutionStatus getExecutionStatus(Suite suite) {
+		List<Case> cases = suite.getCases();
+		for(Case caseResult : cases) {
 			if(!caseResult.isPassed() && !caseResult.isSkipped()) { // Any error, invalidates the suite result
 				return ExecutionStatus.FAILED;
 			}
@@ -126,7 +134,7 @@ public class JUnitSuiteNameResultSeeker extends AbstractJUnitResultSeeker {
 		return ExecutionStatus.PASSED;
 	}
 	
-	private String getJUnitNotes( SuiteResult testSuite )
+	private String getJUnitNotes( Suite testSuite )
 	{
 		final StringBuilder notes = new StringBuilder();
 		notes.append(
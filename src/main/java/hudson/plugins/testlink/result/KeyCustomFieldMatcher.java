@@ -0,0 +1,431 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * <p>Matches result names (class names, method names, suite names, file 
+ * names...) against the key custom field values of the automated test 
+ * cases.</p>
+ * 
+ * <p>A key custom field value may be a plain value, a glob prefixed with 
+ * <code>glob:</code> (<code>*</code> matches any sequence of characters and 
+ * <code>?</code> any single character, e.g. 
+ * <code>glob:com.acme.checkout.*Test</code>) or a regular expression 
+ * prefixed with <code>regex:</code>. Without a prefix, <code>*</code> and 
+ * <code>?</code> are literal characters, as before. The values are compiled 
+ * once: plain values go to a hash map, globs are indexed in a trie by their 
+ * literal prefix and only the remaining regular expressions are checked 
+ * one by one. So matching a name costs time linear in the length of the 
+ * name, not in the number of key custom field values.</p>
+ * 
+ * <p>With package prefixes enabled, plain values are indexed in a trie of 
+ * dotted segments instead, and a value matches the name equal to it and 
+ * every name under it. For instance <code>com.acme.checkout</code> matches 
+ * <code>com.acme.checkout.CartTest</code> and 
+ * <code>com.acme.checkout.payment.CardTest</code>, but not 
+ * <code>com.acme.checkoutv2.CartTest</code>. The statuses of all the 
+ * results under a prefix are aggregated, as for patterns.</p>
+ * 
+ * <p>The automated test cases are not serialized, so a matcher can be sent 
+ * to a slave to check names with {@link #matches(String)}.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class KeyCustomFieldMatcher implements Serializable {
+
+	private static final long serialVersionUID = -2707342961431102236L;
+	
+	/**
+	 * Prefix of key custom field values that are regular expressions.
+	 */
+	public static final String REGEX_PREFIX = "regex:";
+	
+	/**
+	 * Prefix of key custom field values that are globs.
+	 */
+	public static final String GLOB_PREFIX = "glob:";
+	
+	private transient TestCaseWrapper[] automatedTestCases;
+	
+	private final Map<String, List<Target>> values = new HashMap<String, List<Target>>();
+	
+	private final Node globs = new Node();
+	
+	private final Segment packages;
+	
+	private final List<Target> regexes = new ArrayList<Target>();
+	
+	private int patterns = 0;
+	
+	/**
+	 * @param automatedTestCases automated test cases
+	 * @param keyCustomField key custom field name
+	 */
+	public KeyCustomFieldMatcher(TestCaseWrapper[] automatedTestCases, String keyCustomField) {
+		this(automatedTestCases, keyCustomField, false);
+	}
+	
+	/**
+	 * @param automatedTestCases automated test cases
+	 * @param keyCustomField key custom field name
+	 * @param packagePrefixes whether plain values match the dotted names 
+	 * under them too
+	 */
+	public KeyCustomFieldMatcher(TestCaseWrapper[] automatedTestCases, String keyCustomField, boolean packagePrefixes) {
+		this.automatedTestCases = automatedTestCases;
+		this.packages = packagePrefixes ? new Segment() : null;
+		for(int i = 0 ; i < automatedTestCases.length ; ++i) {
+			final String[] commaSeparatedValues = automatedTestCases[i].getKeyCustomFieldValues(keyCustomField);
+			for(int j = 0 ; j < commaSeparatedValues.length ; ++j) {
+				this.add(new Target(i, j, commaSeparatedValues[j]));
+			}
+		}
+	}
+	
+	private void add(Target target) {
+		final String value = target.value;
+		if(value.startsWith(REGEX_PREFIX)) {
+			try {
+				target.pattern = Pattern.compile(value.substring(REGEX_PREFIX.length()));
+				regexes.add(target);
+				patterns++;
+				return;
+			} catch (PatternSyntaxException pse) {
+				// Not a valid regular expression, so it is matched as a plain value
+			}
+		}
+		if(value.startsWith(GLOB_PREFIX)) {
+			final String glob = value.substring(GLOB_PREFIX.length());
+			final int wildcard = indexOfWildcard(glob);
+			final int literal = wildcard < 0 ? glob.length() : wildcard;
+			target.pattern = globToPattern(glob);
+			Node node = globs;
+			for(int i = 0 ; i < literal ; ++i) {
+				node = node.child(glob.charAt(i), true);
+			}
+			if(node.targets == null) {
+				node.targets = new ArrayList<Target>(1);
+			}
+			node.targets.add(target);
+			patterns++;
+		} else if(packages != null) {
+			Segment segment = packages;
+			int start = 0;
+			for(int end = value.indexOf('.') ; end >= 0 ; start = end + 1, end = value.indexOf('.', start)) {
+				segment = segment.child(value.substring(start, end), true);
+			}
+			segment = segment.child(value.substring(start), true);
+			if(segment.targets == null) {
+				segment.targets = new ArrayList<Target>(1);
+			}
+			target.prefix = true;
+			segment.targets.add(target);
+			patterns++;
+		} else {
+			List<Target> targets = values.get(value);
+			if(targets == null) {
+				targets = new ArrayList<Target>(1);
+				values.put(value, targets);
+			}
+			targets.add(target);
+		}
+	}
+	
+	/**
+	 * @return <code>true</code> if any key custom field value is a glob, a 
+	 * regular expression or a package prefix
+	 */
+	public boolean hasPatterns() {
+		return patterns > 0;
+	}
+	
+	/**
+	 * @param value key custom field value
+	 * @return <code>true</code> if the value is a glob or a regular expression
+	 */
+	public static boolean isPattern(String value) {
+		return value.startsWith(REGEX_PREFIX) || value.startsWith(GLOB_PREFIX);
+	}
+	
+	/**
+	 * @param name result name
+	 * @return <code>true</code> if any key custom field value matches the name
+	 */
+	public boolean matches(String name) {
+		return name != null && this.find(name, null);
+	}
+	
+	/**
+	 * Finds the key custom field values matching a result name. The matches 
+	 * are returned in the order of the automated test cases, and of the 
+	 * comma separated values of each test case.
+	 * 
+	 * @param name result name
+	 * @return matches, or an empty list
+	 */
+	public List<Match> match(String name) {
+		if(name == null) {
+			return Collections.emptyList();
+		}
+		final List<Target> found = new LinkedList<Target>();
+		this.find(name, found);
+		if(found.isEmpty()) {
+			return Collections.emptyList();
+		}
+		if(found.size() > 1) {
+			Collections.sort(found);
+		}
+		final List<Match> matches = new ArrayList<Match>(found.size());
+		for(Target target : found) {
+			matches.add(new Match(automatedTestCases[target.testCase], target.value, target.prefix || target.pattern != null));
+		}
+		return matches;
+	}
+	
+	/**
+	 * @param name result name
+	 * @param found list where the matching values are added, or 
+	 * <code>null</code> to stop at the first match
+	 * @return <code>true</code> if any value matched
+	 */
+	private boolean find(String name, List<Target> found) {
+		boolean matched = false;
+		final List<Target> exact = values.get(name);
+		if(exact != null) {
+			if(found == null) {
+				return true;
+			}
+			found.addAll(exact);
+			matched = true;
+		}
+		if(packages != null) {
+			Segment segment = packages;
+			int start = 0;
+			while(segment != null) {
+				final int end = name.indexOf('.', start);
+				segment = segment.child(end < 0 ? name.substring(start) : name.substring(start, end), false);
+				if(segment != null && segment.targets != null) {
+					if(found == null) {
+						return true;
+					}
+					found.addAll(segment.targets);
+					matched = true;
+				}
+				if(end < 0) {
+					break;
+				}
+				start = end + 1;
+			}
+		}
+		Node node = globs;
+		for(int i = 0 ; node != null ; ++i) {
+			if(node.targets != null) {
+				for(Target target : node.targets) {
+					if(target.pattern.matcher(name).matches()) {
+						if(found == null) {
+							return true;
+						}
+						found.add(target);
+						matched = true;
+					}
+				}
+			}
+			node = i < name.length() ? node.child(name.charAt(i), false) : null;
+		}
+		for(Target target : regexes) {
+			if(target.pattern.matcher(name).matches()) {
+				if(found == null) {
+					return true;
+				}
+				found.add(target);
+				matched = true;
+			}
+		}
+		return matched;
+	}
+	
+	private static int indexOfWildcard(String value) {
+		for(int i = 0 ; i < value.length() ; ++i) {
+			final char c = value.charAt(i);
+			if(c == '*' || c == '?') {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private static Pattern globToPattern(String glob) {
+		final StringBuilder regex = new StringBuilder();
+		final StringBuilder literal = new StringBuilder();
+		for(int i = 0 ; i < glob.length() ; ++i) {
+			final char c = glob.charAt(i);
+			if(c == '*' || c == '?') {
+				if(literal.length() > 0) {
+					regex.append(Pattern.quote(literal.toString()));
+					literal.setLength(0);
+				}
+				regex.append(c == '*' ? ".*" : ".");
+			} else {
+				literal.append(c);
+			}
+		}
+		if(literal.length() > 0) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+	
+	/**
+	 * A key custom field value of an automated test case.
+	 */
+	private static final class Target implements Serializable, Comparable<Target> {
+		private static final long serialVersionUID = 1L;
+		private final int testCase;
+		private final int index;
+		private final String value;
+		private Pattern pattern;
+		private boolean prefix;
+		
+		Target(int testCase, int index, String value) {
+			this.testCase = testCase;
+			this.index = index;
+			this.value = value;
+		}
+		
+		public int compareTo(Target o) {
+			if(testCase != o.testCase) {
+				return testCase < o.testCase ? -1 : 1;
+			}
+			return index < o.index ? -1 : (index == o.index ? 0 : 1);
+		}
+	}
+	
+	/**
+	 * Trie node, indexed by the literal prefix of the globs.
+	 */
+	private static final class Node implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private Map<Character, Node> children;
+		private List<Target> targets;
+		
+		Node child(char c, boolean create) {
+			Node child = children != null ? children.get(Character.valueOf(c)) : null;
+			if(child == null && create) {
+				if(children == null) {
+					children = new HashMap<Character, Node>();
+				}
+				child = new Node();
+				children.put(Character.valueOf(c), child);
+			}
+			return child;
+		}
+	}
+	
+	/**
+	 * Trie node of dotted name segments, for package prefixes.
+	 */
+	private static final class Segment implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private Map<String, Segment> children;
+		private List<Target> targets;
+		
+		Segment child(String name, boolean create) {
+			Segment child = children != null ? children.get(name) : null;
+			if(child == null && create) {
+				if(children == null) {
+					children = new HashMap<String, Segment>();
+				}
+				child = new Segment();
+				children.put(name, child);
+			}
+			return child;
+		}
+	}
+	
+	/**
+	 * A key custom field value matching a result name.
+	 */
+	public static final class Match {
+		private final TestCaseWrapper automatedTestCase;
+		private final String value;
+		private final boolean pattern;
+		
+		Match(TestCaseWrapper automatedTestCase, String value, boolean pattern) {
+			this.automatedTestCase = automatedTestCase;
+			this.value = value;
+			this.pattern = pattern;
+		}
+		
+		/**
+		 * @return the automated test case
+		 */
+		public TestCaseWrapper getAutomatedTestCase() {
+			return automatedTestCase;
+		}
+		
+		/**
+		 * @return the key custom field value
+		 */
+		public String getValue() {
+			return value;
+		}
+		
+		/**
+		 * @return <code>true</code> if the value is a glob, a regular 
+		 * expression or a package prefix, that may match many results
+		 */
+		public boolean isPattern() {
+			return pattern;
+		}
+		
+		/**
+		 * Adds the status of a result to the automated test case. As a 
+		 * pattern may match many results, the worst status is kept for 
+		 * patterns.
+		 * 
+		 * @param status execution status of the result
+		 */
+		public void addStatus(ExecutionStatus status) {
+			if(pattern) {
+				automatedTestCase.mergeCustomFieldAndStatus(value, status);
+			} else {
+				automatedTestCase.addCustomFieldAndStatus(value, status);
+			}
+		}
+	}
+
+}
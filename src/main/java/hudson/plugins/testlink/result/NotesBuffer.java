@@ -0,0 +1,328 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import hudson.plugins.testlink.util.Messages;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * <p>Execution notes of a test case, bounded to a maximum size.</p>
+ * 
+ * <p>While the notes fit in the maximum size they are kept as they are. 
+ * Once they grow past it, only the first and the last half of the maximum 
+ * size are kept in memory, and the whole notes are written to a spill file, 
+ * when one is set. The text sent to TestLink is the head and the tail of the 
+ * notes, with a line telling how much was left out and where the whole 
+ * notes are.</p>
+ * 
+ * <p>The maximum size is in bytes of the notes encoded in UTF-8, as sent to 
+ * TestLink. It is set by the TestLink builder, and defaults to the 
+ * <code>hudson.plugins.testlink.result.NotesBuffer.maxSize</code> system 
+ * property, or to {@value #DEFAULT_MAX_SIZE}.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class NotesBuffer implements Serializable {
+
+	private static final long serialVersionUID = -2118432905489283165L;
+	
+	private static final Logger LOGGER = Logger.getLogger("hudson.plugins.testlink");
+	
+	/**
+	 * Default maximum size of the notes, in bytes.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 32 * 1024;
+	
+	/**
+	 * System property with the default maximum size of the notes, in bytes.
+	 */
+	public static final String MAX_SIZE_PROPERTY = NotesBuffer.class.getName() + ".maxSize";
+	
+	private int maxSize;
+	
+	/**
+	 * The whole notes while they fit, and then their head.
+	 */
+	private final StringBuilder head = new StringBuilder();
+	
+	/**
+	 * Size of the head, in bytes.
+	 */
+	private int headSize = 0;
+	
+	/**
+	 * The last characters of the notes, once they do not fit.
+	 */
+	private StringBuilder tail = null;
+	
+	/**
+	 * Size of the tail, in bytes.
+	 */
+	private int tailSize = 0;
+	
+	/**
+	 * Number of bytes appended.
+	 */
+	private long length = 0L;
+	
+	/**
+	 * File where the whole notes are written once they do not fit.
+	 */
+	private File spillFile = null;
+	
+	private boolean spilled = false;
+	
+	/**
+	 * Open while the notes are spilled, closed when they are read.
+	 */
+	private transient Writer spillWriter = null;
+	
+	public NotesBuffer() {
+		this(getDefaultMaxSize());
+	}
+	
+	/**
+	 * @param maxSize maximum size, in bytes
+	 */
+	public NotesBuffer(int maxSize) {
+		this.maxSize = Math.max(maxSize, 2);
+	}
+	
+	/**
+	 * @return the maximum size of the notes, in bytes, when none is set
+	 */
+	public static int getDefaultMaxSize() {
+		return Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+	}
+	
+	/**
+	 * @param maxSize maximum size, in bytes
+	 * @throws IllegalStateException if notes were already appended
+	 */
+	public void setMaxSize(int maxSize) {
+		if(length > 0) {
+			throw new IllegalStateException("The maximum size of the notes must be set before appending notes");
+		}
+		this.maxSize = Math.max(maxSize, 2);
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * @param spillFile file where the whole notes are written once they 
+	 * do not fit, or <code>null</code> to discard what does not fit
+	 */
+	public void setSpillFile(File spillFile) {
+		this.close();
+		this.spillFile = spillFile;
+		this.spilled = false;
+	}
+	
+	public File getSpillFile() {
+		return spillFile;
+	}
+	
+	/**
+	 * @return whether some of the notes were left out
+	 */
+	public boolean isTruncated() {
+		return tail != null;
+	}
+	
+	/**
+	 * @return number of bytes appended
+	 */
+	public long length() {
+		return length;
+	}
+	
+	/**
+	 * @param notes notes to append
+	 */
+	public void append(String notes) {
+		if(notes == null || notes.length() == 0) {
+			return;
+		}
+		final int size = utf8Length(notes, 0, notes.length());
+		length += size;
+		if(tail == null) {
+			if(headSize + size <= maxSize) {
+				head.append(notes);
+				headSize += size;
+				return;
+			}
+			// The notes do not fit anymore, so we keep the head and the tail
+			this.spill(head.toString());
+			this.spill(notes);
+			final int maxHeadSize = maxSize / 2;
+			tail = new StringBuilder();
+			if(headSize > maxHeadSize) {
+				final int end = prefixEnd(head, maxHeadSize);
+				tail.append(head, end, head.length());
+				tailSize = headSize - utf8Length(head, 0, end);
+				head.setLength(end);
+				headSize -= tailSize;
+			} else {
+				final int end = prefixEnd(notes, maxHeadSize - headSize);
+				head.append(notes, 0, end);
+				headSize += utf8Length(notes, 0, end);
+			}
+		} else {
+			this.spill(notes);
+		}
+		tail.append(notes);
+		tailSize += size;
+		final int maxTailSize = maxSize - maxSize / 2;
+		if(tailSize > maxTailSize) {
+			int start = 0;
+			while(tailSize > maxTailSize) {
+				final int charCount = Character.isHighSurrogate(tail.charAt(start)) && start + 1 < tail.length() ? 2 : 1;
+				tailSize -= utf8Length(tail, start, start + charCount);
+				start += charCount;
+			}
+			tail.delete(0, start);
+		}
+	}
+	
+	/**
+	 * @return index of the end of the longest prefix of the text that fits 
+	 * in the given size, in bytes, without splitting a character
+	 */
+	private static int prefixEnd(CharSequence text, int maxSize) {
+		int size = 0;
+		int end = 0;
+		while(end < text.length()) {
+			final int charCount = Character.isHighSurrogate(text.charAt(end)) && end + 1 < text.length() ? 2 : 1;
+			final int charSize = utf8Length(text, end, end + charCount);
+			if(size + charSize > maxSize) {
+				break;
+			}
+			size += charSize;
+			end += charCount;
+		}
+		return end;
+	}
+	
+	/**
+	 * @return size of part of a text encoded in UTF-8, in bytes
+	 */
+	static int utf8Length(CharSequence text, int start, int end) {
+		int size = 0;
+		for(int i = start; i < end; ++i) {
+			final char c = text.charAt(i);
+			if(c < 0x80) {
+				size += 1;
+			} else if(c < 0x800) {
+				size += 2;
+			} else if(Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+				size += 4;
+				++i;
+			} else {
+				size += 3;
+			}
+		}
+		return size;
+	}
+	
+	/**
+	 * Appends to the spill file, if any. The file is kept open until the 
+	 * notes are read. If writing fails, the rest of the notes is not 
+	 * spilled.
+	 */
+	private void spill(String notes) {
+		if(spillFile == null) {
+			return;
+		}
+		try {
+			if(spillWriter == null) {
+				if(!spilled) {
+					spillFile.getParentFile().mkdirs();
+				}
+				spillWriter = new OutputStreamWriter(new FileOutputStream(spillFile, spilled), "UTF-8");
+				spilled = true;
+			}
+			spillWriter.write(notes);
+			spillWriter.flush();
+		} catch (IOException ioe) {
+			LOGGER.log(Level.WARNING, "Failed to write test case notes to " + spillFile, ioe);
+			this.close();
+			spillFile = null;
+		}
+	}
+	
+	/**
+	 * Closes the spill file, if open. Notes appended later are appended to 
+	 * it again.
+	 */
+	public void close() {
+		IOUtils.closeQuietly(spillWriter);
+		spillWriter = null;
+	}
+	
+	/**
+	 * Computes the sizes, in bytes, of notes saved before they were 
+	 * measured in bytes.
+	 */
+	private Object readResolve() {
+		headSize = utf8Length(head, 0, head.length());
+		tailSize = tail != null ? utf8Length(tail, 0, tail.length()) : 0;
+		return this;
+	}
+	
+	/**
+	 * Closes the spill file, as the notes are read once they are complete.
+	 * 
+	 * @return the notes, or their head and tail if they did not fit
+	 */
+	@Override
+	public String toString() {
+		this.close();
+		if(tail == null) {
+			return head.toString();
+		}
+		final long omitted = length - headSize - tailSize;
+		final String marker = spillFile != null && spilled ? 
+				Messages.Results_NotesTruncatedAndSpilled(omitted, spillFile.getName()) : 
+				Messages.Results_NotesTruncated(omitted);
+		return new StringBuilder(head.length() + marker.length() + tail.length())
+			.append(head)
+			.append(marker)
+			.append(tail)
+			.toString();
+	}
+
+}
@@ -0,0 +1,245 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import hudson.model.AbstractBuild;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * <p>Manifest of the result files read by the result seekers in a build.</p>
+ * 
+ * <p>For each file, relative to the workspace, it records the size, the 
+ * last modified time and the MD5 digest of its content. It is stored in the 
+ * build directory once the results were reported to TestLink, and used by 
+ * the next builds to ignore result files that did not change.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class ResultFileManifest implements Serializable {
+
+	private static final long serialVersionUID = 2826931937620848613L;
+
+	/**
+	 * Name of the manifest file in the build directory.
+	 */
+	public static final String FILE_NAME = "testlink-result-files.txt";
+	
+	private static final String SEPARATOR = "\t";
+	
+	/**
+	 * Entries by workspace relative path.
+	 */
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+	
+	public ResultFileManifest() {
+		super();
+	}
+	
+	/**
+	 * @return number of files in this manifest
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Records a result file.
+	 * 
+	 * @param workspace the workspace
+	 * @param path path of the file relative to the workspace
+	 * @throws IOException if the file cannot be read
+	 */
+	public void record(File workspace, String path) throws IOException {
+		this.record(workspace, path, null);
+	}
+	
+	/**
+	 * Records a result file, and compares it with a previous manifest. The 
+	 * content is not hashed again when the file has the same size and last 
+	 * modified time it had in the previous manifest.
+	 * 
+	 * @param workspace the workspace
+	 * @param path path of the file relative to the workspace
+	 * @param previous manifest of a previous build, may be <code>null</code>
+	 * @return true if the file did not change since the previous manifest
+	 * @throws IOException if the file cannot be read
+	 */
+	public boolean record(File workspace, String path, ResultFileManifest previous) throws IOException {
+		final String key = normalize(path);
+		final File file = new File(workspace, path);
+		final long length = file.length();
+		final long lastModified = file.lastModified();
+		final Entry previousEntry = previous != null ? previous.entries.get(key) : null;
+		final Entry entry;
+		if(previousEntry != null && previousEntry.length == length && previousEntry.lastModified == lastModified) {
+			entry = previousEntry;
+		} else {
+			entry = new Entry(length, lastModified, digest(file));
+		}
+		entries.put(key, entry);
+		return previousEntry != null && previousEntry.length == length && previousEntry.digest.equals(entry.digest);
+	}
+	
+	/**
+	 * Adds the files of another manifest.
+	 * 
+	 * @param other the other manifest
+	 */
+	public void addAll(ResultFileManifest other) {
+		entries.putAll(other.entries);
+	}
+	
+	/**
+	 * Whether a result file has the same content it had when it was recorded 
+	 * in this manifest. The content is only hashed when the file has the same 
+	 * size but a different last modified time.
+	 * 
+	 * @param workspace the workspace
+	 * @param path path of the file relative to the workspace
+	 * @return true if the file did not change
+	 * @throws IOException if the file cannot be read
+	 */
+	public boolean isUnchanged(File workspace, String path) throws IOException {
+		final Entry entry = entries.get(normalize(path));
+		if(entry == null) {
+			return false;
+		}
+		final File file = new File(workspace, path);
+		if(file.length() != entry.length) {
+			return false;
+		}
+		if(file.lastModified() == entry.lastModified) {
+			return true;
+		}
+		return digest(file).equals(entry.digest);
+	}
+	
+	/**
+	 * Saves this manifest.
+	 * 
+	 * @param file the manifest file
+	 * @throws IOException
+	 */
+	public void save(File file) throws IOException {
+		final List<String> lines = new ArrayList<String>(entries.size());
+		for(Map.Entry<String, Entry> e : entries.entrySet()) {
+			final Entry entry = e.getValue();
+			lines.add(entry.digest + SEPARATOR + entry.length + SEPARATOR + entry.lastModified + SEPARATOR + e.getKey());
+		}
+		FileUtils.writeLines(file, "UTF-8", lines);
+	}
+	
+	/**
+	 * Loads a manifest.
+	 * 
+	 * @param file the manifest file
+	 * @return the manifest, or <code>null</code> if the file does not exist
+	 * @throws IOException
+	 */
+	public static ResultFileManifest load(File file) throws IOException {
+		if(!file.isFile()) {
+			return null;
+		}
+		final ResultFileManifest manifest = new ResultFileManifest();
+		for(String line : FileUtils.readLines(file, "UTF-8")) {
+			final String[] fields = StringUtils.split(line, SEPARATOR, 4);
+			if(fields.length == 4) {
+				try {
+					manifest.entries.put(fields[3], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+				} catch (NumberFormatException nfe) {
+					// ignore the corrupted entry, the file will be read again
+				}
+			}
+		}
+		return manifest;
+	}
+	
+	/**
+	 * Loads the manifest of the last build, before the given one, that 
+	 * recorded its result files. A build only records them once all its 
+	 * results were reported, so builds that failed before, or could not 
+	 * report some of them, are skipped. So are builds still running.
+	 * 
+	 * @param build the current build
+	 * @return the manifest, or <code>null</code> if there is none
+	 * @throws IOException
+	 */
+	public static ResultFileManifest loadPrevious(AbstractBuild<?, ?> build) throws IOException {
+		for(AbstractBuild<?, ?> previous = build.getPreviousBuild(); previous != null; previous = previous.getPreviousBuild()) {
+			if(previous.isBuilding()) {
+				continue;
+			}
+			final ResultFileManifest manifest = load(new File(previous.getRootDir(), FILE_NAME));
+			if(manifest != null) {
+				return manifest;
+			}
+		}
+		return null;
+	}
+	
+	private static String normalize(String path) {
+		return path.replace('\\', '/');
+	}
+	
+	private static String digest(File file) throws IOException {
+		InputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			return DigestUtils.md5Hex(input);
+		} finally {
+			IOUtils.closeQuietly(input);
+		}
+	}
+	
+	private static final class Entry implements Serializable {
+		
+		private static final long serialVersionUID = -1283465926420930717L;
+		
+		private final long length;
+		private final long lastModified;
+		private final String digest;
+		
+		Entry(long length, long lastModified, String digest) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.digest = digest;
+		}
+	}
+	
+}
@@ -0,0 +1,279 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+/**
+ * <p>Scans a directory for result files matching a comma separated list of 
+ * Ant include patterns.</p>
+ * 
+ * <p>Finds the same files as an Ant <code>FileSet</code> created with 
+ * <code>hudson.Util#createFileSet(File, String)</code>, default excludes 
+ * included, but does not enter directories that cannot contain any 
+ * matching file (e.g. <code>node_modules</code> for 
+ * <code>target/surefire-reports/*.xml</code>), nor directories excluded by 
+ * default (e.g. <code>.git</code>). Directories are walked without 
+ * recursion, one directory listing at a time, and symbolic links pointing 
+ * to one of their parent directories are not followed.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class ResultFileScanner {
+
+	private static final Logger LOGGER = Logger.getLogger("hudson.plugins.testlink");
+	
+	private static final String DEEP_TREE_MATCH = "**";
+	
+	private final String[] includes;
+	
+	private final String[] excludes;
+	
+	private int directories;
+	
+	private int files;
+	
+	private int pruned;
+	
+	private long elapsed;
+	
+	/**
+	 * @param includes comma separated list of include patterns
+	 */
+	public ResultFileScanner(String includes) {
+		super();
+		this.includes = normalize(tokenize(includes));
+		this.excludes = normalize(DirectoryScanner.getDefaultExcludes());
+	}
+	
+	/**
+	 * Scans a directory.
+	 * 
+	 * @param baseDir the directory
+	 * @return paths of the matching files, relative to the directory, sorted
+	 * @throws IOException if a directory cannot be resolved
+	 */
+	public String[] scan(File baseDir) throws IOException {
+		final long start = System.currentTimeMillis();
+		directories = 0;
+		files = 0;
+		pruned = 0;
+		
+		final List<String> included = new ArrayList<String>();
+		if(includes.length > 0 && baseDir.isDirectory()) {
+			final LinkedList<Directory> pending = new LinkedList<Directory>();
+			pending.add(new Directory(baseDir, "", null));
+			
+			while(!pending.isEmpty()) {
+				final Directory directory = pending.removeLast();
+				final File[] children = directory.file.listFiles();
+				directories++;
+				if(children == null) {
+					continue;
+				}
+				for(File child : children) {
+					final String path = directory.path.length() == 0 ? child.getName() : directory.path + File.separatorChar + child.getName();
+					if(child.isDirectory()) {
+						if(couldHoldIncluded(path) && !contentsExcluded(path)) {
+							final Directory subdirectory = new Directory(child, path, directory);
+							if(subdirectory.isLoop()) {
+								LOGGER.log(Level.FINE, "Not following symbolic link loop: " + child);
+							} else {
+								pending.add(subdirectory);
+							}
+						} else {
+							pruned++;
+						}
+					} else {
+						files++;
+						if(isIncluded(path) && !isExcluded(path)) {
+							included.add(path);
+						}
+					}
+				}
+			}
+		}
+		
+		final String[] fileNames = included.toArray(new String[included.size()]);
+		Arrays.sort(fileNames);
+		elapsed = System.currentTimeMillis() - start;
+		
+		if(LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.log(Level.FINE, "Scanned " + directories + " directories and " + files + " files in " + elapsed + " ms, " + pruned + " directories skipped.");
+		}
+		
+		return fileNames;
+	}
+	
+	/**
+	 * @return number of directories listed in the last scan
+	 */
+	public int getDirectories() {
+		return directories;
+	}
+	
+	/**
+	 * @return number of files checked in the last scan
+	 */
+	public int getFiles() {
+		return files;
+	}
+	
+	/**
+	 * @return number of directories not entered in the last scan
+	 */
+	public int getPruned() {
+		return pruned;
+	}
+	
+	/**
+	 * @return duration of the last scan, in milliseconds
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+	
+	private boolean isIncluded(String path) {
+		for(String include : includes) {
+			if(SelectorUtils.matchPath(include, path, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private boolean isExcluded(String path) {
+		for(String exclude : excludes) {
+			if(SelectorUtils.matchPath(exclude, path, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Whether a directory may contain a file matching an include pattern.
+	 */
+	private boolean couldHoldIncluded(String path) {
+		for(String include : includes) {
+			if(SelectorUtils.matchPatternStart(include, path, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Whether everything within a directory is excluded, as Ant does.
+	 */
+	private boolean contentsExcluded(String path) {
+		final String directory = path + File.separatorChar;
+		for(String exclude : excludes) {
+			if(exclude.endsWith(DEEP_TREE_MATCH) && SelectorUtils.matchPath(exclude.substring(0, exclude.length() - 2), directory, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static String[] tokenize(String includes) {
+		final List<String> patterns = new ArrayList<String>();
+		if(includes != null) {
+			final StringTokenizer tokens = new StringTokenizer(includes, ",");
+			while(tokens.hasMoreTokens()) {
+				final String token = tokens.nextToken().trim();
+				if(token.length() > 0) {
+					patterns.add(token);
+				}
+			}
+		}
+		return patterns.toArray(new String[patterns.size()]);
+	}
+	
+	/**
+	 * Normalizes patterns as Ant does: uses the platform separator, and 
+	 * patterns ending with a separator match everything beneath it.
+	 */
+	private static String[] normalize(String[] patterns) {
+		final String[] normalized = new String[patterns.length];
+		for(int i = 0; i < patterns.length; i++) {
+			String pattern = patterns[i].replace('/', File.separatorChar).replace('\\', File.separatorChar);
+			if(pattern.endsWith(File.separator)) {
+				pattern += DEEP_TREE_MATCH;
+			}
+			normalized[i] = pattern;
+		}
+		return normalized;
+	}
+	
+	/**
+	 * A directory waiting to be listed.
+	 */
+	private static final class Directory {
+		private final File file;
+		private final String path;
+		private final Directory parent;
+		private String canonicalPath;
+		
+		Directory(File file, String path, Directory parent) {
+			this.file = file;
+			this.path = path;
+			this.parent = parent;
+		}
+		
+		private String getCanonicalPath() throws IOException {
+			if(canonicalPath == null) {
+				canonicalPath = file.getCanonicalPath();
+			}
+			return canonicalPath;
+		}
+		
+		/**
+		 * Whether this directory is one of its parents, reached through a 
+		 * symbolic link.
+		 */
+		boolean isLoop() throws IOException {
+			final String canonical = this.getCanonicalPath();
+			for(Directory ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+				if(canonical.equals(ancestor.getCanonicalPath())) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+}
@@ -0,0 +1,132 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.Serializable;
+
+/**
+ * <p>Result files of a build, created by the TestLink builder and passed to 
+ * the result seekers.</p>
+ * 
+ * <p>Holds the manifest of a previous build, used to ignore the result files 
+ * that did not change since, and collects the result files read by the 
+ * result seekers in this build. The builder saves them once their results 
+ * were reported to TestLink.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class ResultFileTracker {
+
+	/**
+	 * Result files of a previous build, or <code>null</code>.
+	 */
+	private final ResultFileManifest previousResultFiles;
+	
+	/**
+	 * Result files read by the result seekers in this build.
+	 */
+	private final ResultFileManifest readResultFiles = new ResultFileManifest();
+	
+	/**
+	 * @param previousResultFiles result files of a previous build, or 
+	 * <code>null</code> to read every result file found
+	 */
+	public ResultFileTracker(ResultFileManifest previousResultFiles) {
+		super();
+		this.previousResultFiles = previousResultFiles;
+	}
+	
+	/**
+	 * @return result files of a previous build, or <code>null</code>
+	 */
+	public ResultFileManifest getPreviousResultFiles() {
+		return previousResultFiles;
+	}
+	
+	/**
+	 * @return result files read by the result seekers in this build
+	 */
+	public ResultFileManifest getReadResultFiles() {
+		synchronized (readResultFiles) {
+			final ResultFileManifest copy = new ResultFileManifest();
+			copy.addAll(readResultFiles);
+			return copy;
+		}
+	}
+	
+	/**
+	 * Adds the result files read by a result seeker, and returns what it 
+	 * found in them.
+	 * 
+	 * @param scanned what a result seeker found in the workspace
+	 * @return the value found
+	 */
+	public <T> T collect(Scanned<T> scanned) {
+		if(scanned.getReadResultFiles() != null) {
+			synchronized (readResultFiles) {
+				readResultFiles.addAll(scanned.getReadResultFiles());
+			}
+		}
+		return scanned.getValue();
+	}
+	
+	/**
+	 * What a result seeker found in the workspace, and the result files it 
+	 * read to find it. Returned from the node that owns the workspace.
+	 */
+	public static final class Scanned<T> implements Serializable {
+		
+		private static final long serialVersionUID = -4305432718294370911L;
+		
+		private final T value;
+		private final ResultFileManifest readResultFiles;
+		
+		/**
+		 * @param value the value found
+		 * @param readResultFiles result files read, or <code>null</code> 
+		 * if they are not tracked
+		 */
+		public Scanned(T value, ResultFileManifest readResultFiles) {
+			super();
+			this.value = value;
+			this.readResultFiles = readResultFiles;
+		}
+		
+		/**
+		 * @return the value found
+		 */
+		public T getValue() {
+			return value;
+		}
+		
+		/**
+		 * @return result files read, or <code>null</code>
+		 */
+		public ResultFileManifest getReadResultFiles() {
+			return readResultFiles;
+		}
+	}
+	
+}
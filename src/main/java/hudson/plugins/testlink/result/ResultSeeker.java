@@ -24,8 +24,8 @@
 package hudson.plugins.testlink.result;
 
 import hudson.DescriptorExtensionList;
+import hudson.FilePath;
 import hudson.Launcher;
-import hudson.Util;
 import hudson.model.BuildListener;
 import hudson.model.Describable;
 import hudson.model.AbstractBuild;
@@ -33,10 +33,12 @@ import hudson.model.Descriptor;
 import hudson.model.Hudson;
 import hudson.model.Node;
 import hudson.plugins.testlink.TestLinkSite;
+import hudson.plugins.testlink.util.Messages;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -44,10 +46,8 @@ import java.util.logging.Logger;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.tools.ant.BuildException;
-import org.apache.tools.ant.DirectoryScanner;
-import org.apache.tools.ant.types.FileSet;
 
+import br.eti.kinoshita.testlinkjavaapi.model.Attachment;
 import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
 
 /**
@@ -109,7 +109,7 @@ public abstract class ResultSeeker implements Serializable, Describable<ResultSe
 	public boolean isIncludeNotes() {
 		return includeNotes;
 	}
-
+	
 	/*
 	 * (non-Javadoc)
 	 * @see hudson.model.Describable#getDescriptor()
@@ -145,6 +145,48 @@ public abstract class ResultSeeker implements Serializable, Describable<ResultSe
 	 * @throws ResultSeekerException
 	 */
 	public abstract void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink) throws ResultSeekerException;
+	
+	/**
+	 * <p>Seeks for Test Results in a directory, as 
+	 * {@link #seek(TestCaseWrapper[], AbstractBuild, Launcher, BuildListener, TestLinkSite)}, 
+	 * ignoring the result files that did not change since a previous build.</p>
+	 * 
+	 * <p>By default the result files are not tracked, and all of them are 
+	 * read. Result seekers that can skip the unchanged files override it.</p>
+	 * 
+	 * @param automatedTestcases Automated test cases
+	 * @param workspace Build workspace, used when looking for results using the include pattern
+	 * @param listener Build listener for logging
+	 * @param testlink TestLink site for updating test status
+	 * @param resultFiles result files of the build, or <code>null</code> to 
+	 * read every result file found
+	 * @throws ResultSeekerException
+	 * @since 3.1.9
+	 */
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
+		this.seek(automatedTestCases, build, launcher, listener, testlink);
+	}
+
+	/**
+	 * Creates the attachment of a result file, without its content, that is 
+	 * read by {@link TestLinkSite#uploadAttachment(int, FilePath, Attachment)}.
+	 * 
+	 * @param file result file, that may be in another node
+	 * @param fileType content type of the file
+	 * @return attachment without content
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @since 3.1.9
+	 */
+	protected Attachment createAttachment(FilePath file, String fileType) throws IOException, InterruptedException {
+		final Attachment attachment = new Attachment();
+		attachment.setDescription(file.getName());
+		attachment.setFileName(file.getName());
+		attachment.setFileSize(file.length());
+		attachment.setFileType(fileType);
+		attachment.setTitle(file.getName());
+		return attachment;
+	}
 
 	/**
 	 * Retrieves the file content encoded in Base64.
@@ -171,22 +213,15 @@ public abstract class ResultSeeker implements Serializable, Describable<ResultSe
 	 * @return array of strings of paths for files that match the includes
 	 *         pattern in the directory.
 	 * @throws IOException
+	 * @see ResultFileScanner
 	 */
 	protected String[] scan(final File directory, final String includes, final BuildListener listener) throws IOException {
 		String[] fileNames = new String[0];
 
 		if (StringUtils.isNotBlank(includes)) {
-			FileSet fs = null;
-
-			try {
-				fs = Util.createFileSet(directory, includes);
-
-				DirectoryScanner ds = fs.getDirectoryScanner();
-				fileNames = ds.getIncludedFiles();
-			} catch (BuildException e) {
-				e.printStackTrace(listener.getLogger());
-				throw new IOException(e);
-			}
+			final ResultFileScanner scanner = new ResultFileScanner(includes);
+			fileNames = scanner.scan(directory);
+			listener.getLogger().println(Messages.Results_ScanTimings(includes, fileNames.length, scanner.getDirectories(), scanner.getElapsed(), scanner.getPruned()));
 		}
 		
 		if(LOGGER.isLoggable(Level.FINE)) {
@@ -199,6 +234,43 @@ public abstract class ResultSeeker implements Serializable, Describable<ResultSe
 
 	}
 
+	/**
+	 * Records the files read, and removes the ones that did not change since 
+	 * a previous build.
+	 * 
+	 * @param directory the directory the file names are relative to
+	 * @param fileNames file names found by {@link #scan(File, String, BuildListener)}
+	 * @param previousResultFiles result files of a previous build, may be <code>null</code>
+	 * @param readResultFiles where the files read are recorded, or 
+	 * <code>null</code> if result files are not tracked
+	 * @param listener Hudson Build listener.
+	 * @return the file names that changed, or all of them if there is no previous build
+	 * @throws IOException
+	 * @since 3.1.9
+	 */
+	protected String[] filterUnchanged(final File directory, final String[] fileNames, final ResultFileManifest previousResultFiles, final ResultFileManifest readResultFiles, final BuildListener listener) throws IOException {
+		if(readResultFiles == null) {
+			return fileNames;
+		}
+		
+		final List<String> changed = new ArrayList<String>(fileNames.length);
+		for(String fileName : fileNames) {
+			if(readResultFiles.record(directory, fileName, previousResultFiles)) {
+				if(LOGGER.isLoggable(Level.FINE)) {
+					LOGGER.log(Level.FINE, "Test result file not changed since last build: " + fileName);
+				}
+			} else {
+				changed.add(fileName);
+			}
+		}
+		
+		if(changed.size() < fileNames.length) {
+			listener.getLogger().println(Messages.Results_UnchangedFilesIgnored(fileNames.length - changed.size()));
+		}
+		
+		return changed.toArray(new String[changed.size()]);
+	}
+
 	/**
 	 * Gets the key custom field out of a list using the key custom field name.
 	 */
@@ -35,6 +35,7 @@ import hudson.remoting.VirtualChannel;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -43,15 +44,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.tap4j.consumer.TapConsumer;
 import org.tap4j.consumer.TapConsumerFactory;
-import org.tap4j.model.Directive;
 import org.tap4j.model.Plan;
-import org.tap4j.model.TestResult;
 import org.tap4j.model.TestSet;
-import org.tap4j.util.DirectiveValues;
 
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
 import br.eti.kinoshita.testlinkjavaapi.model.Attachment;
@@ -70,6 +70,8 @@ public class TAPFileNameResultSeeker extends ResultSeeker {
 	
 	private static final long serialVersionUID = 3068999690225092293L;
 
+	private static final Logger LOGGER = Logger.getLogger("hudson.plugins.testlink");
+
 	protected static final String TEXT_PLAIN_CONTENT_TYPE = "text/plain";
 	
 	private boolean attachTAPStream = false;
@@ -117,57 +119,83 @@ public class TAPFileNameResultSeeker extends ResultSeeker {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see hudson.plugins.testlink.result.ResultSeeker#seek(hudson.plugins.testlink.result.TestCaseWrapper[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite)
+	 */
+	@Override
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+		this.seek(automatedTestCases, build, launcher, listener, testlink, null);
+	}
+	
 	/* (non-Javadoc)
 	 * @see hudson.plugins.testlink.result.ResultSeeker#seekAndUpdate(hudson.plugins.testlink.result.TestCaseWrapper<?>[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite, hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(final TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(final TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
+		
+		// Only the file name is matched against the key custom field, so we 
+		// compile the key values first and parse only the TAP files that match
+		final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField);
 		
 		try {
-			final Map<String, TestSet> testSets = build.getWorkspace().act(new FilePath.FileCallable<Map<String, TestSet>>() {
+			final ResultFileManifest previousResultFiles = resultFiles != null ? resultFiles.getPreviousResultFiles() : null;
+			final boolean trackResultFiles = resultFiles != null;
+			final ResultFileTracker.Scanned<Map<String, ParsedTAPFile>> scanned = build.getWorkspace().act(new FilePath.FileCallable<ResultFileTracker.Scanned<Map<String, ParsedTAPFile>>>() {
 				private static final long serialVersionUID = 1L;
 
-				private Map<String, TestSet> testSets;
+				private Map<String, ParsedTAPFile> parsedTapFiles;
 				
-				public Map<String, TestSet> invoke(File workspace, VirtualChannel channel)
+				public ResultFileTracker.Scanned<Map<String, ParsedTAPFile>> invoke(File workspace, VirtualChannel channel)
 						throws IOException, InterruptedException {
-					final String[] tapFiles = TAPFileNameResultSeeker.this.scan(workspace, includePattern, listener);
+					// TAP files whose names match no key value are neither read 
+					// nor recorded, a later build may have a test case for them
+					final List<String> matchingTapFiles = new ArrayList<String>();
+					for(String tapFile : TAPFileNameResultSeeker.this.scan(workspace, includePattern, listener)) {
+						if(matcher.matches(getFileNameWithoutExtension(new File(tapFile).getName()))) {
+							matchingTapFiles.add(tapFile);
+						}
+					}
+					final ResultFileManifest readResultFiles = trackResultFiles ? new ResultFileManifest() : null;
+					final String[] tapFiles = TAPFileNameResultSeeker.this.filterUnchanged(workspace, 
+							matchingTapFiles.toArray(new String[matchingTapFiles.size()]), previousResultFiles, readResultFiles, listener);
 					
-					testSets = new HashMap<String, TestSet>(tapFiles.length);
+					parsedTapFiles = new HashMap<String, ParsedTAPFile>();
 					
+					final TAPStreamReader reader = new TAPStreamReader();
 					for(String tapFile : tapFiles) {
 						final File input = new File(workspace, tapFile);
-						final TapConsumer tapConsumer = TapConsumerFactory.makeTap13YamlConsumer();
-						final TestSet testSet = tapConsumer.load(input);
-						testSets.put(input.getName(), testSet);
+						final TAPStreamReader.Summary summary = reader.read(input);
+						String notes = null;
+						if(TAPFileNameResultSeeker.this.isIncludeNotes()) {
+							// Notes need the whole test set, so tap4j is used only in this case
+							final TapConsumer tapConsumer = TapConsumerFactory.makeTap13YamlConsumer();
+							notes = TAPFileNameResultSeeker.this.getTapNotes(tapConsumer.load(input));
+						}
+						parsedTapFiles.put(input.getName(), new ParsedTAPFile(tapFile, summary, notes));
 					}
 					
-					return testSets;
+					if(LOGGER.isLoggable(Level.FINE)) {
+						LOGGER.log(Level.FINE, "Parsed " + parsedTapFiles.size() + " out of " + tapFiles.length + " TAP file(s)");
+					}
+					
+					return new ResultFileTracker.Scanned<Map<String, ParsedTAPFile>>(parsedTapFiles, readResultFiles);
 				}
 			});
+			final Map<String, ParsedTAPFile> tapFiles = resultFiles != null ? resultFiles.collect(scanned) : scanned.getValue();
 			
-			for(String key : testSets.keySet()) {
-				for(TestCaseWrapper automatedTestCase : automatedTestCases) {
-					final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-					for(String value : commaSeparatedValues) {
-						String tapFileNameWithoutExtension = key;
-						int extensionIndex = tapFileNameWithoutExtension.lastIndexOf('.');
-						if ( extensionIndex != -1 )
-						{
-							tapFileNameWithoutExtension = tapFileNameWithoutExtension.substring(0, tapFileNameWithoutExtension.lastIndexOf('.'));
-						}
-						if(tapFileNameWithoutExtension.equals(value)) {
-							final ExecutionStatus status = this.getExecutionStatus(testSets.get(key));
-							automatedTestCase.addCustomFieldAndStatus(value, status);
-							
-							if(this.isIncludeNotes()) {
-								final String notes = this.getTapNotes(testSets.get(key));
-								automatedTestCase.appendNotes(notes);
-							}
-							
-							this.handleResult(automatedTestCase, build, listener, testlink, status, testSets, key);
-						}
+			for(String key : tapFiles.keySet()) {
+				final String tapFileNameWithoutExtension = getFileNameWithoutExtension(key);
+				final ParsedTAPFile tapFile = tapFiles.get(key);
+				for(KeyCustomFieldMatcher.Match match : matcher.match(tapFileNameWithoutExtension)) {
+					final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
+					final ExecutionStatus status = tapFile.getSummary().getStatus();
+					match.addStatus(status);
+					
+					if(this.isIncludeNotes()) {
+						automatedTestCase.appendNotes(tapFile.getNotes());
 					}
+					
+					this.handleResult(automatedTestCase, build, listener, testlink, status, tapFile);
 				}
 			}
 		} catch (IOException e) {
@@ -177,44 +205,36 @@ public class TAPFileNameResultSeeker extends ResultSeeker {
 		}
 	}
 
-	private void handleResult(TestCaseWrapper automatedTestCase, final AbstractBuild<?, ?> build, BuildListener listener, TestLinkSite testlink, ExecutionStatus status, final Map<String, TestSet> testSets, final String key) {
-		if(automatedTestCase.getExecutionStatus(this.keyCustomField) != ExecutionStatus.NOT_RUN) {
-			String platform = this.retrievePlatform(testSets.get(key));
-			automatedTestCase.setPlatform(platform);
+	private void handleResult(TestCaseWrapper automatedTestCase, final AbstractBuild<?, ?> build, BuildListener listener, TestLinkSite testlink, ExecutionStatus status, final ParsedTAPFile tapFile) {
+		// The status is passed on, as other seekers may change the one of the test case
+		final ExecutionStatus testCaseStatus = automatedTestCase.getExecutionStatus(this.keyCustomField);
+		if(testCaseStatus != ExecutionStatus.NOT_RUN) {
+			automatedTestCase.setPlatform(tapFile.getSummary().getPlatform());
 			
 			try {
-				final int executionId = testlink.updateTestCase(automatedTestCase);
+				final int executionId = testlink.updateTestCase(automatedTestCase, testCaseStatus);
 				
 				if(executionId > 0 && this.isAttachTAPStream()) {
-					final String remoteWs = build.getWorkspace().getRemote();
-					List<Attachment> attachments = build.getWorkspace().act( new FileCallable<List<Attachment>>() {
-						
-						private static final long serialVersionUID = -5411683541842375558L;
-
-						List<Attachment> attachments = new ArrayList<Attachment>();
-						
-						public List<Attachment> invoke(File f, VirtualChannel channel) 
-								throws IOException, InterruptedException {
+					// the TAP file is read only when the test case is reported
+					final FilePath reportFile = build.getWorkspace().child(tapFile.getPath());
+					testlink.uploadAttachment(executionId, reportFile, this.createAttachment(reportFile, TEXT_PLAIN_CONTENT_TYPE));
+					
+					if(this.isAttachYAMLishAttachments()) {
+						final String remoteWs = build.getWorkspace().getRemote();
+						List<Attachment> attachments = build.getWorkspace().act( new FileCallable<List<Attachment>>() {
 							
-							File reportFile = new File(remoteWs, key);
-							final Attachment attachment = new Attachment();
-							attachment.setContent(TAPFileNameResultSeeker.this.getBase64FileContent(reportFile));
-							attachment.setDescription(reportFile.getName());
-							attachment.setFileName(reportFile.getName());
-							attachment.setFileSize(reportFile.length());
-							attachment.setFileType(TEXT_PLAIN_CONTENT_TYPE);
-							attachment.setTitle(reportFile.getName());
-							attachments.add(attachment);
+							private static final long serialVersionUID = -5411683541842375558L;
 							
-							if(TAPFileNameResultSeeker.this.isAttachYAMLishAttachments()) {
-								attachments.addAll(TAPFileNameResultSeeker.this.retrieveListOfTapAttachments(testSets.get(key)));
+							public List<Attachment> invoke(File f, VirtualChannel channel) 
+									throws IOException, InterruptedException {
+								// YAMLish attachments need the whole test set, so tap4j is used only in this case
+								final TapConsumer tapConsumer = TapConsumerFactory.makeTap13YamlConsumer();
+								return TAPFileNameResultSeeker.this.retrieveListOfTapAttachments(tapConsumer.load(new File(remoteWs, tapFile.getPath())));
 							}
-							
-							return attachments;
+						});
+						for(Attachment attachment : attachments) {
+							testlink.uploadAttachment(executionId, attachment);
 						}
-					});
-					for(Attachment attachment : attachments) {
-						testlink.uploadAttachment(executionId, attachment);
 					}
 				}
 			} catch ( TestLinkAPIException te ) {
@@ -231,78 +251,18 @@ public class TAPFileNameResultSeeker extends ResultSeeker {
 	}
 
 	/**
-	 * @param testSet
-	 * @return
+	 * @param fileName TAP file name
+	 * @return the file name without its extension
 	 */
-	private ExecutionStatus getExecutionStatus(TestSet testSet) {
-		ExecutionStatus status = ExecutionStatus.PASSED;
-		
-		if ( isSkipped( testSet)  )
-		{
-			status = ExecutionStatus.BLOCKED;
-		}		
-		else if ( isFailed( testSet ) )
+	private static String getFileNameWithoutExtension(String fileName) {
+		final int extensionIndex = fileName.lastIndexOf('.');
+		if ( extensionIndex != -1 )
 		{
-			status = ExecutionStatus.FAILED;
+			return fileName.substring(0, extensionIndex);
 		}
-		
-		return status;
-	}
-	
-	/**
-	 * Checks if a test set contains a plan with skip directive or any test case
-	 * with the same.
-	 */
-	private boolean isSkipped( TestSet testSet )
-	{
-		boolean r = false;
-		
-		if ( testSet.getPlan().isSkip() )
-		{
-			r = true;
-		}
-		else
-		{
-			for( TestResult testResult : testSet.getTestResults() )
-			{
-				final Directive directive = testResult.getDirective();
-				if ( directive != null && directive.getDirectiveValue() == DirectiveValues.SKIP )
-				{
-					r = true;
-					break;
-				}
-			}
-		}
-		return r;
+		return fileName;
 	}
 
-	/**
-	 * Checks if a test set contains not ok's, bail out!'s or a TO-DO directive.
-	 */
-	private boolean isFailed( TestSet testSet )
-	{
-		boolean r = false;
-		
-		if ( testSet.containsNotOk() || testSet.containsBailOut() )
-		{
-			r = true;
-		}
-		else
-		{
-			for( TestResult testResult : testSet.getTestResults() )
-			{
-				final Directive directive = testResult.getDirective();
-				if ( directive != null && directive.getDirectiveValue() == DirectiveValues.TODO )
-				{
-					r = true;
-					break;
-				}
-			}
-		}
-		
-		return r;
-	}
-	
 	/**
 	 * Retrieves notes for a TAP test set.
 	 * 
@@ -318,67 +278,6 @@ public class TAPFileNameResultSeeker extends ResultSeeker {
 		return notes.toString();
 	}
 	
-	/**
-	 * Retrieves the TestLink platform.
-	 * 
-	 * @param tapTestSet TAP test set.
-	 * @return TestLink platform.
-	 */
-	private String retrievePlatform( TestSet tapTestSet )
-	{
-		String platform = null;
-		
-		Plan plan = tapTestSet.getPlan();
-		Map<String, Object> planDiagnostic = plan.getDiagnostic();
-		
-		platform = this.extractPlatform( planDiagnostic );
-		
-		if ( platform == null ) 
-		{
-			for ( TestResult testResult : tapTestSet.getTestResults() )
-			{
-				Map<String, Object> diagnostic = testResult.getDiagnostic();
-				platform = this.extractPlatform( diagnostic );
-				if ( platform != null )
-				{
-					break;
-				}
-			}
-		}
-		
-		return platform;
-	}
-	
-	/**
-	 * @param diagnostic
-	 * @return TestLink Platform if present, {@code null} otherwise
-	 */
-	@SuppressWarnings("unchecked")
-	private String extractPlatform( Map<String, Object> diagnostic )
-	{
-		String platform = null;
-		Object extensions = diagnostic.get( "extensions" );
-		if ( extensions != null && extensions instanceof Map<?, ?> )
-		{
-			Map<String, Object> extensionsInfo = (Map<String, Object>)extensions;
-			Object testlink = extensionsInfo.get( "TestLink" );
-			if ( testlink != null && testlink instanceof Map<?, ?>)
-			{
-				Map<String, Object> testLinkInfo = (Map<String, Object>)testlink;
-				Object o = testLinkInfo.get("Platform");
-				if(o == null) 
-				{
-					o = testLinkInfo.get("platform");
-				}
-				if ( o != null && o instanceof String )
-				{
-					platform = (String)o;
-				}
-			}
-		}
-		return platform;
-	}
-	
 	/**
 	 * Retrieves list of attachments from a TAP Test Set by 
 	 * using its YAMLish data.
@@ -507,4 +406,41 @@ public class TAPFileNameResultSeeker extends ResultSeeker {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * A TAP file that matched a key custom field value. Notes are only 
+	 * present when they are enabled.
+	 */
+	static class ParsedTAPFile implements Serializable {
+		
+		private static final long serialVersionUID = 8412716342235735340L;
+
+		private final String path;
+		
+		private final TAPStreamReader.Summary summary;
+		
+		private final String notes;
+		
+		ParsedTAPFile(String path, TAPStreamReader.Summary summary, String notes) {
+			this.path = path;
+			this.summary = summary;
+			this.notes = notes;
+		}
+		
+		/**
+		 * @return path relative to the workspace
+		 */
+		String getPath() {
+			return path;
+		}
+		
+		TAPStreamReader.Summary getSummary() {
+			return summary;
+		}
+		
+		String getNotes() {
+			return notes;
+		}
+		
+	}
+
+}
@@ -0,0 +1,282 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2011> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.yaml.snakeyaml.Yaml;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * <p>Reads a TAP stream line by line, computing the execution status and the 
+ * TestLink platform in one forward pass.</p>
+ * 
+ * <p>Unlike tap4j's consumers, it never holds the whole test set in memory. 
+ * Only YAMLish diagnostics that may contain the TestLink platform are 
+ * buffered and parsed, one block at a time.</p>
+ * 
+ * <p>The status follows the same rules used by {@link TAPFileNameResultSeeker}: 
+ * a plan or test result with a SKIP directive means Blocked, a not ok, a 
+ * Bail out! or a TODO directive means Failed, and Passed otherwise.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TAPStreamReader {
+
+	private static final String UTF_8 = "UTF-8";
+	
+	private static final Pattern PLAN_PATTERN = Pattern.compile("^(\\d+)\\.\\.(\\d+)\\s*(#\\s*(?i:skip)\\S*.*)?$");
+	private static final Pattern TEST_RESULT_PATTERN = Pattern.compile("^(not ok|ok)\\b([^#]*)(#\\s*((?i:skip|todo))\\S*.*)?$");
+	private static final Pattern BAIL_OUT_PATTERN = Pattern.compile("^Bail out!.*");
+	private static final Pattern YAMLISH_START_PATTERN = Pattern.compile("^(\\s+)---.*");
+	private static final Pattern YAMLISH_END_PATTERN = Pattern.compile("^\\s+\\.\\.\\.\\s*$");
+	
+	private static final String SKIP = "SKIP";
+	private static final String TODO = "TODO";
+	
+	/**
+	 * Text that must be present in a YAMLish block holding a platform.
+	 */
+	private static final String TESTLINK_EXTENSION = "TestLink";
+	
+	/**
+	 * Reads a TAP file.
+	 * 
+	 * @param file TAP file
+	 * @return summary of the TAP stream
+	 * @throws IOException
+	 */
+	public Summary read(File file) throws IOException {
+		final Reader reader = new InputStreamReader(new FileInputStream(file), UTF_8);
+		try {
+			return this.read(reader);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+	
+	/**
+	 * Reads a TAP stream. The reader is not closed.
+	 * 
+	 * @param reader TAP stream
+	 * @return summary of the TAP stream
+	 * @throws IOException
+	 */
+	public Summary read(Reader reader) throws IOException {
+		final BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+		
+		boolean skipped = false;
+		boolean failed = false;
+		String planPlatform = null;
+		String testResultPlatform = null;
+		
+		// whether the last plan or test result read was the plan
+		boolean lastWasPlan = false;
+		boolean seenPlanOrTestResult = false;
+		
+		StringBuilder yamlish = null;
+		boolean inYamlish = false;
+		int yamlishIndentation = 0;
+		boolean yamlishBelongsToPlan = false;
+		
+		String line = null;
+		while((line = in.readLine()) != null) {
+			if(inYamlish) {
+				if(YAMLISH_END_PATTERN.matcher(line).matches()) {
+					inYamlish = false;
+					if(yamlish != null) {
+						final String platform = extractPlatform(yamlish.toString());
+						if(yamlishBelongsToPlan) {
+							planPlatform = platform;
+						} else if(testResultPlatform == null) {
+							testResultPlatform = platform;
+						}
+						yamlish = null;
+					}
+				} else if(yamlish != null) {
+					yamlish.append(line.length() > yamlishIndentation ? line.substring(yamlishIndentation) : line.trim());
+					yamlish.append('\n');
+				}
+				continue;
+			}
+			
+			if(seenPlanOrTestResult) {
+				final Matcher yamlishStart = YAMLISH_START_PATTERN.matcher(line);
+				if(yamlishStart.matches()) {
+					inYamlish = true;
+					yamlishIndentation = yamlishStart.group(1).length();
+					yamlishBelongsToPlan = lastWasPlan;
+					// Only buffer the blocks that may still decide the platform
+					final boolean needed = yamlishBelongsToPlan ? planPlatform == null : (planPlatform == null && testResultPlatform == null);
+					yamlish = needed ? new StringBuilder() : null;
+					continue;
+				}
+			}
+			
+			final Matcher testResult = TEST_RESULT_PATTERN.matcher(line);
+			if(testResult.matches()) {
+				seenPlanOrTestResult = true;
+				lastWasPlan = false;
+				if("not ok".equals(testResult.group(1))) {
+					failed = true;
+				}
+				final String directive = testResult.group(4);
+				if(directive != null) {
+					if(SKIP.equalsIgnoreCase(directive)) {
+						skipped = true;
+					} else if(TODO.equalsIgnoreCase(directive)) {
+						failed = true;
+					}
+				}
+			} else if(BAIL_OUT_PATTERN.matcher(line).matches()) {
+				failed = true;
+			} else {
+				final Matcher plan = PLAN_PATTERN.matcher(line);
+				if(plan.matches()) {
+					seenPlanOrTestResult = true;
+					lastWasPlan = true;
+					if(plan.group(3) != null) {
+						skipped = true;
+					}
+				}
+			}
+			
+			// A skipped stream is always Blocked, so once the platform is known 
+			// there is nothing left to read
+			if(skipped && planPlatform != null) {
+				break;
+			}
+		}
+		
+		final ExecutionStatus status;
+		if(skipped) {
+			status = ExecutionStatus.BLOCKED;
+		} else if(failed) {
+			status = ExecutionStatus.FAILED;
+		} else {
+			status = ExecutionStatus.PASSED;
+		}
+		
+		return new Summary(status, planPlatform != null ? planPlatform : testResultPlatform);
+	}
+	
+	/**
+	 * Parses a YAMLish block and extracts the TestLink platform, if present.
+	 * 
+	 * @param yamlish YAMLish text, without its indentation
+	 * @return TestLink Platform if present, {@code null} otherwise
+	 */
+	private String extractPlatform(String yamlish) {
+		if(yamlish.indexOf(TESTLINK_EXTENSION) == -1) {
+			return null;
+		}
+		final Object diagnostic;
+		try {
+			diagnostic = new Yaml().load(yamlish);
+		} catch(RuntimeException e) {
+			// Invalid YAMLish is ignored, as it is only used to look for the platform
+			return null;
+		}
+		if(diagnostic instanceof Map<?, ?>) {
+			return extractPlatform((Map<?, ?>) diagnostic);
+		}
+		return null;
+	}
+	
+	/**
+	 * @param diagnostic TAP diagnostic
+	 * @return TestLink Platform if present, {@code null} otherwise
+	 */
+	static String extractPlatform(Map<?, ?> diagnostic) {
+		String platform = null;
+		Object extensions = diagnostic.get( "extensions" );
+		if ( extensions != null && extensions instanceof Map<?, ?> )
+		{
+			Map<?, ?> extensionsInfo = (Map<?, ?>)extensions;
+			Object testlink = extensionsInfo.get( TESTLINK_EXTENSION );
+			if ( testlink != null && testlink instanceof Map<?, ?>)
+			{
+				Map<?, ?> testLinkInfo = (Map<?, ?>)testlink;
+				Object o = testLinkInfo.get("Platform");
+				if(o == null) 
+				{
+					o = testLinkInfo.get("platform");
+				}
+				if ( o != null && o instanceof String )
+				{
+					platform = (String)o;
+				}
+			}
+		}
+		return platform;
+	}
+	
+	/**
+	 * Execution status and platform of a TAP stream.
+	 * 
+	 * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+	 * @since 3.1.9
+	 */
+	public static class Summary implements Serializable {
+		
+		private static final long serialVersionUID = -2725633311376530385L;
+
+		private final ExecutionStatus status;
+		
+		private final String platform;
+		
+		public Summary(ExecutionStatus status, String platform) {
+			this.status = status;
+			this.platform = platform;
+		}
+		
+		/**
+		 * @return the execution status
+		 */
+		public ExecutionStatus getStatus() {
+			return status;
+		}
+		
+		/**
+		 * @return the TestLink platform, or {@code null}
+		 */
+		public String getPlatform() {
+			return platform;
+		}
+		
+	}
+	
+}
@@ -23,7 +23,10 @@
  */
 package hudson.plugins.testlink.result;
 
+import java.io.File;
 import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -33,12 +36,17 @@ import java.util.StringTokenizer;
 import org.apache.commons.lang.StringUtils;
 
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.constants.TestImportance;
 import br.eti.kinoshita.testlinkjavaapi.model.Attachment;
 import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
 import br.eti.kinoshita.testlinkjavaapi.model.TestCase;
 import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
 
 /**
+ * <p>Wraps an automated test case with the statuses, notes and attachments
+ * found by the result seekers. These are accumulated under the wrapper
+ * lock, as result seekers may run concurrently.</p>
+ *
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @since 2.0
  */
@@ -54,16 +62,30 @@ public class TestCaseWrapper implements Serializable {
 	 */
 	private final Map<String, ExecutionStatus> customFieldAndStatus;
 
+	/**
+	 * Status reducers by key custom field name, updated as the statuses are
+	 * added, so that the execution status is known without walking the
+	 * custom fields and statuses again.
+	 */
+	private transient Map<String, StatusReducer> reducers;
+
 	/**
 	 * List of attachments.
 	 */
 	private List<Attachment> attachments;
 
 	/**
-	 * Execution notes.
+	 * Execution notes. Replaced by {@link #notesBuffer}, kept to read the
+	 * test cases of older builds.
 	 */
+	@Deprecated
 	private StringBuilder notes;
 
+	/**
+	 * Execution notes, bounded in size.
+	 */
+	private NotesBuffer notesBuffer;
+
 	/**
 	 * Platform.
 	 */
@@ -89,7 +111,7 @@ public class TestCaseWrapper implements Serializable {
 	 */
 	public TestCaseWrapper(TestCase testCase) {
 		this.testCase = testCase;
-		this.notes = new StringBuilder();
+		this.notesBuffer = new NotesBuffer();
 		this.attachments = new LinkedList<Attachment>();
 		this.customFieldAndStatus = new HashMap<String, ExecutionStatus>();
 	}
@@ -102,16 +124,77 @@ public class TestCaseWrapper implements Serializable {
 	 * @param executionStatus
 	 *            execution status
 	 */
-	public void addCustomFieldAndStatus(String customField,
+	public synchronized void addCustomFieldAndStatus(String customField,
 			ExecutionStatus executionStatus) {
 		this.customFieldAndStatus.put(customField, executionStatus);
+		if (this.reducers != null) {
+			for (StatusReducer reducer : this.reducers.values()) {
+				reducer.report(customField, executionStatus);
+			}
+		}
+	}
+
+	/**
+	 * Add a custom field name and its execution status, keeping the worst 
+	 * status reported so far for the custom field. Used when a custom field 
+	 * value matches many results.
+	 *
+	 * @param customField
+	 *            custom field name
+	 * @param executionStatus
+	 *            execution status
+	 * @since 3.1.9
+	 */
+	public synchronized void mergeCustomFieldAndStatus(String customField,
+			ExecutionStatus executionStatus) {
+		final ExecutionStatus previous = this.customFieldAndStatus.get(customField);
+		if (previous == null || rank(executionStatus) > rank(previous)) {
+			this.addCustomFieldAndStatus(customField, executionStatus);
+		}
+	}
+
+	/**
+	 * @param status
+	 *            an execution status, or <code>null</code>
+	 * @param other
+	 *            another execution status
+	 * @return the worst of both execution statuses, FAILED being the worst
+	 *         and NOT_RUN the best, so a status found for the test case is
+	 *         never replaced by NOT_RUN
+	 * @since 3.1.9
+	 */
+	public static ExecutionStatus worstOf(ExecutionStatus status,
+			ExecutionStatus other) {
+		if (status == null) {
+			return other;
+		}
+		if (other == null) {
+			return status;
+		}
+		return rank(other) > rank(status) ? other : status;
+	}
+
+	/**
+	 * @return how bad an execution status is, from NOT_RUN to FAILED
+	 */
+	private static int rank(ExecutionStatus executionStatus) {
+		switch (executionStatus) {
+		case FAILED:
+			return 3;
+		case BLOCKED:
+			return 2;
+		case NOT_RUN:
+			return 0;
+		default:
+			return 1;
+		}
 	}
 
 	/**
 	 * @return custom field name and execution status
 	 */
-	public Map<String, ExecutionStatus> getCustomFieldAndStatus() {
-		return customFieldAndStatus;
+	public synchronized Map<String, ExecutionStatus> getCustomFieldAndStatus() {
+		return Collections.unmodifiableMap(customFieldAndStatus);
 	}
 
 	/**
@@ -121,27 +204,61 @@ public class TestCaseWrapper implements Serializable {
 	 *
 	 * @param attachment
 	 */
-	public void addAttachment(Attachment attachment) {
+	public synchronized void addAttachment(Attachment attachment) {
 		this.attachments.add(attachment);
 	}
 
-	public List<Attachment> getAttachments() {
+	public synchronized List<Attachment> getAttachments() {
 		return attachments;
 	}
 
-	public String getNotes() {
-		return notes.toString();
+	public synchronized String getNotes() {
+		return notesBuffer.toString();
+	}
+
+	public synchronized void appendNotes(String notes) {
+		this.notesBuffer.append(notes);
+	}
+
+	/**
+	 * @param spillFile
+	 *            file where the whole notes are written if they grow past
+	 *            the maximum size of the notes
+	 * @since 3.1.9
+	 */
+	public synchronized void setNotesSpillFile(File spillFile) {
+		this.notesBuffer.setSpillFile(spillFile);
+	}
+
+	/**
+	 * @param maxSize
+	 *            maximum size of the notes, in bytes, set before any notes
+	 *            are appended
+	 * @since 3.1.9
+	 */
+	public synchronized void setNotesMaxSize(int maxSize) {
+		this.notesBuffer.setMaxSize(maxSize);
 	}
 
-	public void appendNotes(String notes) {
-		this.notes.append(notes);
+	/**
+	 * Reads the notes of test cases saved before the notes were bounded.
+	 */
+	protected Object readResolve() {
+		if (this.notesBuffer == null) {
+			this.notesBuffer = new NotesBuffer();
+			if (this.notes != null) {
+				this.notesBuffer.append(this.notes.toString());
+			}
+		}
+		this.notes = null;
+		return this;
 	}
 
-	public String getPlatform() {
+	public synchronized String getPlatform() {
 		return this.platform;
 	}
 
-	public void setPlatform(String platform) {
+	public synchronized void setPlatform(String platform) {
 		this.platform = platform;
 	}
 
@@ -151,23 +268,27 @@ public class TestCaseWrapper implements Serializable {
 
 	/**
 	 * Calculates the new value of this wrapped test case execution status,
-	 * given a number of custom fields.
-	 * @param numberOfCustomFields
+	 * given a number of custom fields. It is NOT_RUN until every key custom
+	 * field value has a status, FAILED if any value failed, BLOCKED if any
+	 * value was blocked, and PASSED otherwise.
+	 * @param keyCustomFieldName key custom field name
 	 * @return new value of this wrapped test case execution status
 	 */
-	public ExecutionStatus getExecutionStatus(String keyCustomFieldName) {
-		String[] keyCustomFieldValues = this.getKeyCustomFieldValues(keyCustomFieldName);
-		int numberOfCustomFields = keyCustomFieldValues != null ? keyCustomFieldValues.length : 0;
-		ExecutionStatus status = ExecutionStatus.NOT_RUN;
-		if (customFieldAndStatus.size() > 0 && customFieldAndStatus.size() == numberOfCustomFields) {
-			status = ExecutionStatus.PASSED;
-			for (ExecutionStatus reportedStatus : customFieldAndStatus.values()) {
-				if (reportedStatus == ExecutionStatus.FAILED || reportedStatus == ExecutionStatus.BLOCKED) {
-					status = reportedStatus;
-					break;
-				}
+	public synchronized ExecutionStatus getExecutionStatus(String keyCustomFieldName) {
+		if (this.reducers == null) {
+			this.reducers = new HashMap<String, StatusReducer>(2);
+		}
+		final String keyCustomFieldValue = this.getKeyCustomFieldValue(keyCustomFieldName);
+		StatusReducer reducer = this.reducers.get(keyCustomFieldName);
+		if (reducer == null || !reducer.isFor(keyCustomFieldValue)) {
+			// The statuses added so far are replayed only once
+			reducer = new StatusReducer(keyCustomFieldValue, this.split(keyCustomFieldValue));
+			for (Map.Entry<String, ExecutionStatus> entry : this.customFieldAndStatus.entrySet()) {
+				reducer.report(entry.getKey(), entry.getValue());
 			}
+			this.reducers.put(keyCustomFieldName, reducer);
 		}
+		final ExecutionStatus status = reducer.getStatus();
 		this.testCase.setExecutionStatus(status);
 		return status;
 	}
@@ -188,6 +309,7 @@ public class TestCaseWrapper implements Serializable {
 	public void setCustomFields(List<CustomField> customFields) {
 
 		this.testCase.setCustomFields(customFields);
+		this.reducers = null;
 	}
 
 	public List<CustomField> getCustomFields() {
@@ -309,6 +431,14 @@ public class TestCaseWrapper implements Serializable {
 		this.testCase.setSteps(steps);
 	}
 
+	public TestImportance getTestImportance() {
+		return this.testCase.getTestImportance();
+	}
+
+	public void setTestImportance(TestImportance testImportance) {
+		this.testCase.setTestImportance(testImportance);
+	}
+
 	public Integer getVersion() {
 		return testCase.getVersion();
 	}
@@ -321,4 +451,73 @@ public class TestCaseWrapper implements Serializable {
 		this.testCase.setFullExternalId(fullExternalId);
 	}
 
+	/**
+	 * Keeps track of which key custom field values have a status, and of how
+	 * many of them failed or were blocked, so that each status added costs
+	 * O(1).
+	 */
+	private static final class StatusReducer {
+
+		private final String keyCustomFieldValue;
+		private final Map<String, Integer> slots;
+		private final ExecutionStatus[] statuses;
+		private final BitSet reported;
+		private int reportedCount = 0;
+		private int failed = 0;
+		private int blocked = 0;
+
+		StatusReducer(String keyCustomFieldValue, String[] keyCustomFieldValues) {
+			this.keyCustomFieldValue = keyCustomFieldValue;
+			this.slots = new HashMap<String, Integer>(keyCustomFieldValues.length * 2);
+			for (String value : keyCustomFieldValues) {
+				if (!this.slots.containsKey(value)) {
+					this.slots.put(value, Integer.valueOf(this.slots.size()));
+				}
+			}
+			this.statuses = new ExecutionStatus[this.slots.size()];
+			this.reported = new BitSet(this.slots.size());
+		}
+
+		boolean isFor(String keyCustomFieldValue) {
+			return this.keyCustomFieldValue == keyCustomFieldValue
+					|| (this.keyCustomFieldValue != null && this.keyCustomFieldValue.equals(keyCustomFieldValue));
+		}
+
+		void report(String value, ExecutionStatus status) {
+			final Integer slot = this.slots.get(value);
+			if (slot == null) {
+				return;
+			}
+			final int i = slot.intValue();
+			this.count(this.statuses[i], -1);
+			this.count(status, 1);
+			this.statuses[i] = status;
+			if (!this.reported.get(i)) {
+				this.reported.set(i);
+				this.reportedCount++;
+			}
+		}
+
+		private void count(ExecutionStatus status, int delta) {
+			if (status == ExecutionStatus.FAILED) {
+				this.failed += delta;
+			} else if (status == ExecutionStatus.BLOCKED) {
+				this.blocked += delta;
+			}
+		}
+
+		ExecutionStatus getStatus() {
+			if (this.statuses.length == 0 || this.reportedCount < this.statuses.length) {
+				return ExecutionStatus.NOT_RUN;
+			}
+			if (this.failed > 0) {
+				return ExecutionStatus.FAILED;
+			}
+			if (this.blocked > 0) {
+				return ExecutionStatus.BLOCKED;
+			}
+			return ExecutionStatus.PASSED;
+		}
+	}
+
 }
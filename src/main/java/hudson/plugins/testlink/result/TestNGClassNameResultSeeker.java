@@ -24,7 +24,6 @@
 package hudson.plugins.testlink.result;
 
 import hudson.Extension;
-import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
@@ -34,12 +33,12 @@ import hudson.plugins.testlink.testng.Suite;
 import hudson.plugins.testlink.testng.Test;
 import hudson.plugins.testlink.testng.TestMethod;
 import hudson.plugins.testlink.util.Messages;
-import hudson.remoting.VirtualChannel;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -52,24 +51,55 @@ import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
  * 
  * <p>Skips TestNG Suite that were disabled.</p>
  * 
+ * <p>With package prefixes, a key custom field value also matches the 
+ * classes in the packages under it, e.g. <code>com.acme.checkout</code> 
+ * matches <code>com.acme.checkout.CartTest</code>. The test case is updated 
+ * once, with the worst status of all these classes.</p>
+ * 
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @since 3.1
  */
 public class TestNGClassNameResultSeeker extends AbstractTestNGResultSeeker {
 	
 	private static final long serialVersionUID = 6349875034415550272L;
+	
+	private boolean packagePrefix = false;
 
 	/**
 	 * @param includePattern
 	 * @param keyCustomField
 	 * @param attachTestNGXML
 	 * @param markSkippedTestAsBlocked
+	 * @deprecated since 3.1.9, use {@link #TestNGClassNameResultSeeker(String, String, boolean, boolean, boolean, boolean)}
 	 */
-	@DataBoundConstructor
+	@Deprecated
 	public TestNGClassNameResultSeeker(String includePattern, String keyCustomField, boolean attachTestNGXML, boolean markSkippedTestAsBlocked, boolean includeNotes) {
 		super(includePattern, keyCustomField, attachTestNGXML, markSkippedTestAsBlocked, includeNotes);
 	}
 	
+	/**
+	 * @param includePattern
+	 * @param keyCustomField
+	 * @param attachTestNGXML
+	 * @param markSkippedTestAsBlocked
+	 * @param includeNotes
+	 * @param packagePrefix
+	 * @since 3.1.9
+	 */
+	@DataBoundConstructor
+	public TestNGClassNameResultSeeker(String includePattern, String keyCustomField, boolean attachTestNGXML, boolean markSkippedTestAsBlocked, boolean includeNotes, boolean packagePrefix) {
+		super(includePattern, keyCustomField, attachTestNGXML, markSkippedTestAsBlocked, includeNotes);
+		this.packagePrefix = packagePrefix;
+	}
+	
+	public void setPackagePrefix(boolean packagePrefix) {
+		this.packagePrefix = packagePrefix;
+	}
+	
+	public boolean isPackagePrefix() {
+		return packagePrefix;
+	}
+	
 	@Extension
 	public static class DescriptorImpl extends ResultSeekerDescriptor {
 		/*
@@ -87,51 +117,50 @@ public class TestNGClassNameResultSeeker extends AbstractTestNGResultSeeker {
 	 * @see hudson.plugins.testlink.result.ResultSeeker#seekAndUpdate(hudson.plugins.testlink.result.TestCaseWrapper<?>[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite, hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
 		listener.getLogger().println( Messages.Results_TestNG_LookingForTestSuites() );
 		try {
-			final List<Suite> suites = build.getWorkspace().act(new FilePath.FileCallable<List<Suite>>() {
-				private static final long serialVersionUID = 1L;
-
-				private List<Suite> suites = new ArrayList<Suite>();
-				
-				public List<Suite> invoke(File workspace, VirtualChannel channel)
-						throws IOException, InterruptedException {
-					final String[] xmls = TestNGClassNameResultSeeker.this.scan(workspace, includePattern, listener);
-					
-					for(String xml : xmls) {
-						final File input = new File(workspace, xml);
-						Suite suite = parser.parse(input);
-						suites.add(suite);
-					}
-					
-					return suites;
-				}
-			});
+			final List<Suite> suites = this.parse(build, listener, resultFiles);
+			final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField, this.isPackagePrefix());
+			// With package prefixes, the test cases are updated after all the classes were seen, 
+			// and the files of all the suites under the prefix are attached
+			final Map<TestCaseWrapper, List<Suite>> packageTestCase = new LinkedHashMap<TestCaseWrapper, List<Suite>>();
 			for(Suite suite : suites) {
 				for(Test test : suite.getTests() ) {
 					for(hudson.plugins.testlink.testng.Class  clazz : test.getClasses()) {
-						for(TestCaseWrapper automatedTestCase : automatedTestCases) {
-							final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-							for(String value : commaSeparatedValues) {
-								if(clazz.getName().equals(value)) {
-									ExecutionStatus status = this.getExecutionStatus(clazz);
-									if(status != ExecutionStatus.NOT_RUN) {
-										automatedTestCase.addCustomFieldAndStatus(value, status);
-									}
-									
-									if(this.isIncludeNotes()) {
-										final String notes = this.getTestNGNotes(suite, clazz);
-										automatedTestCase.appendNotes(notes);
-									}
-									
-									super.handleResult(automatedTestCase, build, listener, testlink, status, suite);
+						for(KeyCustomFieldMatcher.Match match : matcher.match(clazz.getName())) {
+							final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
+							ExecutionStatus status = this.getExecutionStatus(clazz);
+							if(status != ExecutionStatus.NOT_RUN) {
+								match.addStatus(status);
+							}
+							
+							if(this.isIncludeNotes()) {
+								final String notes = this.getTestNGNotes(suite, clazz);
+								automatedTestCase.appendNotes(notes);
+							}
+							
+							if(this.isPackagePrefix()) {
+								List<Suite> matchedSuites = packageTestCase.get(automatedTestCase);
+								if(matchedSuites == null) {
+									matchedSuites = new ArrayList<Suite>();
+									packageTestCase.put(automatedTestCase, matchedSuites);
+								}
+								if(!matchedSuites.contains(suite)) {
+									matchedSuites.add(suite);
 								}
+							} else {
+								super.handleResult(automatedTestCase, build, listener, testlink, status, suite);
 							}
 						}
 					}
 				}
 			}
+			
+			for(Map.Entry<TestCaseWrapper, List<Suite>> entry : packageTestCase.entrySet()) {
+				final TestCaseWrapper automatedTestCase = entry.getKey();
+				super.handleResult(automatedTestCase, build, listener, testlink, automatedTestCase.getExecutionStatus(this.keyCustomField), entry.getValue());
+			}
 		} catch (IOException e) {
 			throw new ResultSeekerException(e);
 		} catch (InterruptedException e) {
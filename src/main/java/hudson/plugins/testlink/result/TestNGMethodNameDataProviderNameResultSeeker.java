@@ -24,7 +24,6 @@
 package hudson.plugins.testlink.result;
 
 import hudson.Extension;
-import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
@@ -32,14 +31,16 @@ import hudson.plugins.testlink.TestLinkSite;
 import hudson.plugins.testlink.testng.Suite;
 import hudson.plugins.testlink.testng.Test;
 import hudson.plugins.testlink.testng.TestMethod;
-import hudson.plugins.testlink.testng.TestNGParser;
 import hudson.plugins.testlink.util.Messages;
-import hudson.remoting.VirtualChannel;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -52,6 +53,11 @@ import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
  * 
  * <p>Skips TestNG Method that were disabled.</p>
  * 
+ * <p>All the invocations of a method with the same Data Provider are 
+ * grouped first, by method name and Data Provider name, so that each group 
+ * is matched once and its test case is updated once, with the worst status 
+ * of the invocations.</p>
+ * 
  * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
  * @since 3.1.2
  */
@@ -59,8 +65,6 @@ public class TestNGMethodNameDataProviderNameResultSeeker extends AbstractTestNG
 	
 	private static final long serialVersionUID = -3337191837294608305L;
 
-	private final TestNGParser parser = new TestNGParser();
-	
 	private final String dataProviderNameKeyCustomField;
 
 	/**
@@ -106,56 +110,67 @@ public class TestNGMethodNameDataProviderNameResultSeeker extends AbstractTestNG
 	 * @see hudson.plugins.testlink.result.ResultSeeker#seekAndUpdate(hudson.plugins.testlink.result.TestCaseWrapper<?>[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite, hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
 		listener.getLogger().println( Messages.Results_TestNG_LookingForTestMethodDataProvider() );
 		try {
-			final List<Suite> suites = build.getWorkspace().act(new FilePath.FileCallable<List<Suite>>() {
-				private static final long serialVersionUID = 1L;
-
-				private List<Suite> suites = new ArrayList<Suite>();
-				
-				public List<Suite> invoke(File workspace, VirtualChannel channel)
-						throws IOException, InterruptedException {
-					final String[] xmls = TestNGMethodNameDataProviderNameResultSeeker.this.scan(workspace, includePattern, listener);
-					
-					for(String xml : xmls) {
-						final File input = new File(workspace, xml);
-						Suite suite = parser.parse(input);
-						suites.add(suite);
-					}
-					
-					return suites;
-				}
-			});
+			final List<Suite> suites = this.parse(build, listener, resultFiles);
+			final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField);
+			
+			// Data Provider name of each test case, read once
+			final Map<TestCaseWrapper, String> dataProviderValues = new HashMap<TestCaseWrapper, String>();
+			for(TestCaseWrapper automatedTestCase : automatedTestCases) {
+				dataProviderValues.put(automatedTestCase, automatedTestCase.getKeyCustomFieldValue(this.dataProviderNameKeyCustomField));
+			}
+			
+			// Invocations by qualified method name and Data Provider name
+			final Map<List<String>, Invocations> invocations = new LinkedHashMap<List<String>, Invocations>();
 			for(Suite suite : suites) {
 				for(Test test : suite.getTests() ) {
 					for(hudson.plugins.testlink.testng.Class  clazz : test.getClasses()) {
 						for(TestMethod method : clazz.getTestMethods()) {
-							for(TestCaseWrapper automatedTestCase : automatedTestCases) {
-								final String qualifiedName = clazz.getName()+'#'+method.getName();
-								final String dataProviderName = method.getDataProvider();
-								final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-								final String dataProviderValue = automatedTestCase.getKeyCustomFieldValue(this.dataProviderNameKeyCustomField);
-								for(String value : commaSeparatedValues) {
-									if(qualifiedName.equals(value) && dataProviderName.equals(dataProviderValue)) {
-										ExecutionStatus status = this.getExecutionStatus(method);
-										if(status != ExecutionStatus.NOT_RUN) {
-											automatedTestCase.addCustomFieldAndStatus(value, status);
-										}
-										
-										if(this.isIncludeNotes()) {
-											final String notes = this.getTestNGNotes(method);
-											automatedTestCase.appendNotes(notes);
-										}
-										
-										this.handleResult(automatedTestCase, build, listener, testlink, status, suite);
-									}
-								}
+							final String dataProviderName = method.getDataProvider();
+							if(dataProviderName == null) {
+								continue;
+							}
+							final String qualifiedName = clazz.getName()+'#'+method.getName();
+							final List<String> key = Arrays.asList(qualifiedName, dataProviderName);
+							Invocations methodInvocations = invocations.get(key);
+							if(methodInvocations == null) {
+								methodInvocations = new Invocations(qualifiedName, dataProviderName);
+								invocations.put(key, methodInvocations);
 							}
+							if(!methodInvocations.suites.contains(suite)) {
+								methodInvocations.suites.add(suite);
+							}
+							methodInvocations.methods.add(method);
 						}
 					}
 				}
 			}
+			
+			for(Invocations methodInvocations : invocations.values()) {
+				for(KeyCustomFieldMatcher.Match match : matcher.match(methodInvocations.qualifiedName)) {
+					final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
+					if(!methodInvocations.dataProviderName.equals(dataProviderValues.get(automatedTestCase))) {
+						continue;
+					}
+					ExecutionStatus status = ExecutionStatus.NOT_RUN;
+					for(TestMethod method : methodInvocations.methods) {
+						final ExecutionStatus methodStatus = this.getExecutionStatus(method);
+						if(methodStatus != ExecutionStatus.NOT_RUN) {
+							automatedTestCase.mergeCustomFieldAndStatus(match.getValue(), methodStatus);
+							status = automatedTestCase.getCustomFieldAndStatus().get(match.getValue());
+						}
+						
+						if(this.isIncludeNotes()) {
+							final String notes = this.getTestNGNotes(method);
+							automatedTestCase.appendNotes(notes);
+						}
+					}
+					
+					this.handleResult(automatedTestCase, build, listener, testlink, status, methodInvocations.suites);
+				}
+			}
 		} catch (IOException e) {
 			throw new ResultSeekerException(e);
 		} catch (InterruptedException e) {
@@ -163,6 +178,22 @@ public class TestNGMethodNameDataProviderNameResultSeeker extends AbstractTestNG
 		} 
 	}
 
+	/**
+	 * Invocations of a method with a Data Provider, and the suites where 
+	 * they were found, that may come from several result files.
+	 */
+	private static final class Invocations {
+		private final String qualifiedName;
+		private final String dataProviderName;
+		private final List<TestMethod> methods = new LinkedList<TestMethod>();
+		private final List<Suite> suites = new ArrayList<Suite>();
+		
+		Invocations(String qualifiedName, String dataProviderName) {
+			this.qualifiedName = qualifiedName;
+			this.dataProviderName = dataProviderName;
+		}
+	}
+
 	/**
 	 * @param suite
 	 * @return
@@ -24,7 +24,6 @@
 package hudson.plugins.testlink.result;
 
 import hudson.Extension;
-import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
@@ -32,13 +31,9 @@ import hudson.plugins.testlink.TestLinkSite;
 import hudson.plugins.testlink.testng.Suite;
 import hudson.plugins.testlink.testng.Test;
 import hudson.plugins.testlink.testng.TestMethod;
-import hudson.plugins.testlink.testng.TestNGParser;
 import hudson.plugins.testlink.util.Messages;
-import hudson.remoting.VirtualChannel;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
@@ -59,8 +54,6 @@ public class TestNGMethodNameResultSeeker extends AbstractTestNGResultSeeker {
 
 	private static final long serialVersionUID = 3885800916930897675L;
 	
-	private final TestNGParser parser = new TestNGParser();
-	
 	/**
 	 * @param includePattern
 	 * @param keyCustomField
@@ -89,49 +82,29 @@ public class TestNGMethodNameResultSeeker extends AbstractTestNGResultSeeker {
 	 * @see hudson.plugins.testlink.result.ResultSeeker#seekAndUpdate(hudson.plugins.testlink.result.TestCaseWrapper<?>[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite, hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
 		listener.getLogger().println( Messages.Results_TestNG_LookingForTestMethod() );
 		try {
-			final List<Suite> suites = build.getWorkspace().act(new FilePath.FileCallable<List<Suite>>() {
-				private static final long serialVersionUID = 1L;
-
-				private List<Suite> suites = new ArrayList<Suite>();
-				
-				public List<Suite> invoke(File workspace, VirtualChannel channel)
-						throws IOException, InterruptedException {
-					final String[] xmls = TestNGMethodNameResultSeeker.this.scan(workspace, includePattern, listener);
-					
-					for(String xml : xmls) {
-						final File input = new File(workspace, xml);
-						Suite suite = parser.parse(input);
-						suites.add(suite);
-					}
-					
-					return suites;
-				}
-			});
+			final List<Suite> suites = this.parse(build, listener, resultFiles);
+			final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField);
 			for(Suite suite : suites) {
 				for(Test test : suite.getTests() ) {
 					for(hudson.plugins.testlink.testng.Class  clazz : test.getClasses()) {
 						for(TestMethod method : clazz.getTestMethods()) {
-							for(TestCaseWrapper automatedTestCase : automatedTestCases) {
-								final String qualifiedName = clazz.getName()+'#'+method.getName();
-								final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-								for(String value : commaSeparatedValues) {
-									if(qualifiedName.equals(value)) {
-										ExecutionStatus status = this.getExecutionStatus(method);
-										if(status != ExecutionStatus.NOT_RUN) {
-											automatedTestCase.addCustomFieldAndStatus(value, status);
-										}
-										
-										if(this.isIncludeNotes()) {
-											final String notes = this.getTestNGNotes(method);
-											automatedTestCase.appendNotes(notes);
-										}
-										
-										super.handleResult(automatedTestCase, build, listener, testlink, status, suite);
-									}
+							final String qualifiedName = clazz.getName()+'#'+method.getName();
+							for(KeyCustomFieldMatcher.Match match : matcher.match(qualifiedName)) {
+								final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
+								ExecutionStatus status = this.getExecutionStatus(method);
+								if(status != ExecutionStatus.NOT_RUN) {
+									match.addStatus(status);
+								}
+								
+								if(this.isIncludeNotes()) {
+									final String notes = this.getTestNGNotes(method);
+									automatedTestCase.appendNotes(notes);
 								}
+								
+								super.handleResult(automatedTestCase, build, listener, testlink, status, suite);
 							}
 						}
 					}
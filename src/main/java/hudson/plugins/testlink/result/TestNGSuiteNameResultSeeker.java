@@ -24,7 +24,6 @@
 package hudson.plugins.testlink.result;
 
 import hudson.Extension;
-import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
@@ -32,13 +31,9 @@ import hudson.plugins.testlink.TestLinkSite;
 import hudson.plugins.testlink.testng.Suite;
 import hudson.plugins.testlink.testng.Test;
 import hudson.plugins.testlink.testng.TestMethod;
-import hudson.plugins.testlink.testng.TestNGParser;
 import hudson.plugins.testlink.util.Messages;
-import hudson.remoting.VirtualChannel;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -58,8 +53,6 @@ public class TestNGSuiteNameResultSeeker extends AbstractTestNGResultSeeker {
 
 	private static final long serialVersionUID = 3998602647639013614L;
 	
-	private final TestNGParser parser = new TestNGParser();
-	
 	/**
 	 * @param includePattern
 	 * @param keyCustomField
@@ -88,45 +81,25 @@ public class TestNGSuiteNameResultSeeker extends AbstractTestNGResultSeeker {
 	 * @see hudson.plugins.testlink.result.ResultSeeker#seekAndUpdate(hudson.plugins.testlink.result.TestCaseWrapper<?>[], hudson.model.AbstractBuild, hudson.Launcher, hudson.model.BuildListener, hudson.plugins.testlink.TestLinkSite, hudson.plugins.testlink.result.Report)
 	 */
 	@Override
-	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink) throws ResultSeekerException {
+	public void seek(TestCaseWrapper[] automatedTestCases, AbstractBuild<?, ?> build, Launcher launcher, final BuildListener listener, TestLinkSite testlink, ResultFileTracker resultFiles) throws ResultSeekerException {
 		listener.getLogger().println( Messages.Results_TestNG_LookingForTestSuites() );
 		try {
-			final List<Suite> suites = build.getWorkspace().act(new FilePath.FileCallable<List<Suite>>() {
-				private static final long serialVersionUID = 1L;
-
-				private List<Suite> suites = new ArrayList<Suite>();
-				
-				public List<Suite> invoke(File workspace, VirtualChannel channel)
-						throws IOException, InterruptedException {
-					final String[] xmls = TestNGSuiteNameResultSeeker.this.scan(workspace, includePattern, listener);
-					
-					for(String xml : xmls) {
-						final File input = new File(workspace, xml);
-						Suite suite = parser.parse(input);
-						suites.add(suite);
+			final List<Suite> suites = this.parse(build, listener, resultFiles);
+			final KeyCustomFieldMatcher matcher = new KeyCustomFieldMatcher(automatedTestCases, this.keyCustomField);
+			for(Suite suite : suites) {
+				for(KeyCustomFieldMatcher.Match match : matcher.match(suite.getName())) {
+					final TestCaseWrapper automatedTestCase = match.getAutomatedTestCase();
+					ExecutionStatus status = this.getExecutionStatus(suite);
+					if(status != ExecutionStatus.NOT_RUN) {
+						match.addStatus(status);
 					}
 					
-					return suites;
-				}
-			});
-			for(Suite suite : suites) {
-				for(TestCaseWrapper automatedTestCase : automatedTestCases) {
-					final String[] commaSeparatedValues = automatedTestCase.getKeyCustomFieldValues(this.keyCustomField);
-					for(String value : commaSeparatedValues) {
-						if(suite.getName().equals(value)) {
-							ExecutionStatus status = this.getExecutionStatus(suite);
-							if(status != ExecutionStatus.NOT_RUN) {
-								automatedTestCase.addCustomFieldAndStatus(value, status);
-							}
-							
-							if(this.isIncludeNotes()) {
-								final String notes = this.getTestNGNotes(suite);
-								automatedTestCase.appendNotes(notes);
-							}
-							
-							super.handleResult(automatedTestCase, build, listener, testlink, status, suite);
-						}
+					if(this.isIncludeNotes()) {
+						final String notes = this.getTestNGNotes(suite);
+						automatedTestCase.appendNotes(notes);
 					}
+					
+					super.handleResult(automatedTestCase, build, listener, testlink, status, suite);
 				}
 			}
 		} catch (IOException e) {
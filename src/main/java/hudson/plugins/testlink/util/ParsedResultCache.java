@@ -0,0 +1,233 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.FilePath.FileCallable;
+import hudson.model.AbstractBuild;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Cache of parsed result files, shared by the result seekers.</p>
+ * 
+ * <p>Lives in the JVM where the result files are parsed (usually the 
+ * slave). An entry is keyed by the build that parsed the file, the parser 
+ * used and the path, size and last modified time of the file, so that a 
+ * file changed on disk is parsed again and concurrent builds never see 
+ * each other's entries. Values are held by soft references, and are 
+ * released by the JVM when memory is low. The TestLink builder removes the 
+ * entries of its build at the end of its execution.</p>
+ * 
+ * <p>The same model is returned to every result seeker of the build, so 
+ * cached models must be treated as read-only.</p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public final class ParsedResultCache {
+
+	private static final Logger LOGGER = Logger.getLogger("hudson.plugins.testlink");
+	
+	private static final Map<Key, Entry> CACHE = new HashMap<Key, Entry>();
+	
+	private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+	
+	private ParsedResultCache() {
+		super();
+	}
+	
+	/**
+	 * @param build the build parsing the result files
+	 * @return the scope of the entries of the build
+	 */
+	public static String getScope(AbstractBuild<?, ?> build) {
+		return build.getParent().getFullName() + '#' + build.getNumber();
+	}
+	
+	/**
+	 * Retrieves the model parsed from a file, if it is still cached and the 
+	 * file did not change. The model is shared, and must not be modified.
+	 * 
+	 * @param scope scope of the build, see {@link #getScope(AbstractBuild)}
+	 * @param parser name of the parser, and of any option that changes its output
+	 * @param file the parsed file
+	 * @param type type of the model
+	 * @return the model, or <code>null</code>
+	 */
+	public static synchronized <T> T get(String scope, String parser, File file, Class<T> type) {
+		purge();
+		final Entry entry = CACHE.get(new Key(scope, parser, file));
+		if(entry == null) {
+			return null;
+		}
+		final Object model = entry.get();
+		if(model == null || !type.isInstance(model)) {
+			return null;
+		}
+		if(LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.log(Level.FINE, "Reusing parsed result file: " + file);
+		}
+		return type.cast(model);
+	}
+	
+	/**
+	 * Caches the model parsed from a file.
+	 * 
+	 * @param scope scope of the build, see {@link #getScope(AbstractBuild)}
+	 * @param parser name of the parser, and of any option that changes its output
+	 * @param file the parsed file
+	 * @param model the model
+	 */
+	public static synchronized void put(String scope, String parser, File file, Object model) {
+		purge();
+		final Key key = new Key(scope, parser, file);
+		CACHE.put(key, new Entry(key, model, QUEUE));
+	}
+	
+	/**
+	 * Removes the models cached by a build.
+	 * 
+	 * @param scope scope of the build, see {@link #getScope(AbstractBuild)}
+	 */
+	public static synchronized void clear(String scope) {
+		purge();
+		for(Iterator<Key> iterator = CACHE.keySet().iterator(); iterator.hasNext();) {
+			if(iterator.next().scope.equals(scope)) {
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Removes every cached model.
+	 */
+	public static synchronized void clear() {
+		purge();
+		CACHE.clear();
+	}
+	
+	/**
+	 * @return number of cached models
+	 */
+	public static synchronized int size() {
+		purge();
+		return CACHE.size();
+	}
+	
+	/**
+	 * Removes the entries whose models were released by the JVM.
+	 */
+	private static void purge() {
+		Reference<? extends Object> reference;
+		while((reference = QUEUE.poll()) != null) {
+			final Key key = ((Entry) reference).key;
+			if(CACHE.get(key) == reference) {
+				CACHE.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * Removes the models cached by a build in the JVM that owns the workspace.
+	 */
+	public static final class ClearCallable implements FileCallable<Void> {
+
+		private static final long serialVersionUID = -2446702473283006420L;
+		
+		private final String scope;
+		
+		/**
+		 * @param scope scope of the build, see {@link ParsedResultCache#getScope(AbstractBuild)}
+		 */
+		public ClearCallable(String scope) {
+			super();
+			this.scope = scope;
+		}
+
+		public Void invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+			ParsedResultCache.clear(scope);
+			return null;
+		}
+	}
+	
+	private static final class Entry extends SoftReference<Object> {
+		private final Key key;
+		
+		Entry(Key key, Object model, ReferenceQueue<Object> queue) {
+			super(model, queue);
+			this.key = key;
+		}
+	}
+	
+	private static final class Key {
+		private final String scope;
+		private final String parser;
+		private final String path;
+		private final long length;
+		private final long lastModified;
+		
+		Key(String scope, String parser, File file) {
+			this.scope = scope;
+			this.parser = parser;
+			this.path = file.getAbsolutePath();
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = scope.hashCode();
+			result = 31 * result + parser.hashCode();
+			result = 31 * result + path.hashCode();
+			result = 31 * result + (int) (length ^ (length >>> 32));
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return length == other.length && lastModified == other.lastModified 
+					&& scope.equals(other.scope) && parser.equals(other.parser) 
+					&& path.equals(other.path);
+		}
+	}
+	
+}
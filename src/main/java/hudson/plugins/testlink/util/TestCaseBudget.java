@@ -0,0 +1,212 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.TestImportance;
+
+/**
+ * <p>
+ * Chooses the test cases that fit in a time budget. Each test case gets a 
+ * score, and costs the duration recorded in the previous builds (see 
+ * {@link TestCaseDurations}). The test cases are taken by score per 
+ * millisecond, highest first, while they fit in the budget.
+ * </p>
+ * 
+ * <p>
+ * The score is the sum of:
+ * </p>
+ * <ul>
+ * <li>the importance of the test case in TestLink: 1 for low, 2 for medium 
+ * or unknown, 3 for high;</li>
+ * <li>2 for each failure in its last {@value #RECENT_RUNS} runs;</li>
+ * <li>0.5 for each build since its last run, up to {@value #MAX_AGE} builds. 
+ * Test cases that never ran get the maximum.</li>
+ * </ul>
+ * 
+ * <p>
+ * Test cases without a recorded duration cost the mean duration of the 
+ * others. Without any duration history every test case is selected, as 
+ * nothing is known about how long they take.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestCaseBudget {
+
+	/**
+	 * Number of runs where failures are counted.
+	 */
+	public static final int RECENT_RUNS = 5;
+
+	/**
+	 * Number of builds after which a test case gets no more points for not 
+	 * having run.
+	 */
+	public static final int MAX_AGE = 10;
+
+	private final TestCaseDurations testCaseDurations;
+
+	private final TestCaseHistory testCaseHistory;
+
+	private final int buildNumber;
+
+	/**
+	 * @param testCaseDurations durations of the previous builds
+	 * @param testCaseHistory history of the previous builds
+	 * @param buildNumber number of this build
+	 */
+	public TestCaseBudget(TestCaseDurations testCaseDurations, TestCaseHistory testCaseHistory, int buildNumber) {
+		this.testCaseDurations = testCaseDurations;
+		this.testCaseHistory = testCaseHistory;
+		this.buildNumber = buildNumber;
+	}
+
+	/**
+	 * @param testCase test case
+	 * @return score of the test case
+	 */
+	public double getScore(TestCaseWrapper testCase) {
+		final TestImportance importance = testCase.getTestImportance();
+		double score = importance == TestImportance.LOW ? 1 : (importance == TestImportance.HIGH ? 3 : 2);
+		final TestCaseHistory.Record record = this.testCaseHistory.getRecord(testCase);
+		if (record == null) {
+			score += 0.5 * MAX_AGE;
+		} else {
+			score += 2 * record.getFailures(RECENT_RUNS);
+			score += 0.5 * Math.max(0, Math.min(MAX_AGE, this.buildNumber - record.getLastBuild()));
+		}
+		return score;
+	}
+
+	/**
+	 * Selects the test cases that fit in a time budget.
+	 * 
+	 * @param testCases test cases, in execution order
+	 * @param budget time budget, in milliseconds
+	 * @return selected and left out test cases, both in execution order
+	 */
+	public Selection select(TestCaseWrapper[] testCases, long budget) {
+		final long[] costs = new long[testCases.length];
+		final double[] densities = new double[testCases.length];
+		long total = 0L;
+		int withHistory = 0;
+		for (int i = 0; i < testCases.length; ++i) {
+			final Long duration = this.testCaseDurations.getPreviousDuration(testCases[i]);
+			if (duration != null) {
+				costs[i] = Math.max(1L, duration);
+				total += costs[i];
+				++withHistory;
+			}
+		}
+		if (withHistory == 0) {
+			return new Selection(Arrays.asList(testCases), Collections.<TestCaseWrapper>emptyList(), -1L);
+		}
+		final long defaultCost = Math.max(1L, total / withHistory);
+		final Integer[] order = new Integer[testCases.length];
+		for (int i = 0; i < testCases.length; ++i) {
+			if (costs[i] == 0L) {
+				costs[i] = defaultCost;
+			}
+			densities[i] = this.getScore(testCases[i]) / costs[i];
+			order[i] = i;
+		}
+
+		// Stable sort, so test cases with the same density keep the 
+		// execution order
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(densities[o2], densities[o1]);
+			}
+		});
+		final boolean[] selected = new boolean[testCases.length];
+		long used = 0L;
+		for (Integer i : order) {
+			if (used + costs[i] <= budget) {
+				used += costs[i];
+				selected[i] = true;
+			}
+		}
+
+		final List<TestCaseWrapper> selectedTestCases = new ArrayList<TestCaseWrapper>();
+		final List<TestCaseWrapper> leftOut = new ArrayList<TestCaseWrapper>();
+		for (int i = 0; i < testCases.length; ++i) {
+			(selected[i] ? selectedTestCases : leftOut).add(testCases[i]);
+		}
+		return new Selection(selectedTestCases, leftOut, used);
+	}
+
+	/**
+	 * Test cases selected to run in a time budget.
+	 * 
+	 * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+	 * @since 3.1.9
+	 */
+	public static class Selection {
+
+		private final List<TestCaseWrapper> selected;
+
+		private final List<TestCaseWrapper> leftOut;
+
+		private final long estimatedDuration;
+
+		Selection(List<TestCaseWrapper> selected, List<TestCaseWrapper> leftOut, long estimatedDuration) {
+			this.selected = selected;
+			this.leftOut = leftOut;
+			this.estimatedDuration = estimatedDuration;
+		}
+
+		/**
+		 * @return selected test cases, in execution order
+		 */
+		public TestCaseWrapper[] getSelected() {
+			return selected.toArray(new TestCaseWrapper[selected.size()]);
+		}
+
+		/**
+		 * @return test cases left out, in execution order
+		 */
+		public List<TestCaseWrapper> getLeftOut() {
+			return leftOut;
+		}
+
+		/**
+		 * @return estimated duration of the selected test cases, in 
+		 * milliseconds, or -1 if there is no duration history
+		 */
+		public long getEstimatedDuration() {
+			return estimatedDuration;
+		}
+
+	}
+
+}
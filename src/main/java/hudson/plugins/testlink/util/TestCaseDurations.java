@@ -0,0 +1,262 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Wall time taken by the iterative build steps of each test case. The 
+ * durations recorded in the previous build are used to balance the test 
+ * cases between parallel lanes or shards, and the durations of this build 
+ * are recorded for the next one.
+ * </p>
+ * 
+ * <p>
+ * Test cases are balanced with the longest processing time first rule: 
+ * the longest test cases are taken first, each one going to the lane 
+ * with the least work so far. Test cases without history are estimated 
+ * with the mean duration of the test cases with history, so when there is 
+ * no history at all they keep their order. When the order of the test 
+ * cases matters more than the time, they can be taken in their order 
+ * instead, each one still going to the lane with the least work so far.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestCaseDurations {
+
+	/**
+	 * Durations recorded in the previous build, by test case ID.
+	 */
+	private final Map<Integer, Long> previousDurations;
+
+	/**
+	 * Durations recorded in this build, by test case ID.
+	 */
+	private final Map<Integer, Long> durations = new HashMap<Integer, Long>();
+
+	/**
+	 * @param previousDurations durations recorded in the previous build, by 
+	 * test case ID, or <code>null</code> if there is no history
+	 */
+	public TestCaseDurations(Map<Integer, Long> previousDurations) {
+		if (previousDurations == null) {
+			this.previousDurations = Collections.emptyMap();
+		} else {
+			this.previousDurations = previousDurations;
+		}
+	}
+
+	/**
+	 * Records the wall time taken by a test case in this build.
+	 * 
+	 * @param testCase test case
+	 * @param duration wall time, in milliseconds
+	 */
+	public synchronized void record(TestCaseWrapper testCase, long duration) {
+		if (testCase.getId() != null) {
+			this.durations.put(testCase.getId(), duration);
+		}
+	}
+
+	/**
+	 * @param testCase test case
+	 * @return duration recorded in the previous build, or <code>null</code>
+	 */
+	public Long getPreviousDuration(TestCaseWrapper testCase) {
+		return testCase.getId() == null ? null : this.previousDurations.get(testCase.getId());
+	}
+
+	/**
+	 * Returns the durations to keep for the next build: the ones recorded in 
+	 * this build, plus the previous ones of the test cases not iterated in 
+	 * this build. The durations of test cases no longer in the test plan are 
+	 * dropped.
+	 * 
+	 * @param testPlanTestCases automated test cases of the test plan
+	 * @return durations by test case ID
+	 */
+	public synchronized HashMap<Integer, Long> toMap(TestCaseWrapper[] testPlanTestCases) {
+		final HashMap<Integer, Long> map = new HashMap<Integer, Long>();
+		for (TestCaseWrapper testCase : testPlanTestCases) {
+			final Long duration = this.getPreviousDuration(testCase);
+			if (duration != null) {
+				map.put(testCase.getId(), duration);
+			}
+		}
+		map.putAll(this.durations);
+		return map;
+	}
+
+	/**
+	 * Balances test cases between lanes, taking the longest ones first.
+	 * 
+	 * @param testCases test cases, in the order to execute them
+	 * @param lanes number of lanes
+	 * @return schedule
+	 */
+	public Schedule schedule(TestCaseWrapper[] testCases, int lanes) {
+		return this.schedule(testCases, lanes, false);
+	}
+
+	/**
+	 * Balances test cases between lanes.
+	 * 
+	 * @param testCases test cases, in the order to execute them
+	 * @param lanes number of lanes
+	 * @param keepOrder whether to take the test cases in their order instead 
+	 * of the longest ones first
+	 * @return schedule
+	 */
+	public Schedule schedule(TestCaseWrapper[] testCases, int lanes, boolean keepOrder) {
+		final Map<TestCaseWrapper, Long> estimates = new IdentityHashMap<TestCaseWrapper, Long>(testCases.length);
+		long total = 0L;
+		int withHistory = 0;
+		for (TestCaseWrapper testCase : testCases) {
+			final Long duration = this.getPreviousDuration(testCase);
+			if (duration != null) {
+				estimates.put(testCase, duration);
+				total += duration;
+				++withHistory;
+			}
+		}
+		final long defaultEstimate = withHistory > 0 ? total / withHistory : 1L;
+		final Map<TestCaseWrapper, Integer> positions = new IdentityHashMap<TestCaseWrapper, Integer>(testCases.length);
+		for (TestCaseWrapper testCase : testCases) {
+			positions.put(testCase, positions.size());
+			if (!estimates.containsKey(testCase)) {
+				estimates.put(testCase, defaultEstimate);
+			}
+		}
+
+		final TestCaseWrapper[] order = testCases.clone();
+		if (!keepOrder) {
+			// Stable sort, so test cases with the same estimate keep the 
+			// order given
+			Arrays.sort(order, new Comparator<TestCaseWrapper>() {
+				public int compare(TestCaseWrapper o1, TestCaseWrapper o2) {
+					final long d1 = estimates.get(o1);
+					final long d2 = estimates.get(o2);
+					return d1 > d2 ? -1 : (d1 < d2 ? 1 : 0);
+				}
+			});
+		}
+
+		final long[] loads = new long[lanes];
+		final List<List<TestCaseWrapper>> assignment = new ArrayList<List<TestCaseWrapper>>(lanes);
+		for (int i = 0; i < lanes; ++i) {
+			assignment.add(new ArrayList<TestCaseWrapper>());
+		}
+		for (TestCaseWrapper testCase : order) {
+			int lane = 0;
+			for (int i = 1; i < lanes; ++i) {
+				if (loads[i] < loads[lane]) {
+					lane = i;
+				}
+			}
+			loads[lane] += estimates.get(testCase);
+			assignment.get(lane).add(testCase);
+		}
+		long makespan = 0L;
+		// Each lane keeps the order of the test cases given
+		final Comparator<TestCaseWrapper> positionComparator = new Comparator<TestCaseWrapper>() {
+			public int compare(TestCaseWrapper o1, TestCaseWrapper o2) {
+				return positions.get(o1) - positions.get(o2);
+			}
+		};
+		for (int i = 0; i < lanes; ++i) {
+			makespan = Math.max(makespan, loads[i]);
+			Collections.sort(assignment.get(i), positionComparator);
+		}
+		return new Schedule(order, assignment, withHistory > 0 ? makespan : -1L, withHistory);
+	}
+
+	/**
+	 * Test cases balanced between lanes.
+	 * 
+	 * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+	 * @since 3.1.9
+	 */
+	public static class Schedule {
+
+		private final TestCaseWrapper[] order;
+
+		private final List<List<TestCaseWrapper>> lanes;
+
+		private final long predictedMakespan;
+
+		private final int testCasesWithHistory;
+
+		Schedule(TestCaseWrapper[] order, List<List<TestCaseWrapper>> lanes, long predictedMakespan, int testCasesWithHistory) {
+			this.order = order;
+			this.lanes = lanes;
+			this.predictedMakespan = predictedMakespan;
+			this.testCasesWithHistory = testCasesWithHistory;
+		}
+
+		/**
+		 * @return all the test cases, longest first unless their order was 
+		 * kept, in the order to hand them to the first free lane
+		 */
+		public TestCaseWrapper[] getOrder() {
+			return order;
+		}
+
+		/**
+		 * @return test cases of each lane, in the order they were given
+		 */
+		public List<List<TestCaseWrapper>> getLanes() {
+			return lanes;
+		}
+
+		/**
+		 * @return predicted wall time of the busiest lane, in milliseconds, 
+		 * or -1 if no test case has history
+		 */
+		public long getPredictedMakespan() {
+			return predictedMakespan;
+		}
+
+		/**
+		 * @return number of test cases with a duration recorded in the 
+		 * previous build
+		 */
+		public int getTestCasesWithHistory() {
+			return testCasesWithHistory;
+		}
+
+	}
+
+}
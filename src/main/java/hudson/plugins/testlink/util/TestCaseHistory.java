@@ -0,0 +1,222 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * <p>
+ * Outcome of the last runs of each test case, kept from build to build. 
+ * Like the {@link TestCaseDurations}, the history of the previous build is 
+ * read once, and the results of this build are added to it for the next 
+ * one, so old builds are never loaded.
+ * </p>
+ * 
+ * <p>
+ * Only passed and failed test cases count as runs. Blocked test cases and 
+ * test cases without results did not really run, so they keep their 
+ * previous history.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestCaseHistory {
+
+	/**
+	 * History of the previous build, by test case ID.
+	 */
+	private final Map<Integer, Record> previousRecords;
+
+	/**
+	 * Records updated in this build, by test case ID.
+	 */
+	private final Map<Integer, Record> records = new HashMap<Integer, Record>();
+
+	/**
+	 * @param previousRecords history of the previous build, by test case ID, 
+	 * or <code>null</code> if there is no history
+	 */
+	public TestCaseHistory(Map<Integer, Record> previousRecords) {
+		if (previousRecords == null) {
+			this.previousRecords = Collections.emptyMap();
+		} else {
+			this.previousRecords = previousRecords;
+		}
+	}
+
+	/**
+	 * @param testCase test case
+	 * @return history of the test case, or <code>null</code> if it never ran
+	 */
+	public Record getRecord(TestCaseWrapper testCase) {
+		if (testCase.getId() == null) {
+			return null;
+		}
+		final Record record = this.records.get(testCase.getId());
+		return record != null ? record : this.previousRecords.get(testCase.getId());
+	}
+
+	/**
+	 * Adds the results of a build to the history.
+	 * 
+	 * @param buildNumber number of the build
+	 * @param testCases test cases with results
+	 */
+	public void record(int buildNumber, Collection<TestCaseWrapper> testCases) {
+		for (TestCaseWrapper testCase : testCases) {
+			final ExecutionStatus status = testCase.getExecutionStatus();
+			if (testCase.getId() == null || (status != ExecutionStatus.PASSED && status != ExecutionStatus.FAILED)) {
+				continue;
+			}
+			final Record previous = this.getRecord(testCase);
+			this.records.put(testCase.getId(), previous == null ? 
+					new Record(buildNumber, status == ExecutionStatus.FAILED) : 
+					previous.next(buildNumber, status == ExecutionStatus.FAILED));
+		}
+	}
+
+	/**
+	 * Returns the history to keep for the next build: the records updated in 
+	 * this build, plus the previous ones of the test cases that did not run.
+	 * 
+	 * @return history by test case ID
+	 */
+	public HashMap<Integer, Record> toMap() {
+		final HashMap<Integer, Record> map = new HashMap<Integer, Record>(this.previousRecords);
+		map.putAll(this.records);
+		return map;
+	}
+
+	/**
+	 * Outcome of the last runs of a test case. Immutable.
+	 * 
+	 * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+	 * @since 3.1.9
+	 */
+	public static final class Record implements Serializable {
+
+		private static final long serialVersionUID = 4436528931425427113L;
+
+		/**
+		 * Number of runs kept.
+		 */
+		public static final int MAX_RUNS = 64;
+
+		/**
+		 * Number of the last build where the test case ran.
+		 */
+		private final int lastBuild;
+
+		/**
+		 * Number of runs kept, up to {@link #MAX_RUNS}.
+		 */
+		private final int runs;
+
+		/**
+		 * One bit per run, set if the test case failed. The lowest bit is the 
+		 * last run.
+		 */
+		private final long failures;
+
+		public Record(int lastBuild, boolean failed) {
+			this(lastBuild, 1, failed ? 1L : 0L);
+		}
+
+		private Record(int lastBuild, int runs, long failures) {
+			this.lastBuild = lastBuild;
+			this.runs = runs;
+			this.failures = failures;
+		}
+
+		/**
+		 * @param buildNumber build where the test case ran
+		 * @param failed whether it failed
+		 * @return this history plus the new run
+		 */
+		public Record next(int buildNumber, boolean failed) {
+			return new Record(buildNumber, Math.min(this.runs + 1, MAX_RUNS), (this.failures << 1) | (failed ? 1L : 0L));
+		}
+
+		/**
+		 * @return number of the last build where the test case ran
+		 */
+		public int getLastBuild() {
+			return lastBuild;
+		}
+
+		/**
+		 * @return number of runs kept
+		 */
+		public int getRuns() {
+			return runs;
+		}
+
+		/**
+		 * @return whether the test case failed in its last run
+		 */
+		public boolean isLastFailed() {
+			return (this.failures & 1L) != 0L;
+		}
+
+		/**
+		 * @param lastRuns number of runs, counting back from the last one
+		 * @return number of failures in these runs
+		 */
+		public int getFailures(int lastRuns) {
+			final int n = Math.min(lastRuns, this.runs);
+			return Long.bitCount(this.failures & mask(n));
+		}
+
+		/**
+		 * @return number of runs since the last failure: 0 if the last run 
+		 * failed, or -1 if no run kept failed
+		 */
+		public int getRunsSinceLastFailure() {
+			return this.failures == 0L ? -1 : Long.numberOfTrailingZeros(this.failures);
+		}
+
+		/**
+		 * @return number of times the outcome changed from one run to the 
+		 * next, in the runs kept
+		 */
+		public int getFlips() {
+			return Long.bitCount((this.failures ^ (this.failures >>> 1)) & mask(this.runs - 1));
+		}
+
+		private static long mask(int bits) {
+			return bits >= 64 ? -1L : (1L << bits) - 1L;
+		}
+
+	}
+
+}
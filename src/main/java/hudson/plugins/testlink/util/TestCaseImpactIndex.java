@@ -0,0 +1,361 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.FilePath.FileCallable;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.tools.ant.DirectoryScanner;
+
+/**
+ * <p>
+ * Index from the values of a key custom field, i.e. class or package names, 
+ * to the source paths they stand for. It is used to find the test cases 
+ * impacted by the files changed in a build.
+ * </p>
+ * 
+ * <p>
+ * A value with a segment starting with an upper case letter is a class, 
+ * and the segments after it, like a method name, are ignored. The value 
+ * com.acme.FooTest matches the files com/acme/FooTest.* and, as the class 
+ * under test, com/acme/Foo.*, in any directory. Other values are packages: 
+ * com.acme.billing matches the directories com/acme/billing/, and the files 
+ * under them, so the changes in its subpackages impact it too.
+ * </p>
+ * 
+ * <p>
+ * The workspace is only scanned for values not indexed yet, and the files 
+ * added in later builds are indexed from the changes. A value without any 
+ * matching source is kept in the index with no paths, so the test cases 
+ * using it can always be executed.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestCaseImpactIndex {
+
+	/**
+	 * Build variable that, if true, executes all the test cases.
+	 */
+	public static final String FULL_RUN_VARIABLE = "TESTLINK_FULL_RUN";
+
+	private static final String[] TEST_CLASS_SUFFIXES = { "Tests", "Test", "TestCase", "IT" };
+
+	/**
+	 * Source paths of each value, with '/' as separator. Directory paths end 
+	 * with '/'.
+	 */
+	private final Map<String, Set<String>> paths;
+
+	/**
+	 * @param previousPaths index of the previous build, or <code>null</code>
+	 */
+	public TestCaseImpactIndex(Map<String, Set<String>> previousPaths) {
+		this.paths = new HashMap<String, Set<String>>();
+		if (previousPaths != null) {
+			for (Map.Entry<String, Set<String>> entry : previousPaths.entrySet()) {
+				this.paths.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Returns the path stems of a value: paths without extension for a 
+	 * class, and directory paths for a package.
+	 * 
+	 * @param value key custom field value
+	 * @return path stems
+	 */
+	public static List<String> getStems(String value) {
+		final String[] segments = value.trim().split("[.#]");
+		int classSegment = -1;
+		for (int i = 0; i < segments.length && classSegment < 0; ++i) {
+			if (segments[i].length() > 0 && Character.isUpperCase(segments[i].charAt(0))) {
+				classSegment = i;
+			}
+		}
+		final List<String> stems = new ArrayList<String>(2);
+		if (classSegment < 0) {
+			stems.add(join(segments, segments.length) + "/");
+			return stems;
+		}
+		final String packagePath = classSegment > 0 ? join(segments, classSegment) + "/" : "";
+		final String className = segments[classSegment];
+		stems.add(packagePath + className);
+		for (String suffix : TEST_CLASS_SUFFIXES) {
+			if (className.length() > suffix.length() && className.endsWith(suffix)) {
+				stems.add(packagePath + className.substring(0, className.length() - suffix.length()));
+				break;
+			}
+		}
+		if (className.length() > 4 && className.startsWith("Test") && Character.isUpperCase(className.charAt(4))) {
+			stems.add(packagePath + className.substring(4));
+		}
+		return stems;
+	}
+
+	private static String join(String[] segments, int length) {
+		final StringBuilder path = new StringBuilder();
+		for (int i = 0; i < length; ++i) {
+			if (path.length() > 0) {
+				path.append('/');
+			}
+			path.append(segments[i]);
+		}
+		return path.toString();
+	}
+
+	/**
+	 * @param values key custom field values
+	 * @return the values not indexed yet
+	 */
+	public Set<String> getMissingValues(Collection<String> values) {
+		final Set<String> missing = new HashSet<String>();
+		for (String value : values) {
+			if (!this.paths.containsKey(value)) {
+				missing.add(value);
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * @return the values indexed
+	 */
+	public Set<String> getValues() {
+		return this.paths.keySet();
+	}
+
+	/**
+	 * @param value key custom field value
+	 * @return whether the value is indexed, with at least one source path
+	 */
+	public boolean isMapped(String value) {
+		final Set<String> valuePaths = this.paths.get(value);
+		return valuePaths != null && !valuePaths.isEmpty();
+	}
+
+	/**
+	 * Indexes the files matching some values. Each value is indexed, even 
+	 * if no file matches it.
+	 * 
+	 * @param values key custom field values
+	 * @param files file paths, relative to the workspace or to the 
+	 * repository
+	 */
+	public void index(Collection<String> values, Collection<String> files) {
+		final Map<String, List<String>> stems = new HashMap<String, List<String>>();
+		for (String value : values) {
+			if (!this.paths.containsKey(value)) {
+				this.paths.put(value, new HashSet<String>());
+			}
+			for (String stem : getStems(value)) {
+				List<String> stemValues = stems.get(stem);
+				if (stemValues == null) {
+					stemValues = new ArrayList<String>(1);
+					stems.put(stem, stemValues);
+				}
+				stemValues.add(value);
+			}
+		}
+		final Set<String> directories = new HashSet<String>();
+		for (String file : files) {
+			final String path = normalize(file);
+			final int slash = path.lastIndexOf('/');
+			final int dot = path.lastIndexOf('.');
+			this.index(stems, dot > slash ? path.substring(0, dot) : path, path);
+			// A package also covers the files of its subpackages, so the 
+			// ancestor directories are indexed too, once each
+			for (int i = slash; i >= 0; i = path.lastIndexOf('/', i - 1)) {
+				final String directory = path.substring(0, i + 1);
+				if (!directories.add(directory)) {
+					break;
+				}
+				this.index(stems, directory, directory);
+			}
+		}
+	}
+
+	/**
+	 * Adds a path to the values whose stems are a suffix of a path stem.
+	 */
+	private void index(Map<String, List<String>> stems, String stem, String indexedPath) {
+		final List<String> candidates = new ArrayList<String>();
+		addSuffixes(stem, candidates);
+		for (String candidate : candidates) {
+			final List<String> stemValues = stems.get(candidate);
+			if (stemValues != null) {
+				for (String value : stemValues) {
+					this.paths.get(value).add(indexedPath);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the paths of an index, e.g. of the workspace scanned by 
+	 * {@link ScanCallable}.
+	 * 
+	 * @param index source paths by value
+	 */
+	public void addAll(Map<String, Set<String>> index) {
+		for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+			Set<String> valuePaths = this.paths.get(entry.getKey());
+			if (valuePaths == null) {
+				valuePaths = new HashSet<String>();
+				this.paths.put(entry.getKey(), valuePaths);
+			}
+			valuePaths.addAll(entry.getValue());
+		}
+	}
+
+	/**
+	 * Returns the values impacted by changed files. A changed file impacts a 
+	 * value if it is one of its files, or is in one of its directories or 
+	 * their subdirectories. Paths relative to the workspace and to the 
+	 * repository are compared by their common end, which must cover the 
+	 * whole package directory, so a module directory named like the last 
+	 * package segment does not match.
+	 * 
+	 * @param changedPaths paths of the changed files
+	 * @return impacted values
+	 */
+	public Set<String> getImpactedValues(Collection<String> changedPaths) {
+		// Reverse index by file or directory name, so each changed path is 
+		// only compared with the paths of the same name
+		final Map<String, List<String[]>> byName = new HashMap<String, List<String[]>>();
+		for (Map.Entry<String, Set<String>> entry : this.paths.entrySet()) {
+			final String stem = getStems(entry.getKey()).get(0);
+			for (String path : entry.getValue()) {
+				final String name = getName(path);
+				List<String[]> entries = byName.get(name);
+				if (entries == null) {
+					entries = new ArrayList<String[]>(1);
+					byName.put(name, entries);
+				}
+				entries.add(new String[] { path, entry.getKey(), stem });
+			}
+		}
+		final Set<String> impacted = new HashSet<String>();
+		for (String changedPath : changedPaths) {
+			final String path = normalize(changedPath);
+			// The file, then its directory and the ancestor directories, as a 
+			// package directory is a prefix of the directories under it
+			final List<String> candidates = new ArrayList<String>();
+			candidates.add(path);
+			for (int i = path.lastIndexOf('/'); i >= 0; i = path.lastIndexOf('/', i - 1)) {
+				candidates.add(path.substring(0, i + 1));
+			}
+			for (String candidate : candidates) {
+				final List<String[]> entries = byName.get(getName(candidate));
+				if (entries == null) {
+					continue;
+				}
+				for (String[] entry : entries) {
+					if (entry[0].endsWith("/") == candidate.endsWith("/") && isSamePath(candidate, entry[0]) 
+							&& (!candidate.endsWith("/") || isSamePath(candidate, entry[2]) && candidate.length() >= entry[2].length())) {
+						impacted.add(entry[1]);
+					}
+				}
+			}
+		}
+		return impacted;
+	}
+
+	/**
+	 * @return index by value, to keep for the next build
+	 */
+	public HashMap<String, Set<String>> toMap() {
+		return new HashMap<String, Set<String>>(this.paths);
+	}
+
+	private static void addSuffixes(String path, List<String> suffixes) {
+		suffixes.add(path);
+		final int end = path.endsWith("/") ? path.length() - 1 : path.length();
+		for (int i = path.indexOf('/'); i >= 0 && i < end; i = path.indexOf('/', i + 1)) {
+			suffixes.add(path.substring(i + 1));
+		}
+	}
+
+	/**
+	 * @return whether one path ends with the other, at a directory boundary
+	 */
+	private static boolean isSamePath(String path1, String path2) {
+		final String longer = path1.length() >= path2.length() ? path1 : path2;
+		final String shorter = longer == path1 ? path2 : path1;
+		return longer.endsWith(shorter) && (longer.length() == shorter.length() || longer.charAt(longer.length() - shorter.length() - 1) == '/');
+	}
+
+	private static String normalize(String path) {
+		String normalized = path.replace('\\', '/');
+		while (normalized.startsWith("/")) {
+			normalized = normalized.substring(1);
+		}
+		return normalized;
+	}
+
+	private static String getName(String path) {
+		final int end = path.endsWith("/") ? path.length() - 1 : path.length();
+		return path.substring(path.lastIndexOf('/', end - 1) + 1, end);
+	}
+
+	/**
+	 * Indexes the files matching some values in the workspace. The files 
+	 * are matched in the node that owns the workspace, so only the index is 
+	 * sent back.
+	 */
+	public static final class ScanCallable implements FileCallable<HashMap<String, Set<String>>> {
+
+		private static final long serialVersionUID = 6150484312935283342L;
+
+		private final Set<String> values;
+
+		public ScanCallable(Set<String> values) {
+			this.values = values;
+		}
+
+		public HashMap<String, Set<String>> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+			final DirectoryScanner scanner = new DirectoryScanner();
+			scanner.setBasedir(workspace);
+			scanner.addDefaultExcludes();
+			scanner.scan();
+			final TestCaseImpactIndex index = new TestCaseImpactIndex(null);
+			index.index(this.values, Arrays.asList(scanner.getIncludedFiles()));
+			return index.toMap();
+		}
+	}
+
+}
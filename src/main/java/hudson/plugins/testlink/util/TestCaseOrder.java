@@ -0,0 +1,149 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Order in which the automated test cases are executed. The test cases are 
+ * first sorted by TestLink execution order, and then each strategy sorts 
+ * them by a key read from the {@link TestCaseHistory}. The sort is stable, 
+ * so test cases with the same key keep the TestLink execution order.
+ * </p>
+ * 
+ * <p>
+ * The history of each test case is read once, so sorting takes 
+ * O(n log n), and no previous build is loaded.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public enum TestCaseOrder {
+
+	/**
+	 * TestLink execution order only.
+	 */
+	EXECUTION_ORDER {
+		@Override
+		public String getDisplayName() {
+			return Messages.TestCaseOrder_ExecutionOrder();
+		}
+
+		@Override
+		protected long getKey(TestCaseHistory.Record record) {
+			return 0L;
+		}
+	},
+
+	/**
+	 * Test cases that failed most recently first. Test cases that did not 
+	 * fail in the runs kept, or never ran, come last.
+	 */
+	RECENTLY_FAILED_FIRST {
+		@Override
+		public String getDisplayName() {
+			return Messages.TestCaseOrder_RecentlyFailedFirst();
+		}
+
+		@Override
+		protected long getKey(TestCaseHistory.Record record) {
+			if (record == null || record.getRunsSinceLastFailure() < 0) {
+				return TestCaseHistory.Record.MAX_RUNS;
+			}
+			return record.getRunsSinceLastFailure();
+		}
+	},
+
+	/**
+	 * Test cases whose outcome changed most often first.
+	 */
+	MOST_FLAKY_FIRST {
+		@Override
+		public String getDisplayName() {
+			return Messages.TestCaseOrder_MostFlakyFirst();
+		}
+
+		@Override
+		protected long getKey(TestCaseHistory.Record record) {
+			return record == null ? 0L : -record.getFlips();
+		}
+	};
+
+	/**
+	 * @return name shown in the job configuration
+	 */
+	public abstract String getDisplayName();
+
+	/**
+	 * @param record history of a test case, or <code>null</code> if it never 
+	 * ran
+	 * @return sort key of the test case, lowest first
+	 */
+	protected abstract long getKey(TestCaseHistory.Record record);
+
+	/**
+	 * Sorts test cases.
+	 * 
+	 * @param testCases test cases, in TestLink execution order
+	 * @param testCaseHistory history of the previous builds
+	 */
+	public void sort(TestCaseWrapper[] testCases, TestCaseHistory testCaseHistory) {
+		if (this == EXECUTION_ORDER) {
+			return;
+		}
+		final Map<TestCaseWrapper, Long> keys = new IdentityHashMap<TestCaseWrapper, Long>(testCases.length);
+		for (TestCaseWrapper testCase : testCases) {
+			keys.put(testCase, this.getKey(testCaseHistory.getRecord(testCase)));
+		}
+		Arrays.sort(testCases, new Comparator<TestCaseWrapper>() {
+			public int compare(TestCaseWrapper o1, TestCaseWrapper o2) {
+				final long k1 = keys.get(o1);
+				final long k2 = keys.get(o2);
+				return k1 < k2 ? -1 : (k1 > k2 ? 1 : 0);
+			}
+		});
+	}
+
+	/**
+	 * @param name name of a test case order, may be <code>null</code>
+	 * @return the test case order, or {@link #EXECUTION_ORDER} if there is 
+	 * none with this name
+	 */
+	public static TestCaseOrder forName(String name) {
+		for (TestCaseOrder testCaseOrder : values()) {
+			if (testCaseOrder.name().equals(name)) {
+				return testCaseOrder;
+			}
+		}
+		return EXECUTION_ORDER;
+	}
+
+}
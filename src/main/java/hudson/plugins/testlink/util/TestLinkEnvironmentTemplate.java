@@ -0,0 +1,332 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
+import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
+import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
+
+/**
+ * <p>
+ * Creates the environment variables of the test cases of a build. The same 
+ * variables as {@link TestLinkHelper#createTestLinkEnvironmentVariables(TestCaseWrapper, TestProject, TestPlan, Build)} 
+ * are created, but the names of the custom field and step variables are 
+ * computed once per build, not once per test case.
+ * </p>
+ * 
+ * <p>
+ * A template may also be restricted to the variables used by some scripts. 
+ * Then only the TESTLINK_ names found in the scripts are created. A name 
+ * ending with _, e.g. TESTLINK_TESTCASE_STEP_, stands for all the variables 
+ * starting with it.
+ * </p>
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestLinkEnvironmentTemplate {
+
+	private static final Pattern VARIABLE = Pattern.compile("TESTLINK_[A-Za-z0-9_]*");
+
+	private static final String TESTLINK_TESTCASE_PREFIX = "TESTLINK_TESTCASE_";
+	private static final String TESTLINK_TESTCASE_STEP_PREFIX = "TESTLINK_TESTCASE_STEP_";
+	private static final String TESTLINK_TESTCASE_STEP_TOTAL_ENVVAR = "TESTLINK_TESTCASE_STEP_TOTAL";
+	private static final String TESTLINK_TESTCASE_ID_ENVVAR = "TESTLINK_TESTCASE_ID";
+	private static final String TESTLINK_TESTCASE_NAME_ENVVAR = "TESTLINK_TESTCASE_NAME";
+	private static final String TESTLINK_TESTCASE_TESTSUITE_ID_ENVVAR = "TESTLINK_TESTCASE_TESTSUITEID";
+	private static final String TESTLINK_TESTCASE_TESTPROJECT_ID = "TESTLINK_TESTCASE_TESTPROJECTID";
+	private static final String TESTLINK_TESTCASE_AUTHOR_ENVVAR = "TESTLINK_TESTCASE_AUTHOR";
+	private static final String TESTLINK_TESTCASE_SUMMARY_ENVVAR = "TESTLINK_TESTCASE_SUMMARY";
+	private static final String TESTLINK_BUILD_NAME_ENVVAR = "TESTLINK_BUILD_NAME";
+	private static final String TESTLINK_TESTPLAN_NAME_ENVVAR = "TESTLINK_TESTPLAN_NAME";
+	private static final String TESTLINK_TESTPROJECT_NAME_ENVVAR = "TESTLINK_TESTPROJECT_NAME";
+
+	/**
+	 * Names used by the scripts, or <code>null</code> if every variable is 
+	 * created.
+	 */
+	private final Set<String> usedNames;
+
+	/**
+	 * Name prefixes used by the scripts.
+	 */
+	private final List<String> usedPrefixes;
+
+	/**
+	 * Variable names of each custom field, by custom field name.
+	 */
+	private final ConcurrentMap<String, VariableNames> customFieldNames = new ConcurrentHashMap<String, VariableNames>();
+
+	/**
+	 * Variable names of each step, by step number.
+	 */
+	private final ConcurrentMap<Integer, VariableNames> stepNames = new ConcurrentHashMap<Integer, VariableNames>();
+
+	/**
+	 * Creates a template for all the variables.
+	 */
+	public TestLinkEnvironmentTemplate() {
+		this.usedNames = null;
+		this.usedPrefixes = null;
+	}
+
+	/**
+	 * Creates a template for the variables used by some scripts.
+	 * 
+	 * @param scripts scripts, e.g. the commands of shell build steps
+	 */
+	public TestLinkEnvironmentTemplate(Collection<String> scripts) {
+		this.usedNames = new HashSet<String>();
+		this.usedPrefixes = new ArrayList<String>();
+		for (String script : scripts) {
+			if (script == null) {
+				continue;
+			}
+			final Matcher matcher = VARIABLE.matcher(script);
+			while (matcher.find()) {
+				final String name = matcher.group();
+				if (name.endsWith("_")) {
+					this.usedPrefixes.add(name);
+				} else {
+					this.usedNames.add(name);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param name variable name
+	 * @return whether the variable is created
+	 */
+	public boolean isUsed(String name) {
+		if (this.usedNames == null || this.usedNames.contains(name)) {
+			return true;
+		}
+		for (String prefix : this.usedPrefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param prefix variable name prefix
+	 * @return whether any variable starting with the prefix is created
+	 */
+	private boolean isAnyUsed(String prefix) {
+		if (this.usedNames == null) {
+			return true;
+		}
+		for (String name : this.usedNames) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		for (String usedPrefix : this.usedPrefixes) {
+			if (usedPrefix.startsWith(prefix) || prefix.startsWith(usedPrefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates a Map (name, value) of environment variables for a TestLink 
+	 * Test Case.
+	 * 
+	 * @param testCase TestLink test Case.
+	 * @param testProject TestLink Test Project.
+	 * @param testPlan TestLink Test Plan.
+	 * @param build TestLink Build.
+	 * @return Map (name, value) of environment variables.
+	 */
+	public Map<String, String> createEnvironmentVariables(TestCaseWrapper testCase, TestProject testProject, TestPlan testPlan, Build build) {
+		final Map<String, String> testLinkEnvVar = new HashMap<String, String>();
+
+		if (isUsed(TESTLINK_TESTCASE_ID_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTCASE_ID_ENVVAR, "" + testCase.getId());
+		}
+		if (isUsed(TESTLINK_TESTCASE_NAME_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTCASE_NAME_ENVVAR, defaultIfBlank(testCase.getName()));
+		}
+		if (isUsed(TESTLINK_TESTCASE_TESTSUITE_ID_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTCASE_TESTSUITE_ID_ENVVAR, "" + testCase.getTestSuiteId());
+		}
+		if (isUsed(TESTLINK_TESTCASE_TESTPROJECT_ID)) {
+			testLinkEnvVar.put(TESTLINK_TESTCASE_TESTPROJECT_ID, "" + testCase.getTestProjectId());
+		}
+		if (isUsed(TESTLINK_TESTCASE_AUTHOR_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTCASE_AUTHOR_ENVVAR, "" + testCase.getAuthorLogin());
+		}
+		if (isUsed(TESTLINK_TESTCASE_SUMMARY_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTCASE_SUMMARY_ENVVAR, defaultIfBlank(testCase.getSummary()));
+		}
+		if (isUsed(TESTLINK_BUILD_NAME_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_BUILD_NAME_ENVVAR, defaultIfBlank(build.getName()));
+		}
+		if (isUsed(TESTLINK_TESTPLAN_NAME_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTPLAN_NAME_ENVVAR, defaultIfBlank(testPlan.getName()));
+		}
+		if (isUsed(TESTLINK_TESTPROJECT_NAME_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTPROJECT_NAME_ENVVAR, defaultIfBlank(testProject.getName()));
+		}
+
+		for (CustomField customField : testCase.getCustomFields()) {
+			this.addCustomField(customField, testLinkEnvVar);
+		}
+
+		final List<TestCaseStep> steps = testCase.getSteps();
+		if (isUsed(TESTLINK_TESTCASE_STEP_TOTAL_ENVVAR)) {
+			testLinkEnvVar.put(TESTLINK_TESTCASE_STEP_TOTAL_ENVVAR, Integer.toString(steps.size()));
+		}
+		for (TestCaseStep step : steps) {
+			final VariableNames names = this.getStepNames(step.getNumber());
+			if (names.used) {
+				testLinkEnvVar.put(names.name, step.getActions());
+			}
+			if (names.otherUsed) {
+				testLinkEnvVar.put(names.otherName, step.getExpectedResults());
+			}
+		}
+
+		return testLinkEnvVar;
+	}
+
+	/**
+	 * Adds the variables of a custom field. See 
+	 * {@link TestLinkHelper#addCustomFieldEnvironmentVariableName(CustomField, Map)}.
+	 * 
+	 * @param customField custom field
+	 * @param testLinkEnvVar TestLink envVars
+	 */
+	private void addCustomField(CustomField customField, Map<String, String> testLinkEnvVar) {
+		final VariableNames names = this.getCustomFieldNames(customField.getName());
+		final String customFieldValue = customField.getValue();
+		if (names.used) {
+			testLinkEnvVar.put(names.name, customFieldValue);
+		}
+		if (!names.otherUsed || StringUtils.isBlank(customFieldValue)) {
+			return;
+		}
+		// Same tokens as a StringTokenizer splitting on commas: the values 
+		// between commas, skipping empty ones, only if there are at least two
+		final List<String> tokens = new ArrayList<String>();
+		int start = 0;
+		while (start <= customFieldValue.length()) {
+			int end = customFieldValue.indexOf(',', start);
+			if (end < 0) {
+				end = customFieldValue.length();
+			}
+			if (end > start) {
+				tokens.add(customFieldValue.substring(start, end).trim());
+			}
+			start = end + 1;
+		}
+		if (tokens.size() > 1) {
+			for (int index = 0; index < tokens.size(); ++index) {
+				final String tokenName = names.otherName + index;
+				if (isUsed(tokenName)) {
+					testLinkEnvVar.put(tokenName, tokens.get(index));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param customFieldName custom field name
+	 * @return variable names of the custom field. The other name is the 
+	 * prefix of the variables of each comma separated value
+	 */
+	private VariableNames getCustomFieldNames(String customFieldName) {
+		VariableNames names = this.customFieldNames.get(customFieldName);
+		if (names == null) {
+			final String name = (TESTLINK_TESTCASE_PREFIX + customFieldName.toUpperCase().trim()).replaceAll("\\s+", "_");
+			final String tokenPrefix = name + "_";
+			names = new VariableNames(name, isUsed(name), tokenPrefix, isAnyUsed(tokenPrefix));
+			this.customFieldNames.putIfAbsent(customFieldName, names);
+		}
+		return names;
+	}
+
+	/**
+	 * @param number step number
+	 * @return variable names of the step action and expected results
+	 */
+	private VariableNames getStepNames(Integer number) {
+		VariableNames names = this.stepNames.get(number);
+		if (names == null) {
+			final String action = TESTLINK_TESTCASE_STEP_PREFIX + number + "_ACTION";
+			final String expected = TESTLINK_TESTCASE_STEP_PREFIX + number + "_EXPECTED";
+			names = new VariableNames(action, isUsed(action), expected, isUsed(expected));
+			this.stepNames.putIfAbsent(number, names);
+		}
+		return names;
+	}
+
+	private static String defaultIfBlank(String string) {
+		return StringUtils.isBlank(string) ? "" : string;
+	}
+
+	/**
+	 * A pair of variable names, computed once, and whether they are used.
+	 */
+	private static final class VariableNames {
+
+		private final String name;
+
+		private final boolean used;
+
+		private final String otherName;
+
+		private final boolean otherUsed;
+
+		private VariableNames(String name, boolean used, String otherName, boolean otherUsed) {
+			this.name = name;
+			this.used = used;
+			this.otherName = otherName;
+			this.otherUsed = otherUsed;
+		}
+
+	}
+
+}
@@ -29,17 +29,17 @@ import hudson.plugins.testlink.Report;
 import hudson.plugins.testlink.TestLinkBuildAction;
 import hudson.plugins.testlink.result.TestCaseWrapper;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 
 import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
 import br.eti.kinoshita.testlinkjavaapi.model.Build;
 import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
-import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
 import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
 import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
 
@@ -54,16 +54,12 @@ public final class TestLinkHelper
 
 	// Environment Variables names.
 	private static final String TESTLINK_TESTCASE_PREFIX = "TESTLINK_TESTCASE_";
-	private static final String TESTLINK_TESTCASE_STEP_PREFIX = "TESTLINK_TESTCASE_STEP_";
-	private static final String TESTLINK_TESTCASE_ID_ENVVAR = "TESTLINK_TESTCASE_ID";
-	private static final String TESTLINK_TESTCASE_NAME_ENVVAR = "TESTLINK_TESTCASE_NAME";
-	private static final String TESTLINK_TESTCASE_TESTSUITE_ID_ENVVAR = "TESTLINK_TESTCASE_TESTSUITEID";
-	private static final String TESTLINK_TESTCASE_TESTPROJECT_ID = "TESTLINK_TESTCASE_TESTPROJECTID";
-	private static final String TESTLINK_TESTCASE_AUTHOR_ENVVAR = "TESTLINK_TESTCASE_AUTHOR";
-	private static final String TESTLINK_TESTCASE_SUMMARY_ENVVAR = "TESTLINK_TESTCASE_SUMMARY";
 	private static final String TESTLINK_BUILD_NAME_ENVVAR = "TESTLINK_BUILD_NAME";
 	private static final String TESTLINK_TESTPLAN_NAME_ENVVAR = "TESTLINK_TESTPLAN_NAME";
 	private static final String TESTLINK_TESTPROJECT_NAME_ENVVAR = "TESTLINK_TESTPROJECT_NAME";
+	private static final String TESTLINK_BATCH_SIZE_ENVVAR = "TESTLINK_BATCH_SIZE";
+	private static final String TESTLINK_BATCH_NUMBER_ENVVAR = "TESTLINK_BATCH_NUMBER";
+	public static final String TESTLINK_BATCH_FILE_ENVVAR = "TESTLINK_BATCH_FILE";
 
 	// Used for HTTP basic auth
 	private static final String BASIC_HTTP_PASSWORD = "basicPassword";
@@ -193,38 +189,149 @@ public final class TestLinkHelper
 	 */
 	public static Map<String, String> createTestLinkEnvironmentVariables( TestCaseWrapper testCase, TestProject testProject, TestPlan testPlan, Build build )
 	{
-		Map<String, String> testLinkEnvVar = new HashMap<String, String>();
-
-		testLinkEnvVar.put( TESTLINK_TESTCASE_ID_ENVVAR, ""+testCase.getId() );
-		testLinkEnvVar.put( TESTLINK_TESTCASE_NAME_ENVVAR, defaultIfBlank(testCase.getName(), ""));
-		testLinkEnvVar.put( TESTLINK_TESTCASE_TESTSUITE_ID_ENVVAR, ""+testCase.getTestSuiteId() );
-		testLinkEnvVar.put( TESTLINK_TESTCASE_TESTPROJECT_ID, ""+testCase.getTestProjectId() );
-		testLinkEnvVar.put( TESTLINK_TESTCASE_AUTHOR_ENVVAR, ""+testCase.getAuthorLogin() );
-		testLinkEnvVar.put( TESTLINK_TESTCASE_SUMMARY_ENVVAR, defaultIfBlank(testCase.getSummary(), "") );
-		testLinkEnvVar.put( TESTLINK_BUILD_NAME_ENVVAR, defaultIfBlank(build.getName(), ""));
-		testLinkEnvVar.put( TESTLINK_TESTPLAN_NAME_ENVVAR, defaultIfBlank(testPlan.getName(), ""));
-		testLinkEnvVar.put( TESTLINK_TESTPROJECT_NAME_ENVVAR, defaultIfBlank(testProject.getName(), ""));
-
-		List<CustomField> customFields = testCase.getCustomFields();
-		for ( CustomField customField : customFields )
+		return new TestLinkEnvironmentTemplate().createEnvironmentVariables( testCase, testProject, testPlan, build );
+	}
+
+	/**
+	 * <p>Creates a Map (name, value) of environment variables for a batch of 
+	 * TestLink Test Cases.</p>
+	 * 
+	 * <p>The variables of each test case are the same created by 
+	 * {@link #createTestLinkEnvironmentVariables(TestCaseWrapper, TestProject, TestPlan, Build)}, 
+	 * with the position of the test case in the batch after 
+	 * TESTLINK_TESTCASE_. So the ID of the first test case is in 
+	 * TESTLINK_TESTCASE_0_ID, and the name of the second one in 
+	 * TESTLINK_TESTCASE_1_NAME. TESTLINK_BATCH_SIZE has the number of test 
+	 * cases in the batch, and TESTLINK_BATCH_NUMBER the number of the batch, 
+	 * starting with 1.</p>
+	 *
+	 * @param testCases TestLink test Cases of the batch, in execution order.
+	 * @param batchNumber Number of the batch.
+	 * @param testProject TestLink Test Project.
+	 * @param testPlan TestLink Test Plan.
+	 * @param build TestLink Build.
+	 * @return Map (name, value) of environment variables, sorted by test case.
+	 */
+	public static Map<String, String> createBatchEnvironmentVariables( List<TestCaseWrapper> testCases, int batchNumber, TestProject testProject, TestPlan testPlan, Build build )
+	{
+		return createBatchEnvironmentVariables( testCases, batchNumber, testProject, testPlan, build, new TestLinkEnvironmentTemplate() );
+	}
+
+	/**
+	 * Creates a Map (name, value) of environment variables for a batch of 
+	 * TestLink Test Cases, with the test case variables of a template.
+	 *
+	 * @param testCases TestLink test Cases of the batch, in execution order.
+	 * @param batchNumber Number of the batch.
+	 * @param testProject TestLink Test Project.
+	 * @param testPlan TestLink Test Plan.
+	 * @param build TestLink Build.
+	 * @param template Environment variables template.
+	 * @return Map (name, value) of environment variables, sorted by test case.
+	 * @see #createBatchEnvironmentVariables(List, int, TestProject, TestPlan, Build)
+	 */
+	public static Map<String, String> createBatchEnvironmentVariables( List<TestCaseWrapper> testCases, int batchNumber, TestProject testProject, TestPlan testPlan, Build build, TestLinkEnvironmentTemplate template )
+	{
+		Map<String, String> batchEnvVar = new LinkedHashMap<String, String>();
+
+		batchEnvVar.put( TESTLINK_BATCH_NUMBER_ENVVAR, Integer.toString(batchNumber) );
+		batchEnvVar.put( TESTLINK_BATCH_SIZE_ENVVAR, Integer.toString(testCases.size()) );
+		batchEnvVar.put( TESTLINK_BUILD_NAME_ENVVAR, defaultIfBlank(build.getName(), ""));
+		batchEnvVar.put( TESTLINK_TESTPLAN_NAME_ENVVAR, defaultIfBlank(testPlan.getName(), ""));
+		batchEnvVar.put( TESTLINK_TESTPROJECT_NAME_ENVVAR, defaultIfBlank(testProject.getName(), ""));
+
+		int index = 0;
+		for ( TestCaseWrapper testCase : testCases )
 		{
-			addCustomFieldEnvironmentVariableName( customField, testLinkEnvVar );
+			Map<String, String> testLinkEnvVar = new TreeMap<String, String>( template.createEnvironmentVariables( testCase, testProject, testPlan, build ) );
+			for ( Map.Entry<String, String> entry : testLinkEnvVar.entrySet() )
+			{
+				if ( entry.getKey().startsWith( TESTLINK_TESTCASE_PREFIX ) )
+				{
+					batchEnvVar.put( TESTLINK_TESTCASE_PREFIX + index + "_" + entry.getKey().substring( TESTLINK_TESTCASE_PREFIX.length() ), entry.getValue() );
+				}
+			}
+			++index;
 		}
 
-		List<TestCaseStep> steps = testCase.getSteps();
-		testLinkEnvVar.put(TESTLINK_TESTCASE_STEP_PREFIX + "TOTAL", Integer.toString(steps.size()));
-		for ( TestCaseStep step : steps )
-		{
-			String name = TESTLINK_TESTCASE_STEP_PREFIX + step.getNumber() + "_ACTION";
-			String action = step.getActions();
-			testLinkEnvVar.put(name, action);
+		return batchEnvVar;
+	}
 
-			name = TESTLINK_TESTCASE_STEP_PREFIX + step.getNumber() + "_EXPECTED";
-			String expected = step.getExpectedResults();
-			testLinkEnvVar.put(name, expected);
+	/**
+	 * Creates the content of a batch manifest file. The file has one 
+	 * name=value line per environment variable, in the format read by 
+	 * java.util.Properties.
+	 *
+	 * @param batchEnvVar Batch environment variables.
+	 * @return Content of the manifest file.
+	 */
+	public static String createBatchManifest( Map<String, String> batchEnvVar )
+	{
+		final StringBuilder manifest = new StringBuilder();
+		for ( Map.Entry<String, String> entry : batchEnvVar.entrySet() )
+		{
+			escapeProperty( entry.getKey(), true, manifest );
+			manifest.append( '=' );
+			escapeProperty( StringUtils.defaultString( entry.getValue() ), false, manifest );
+			manifest.append( '\n' );
 		}
+		return manifest.toString();
+	}
 
-		return testLinkEnvVar;
+	/**
+	 * Escapes a property name or value, so that java.util.Properties reads 
+	 * it back as it is.
+	 *
+	 * @param text Property name or value.
+	 * @param key Whether it is a property name.
+	 * @param out Where the escaped text is appended.
+	 */
+	private static void escapeProperty( String text, boolean key, StringBuilder out )
+	{
+		for ( int i = 0; i < text.length(); ++i )
+		{
+			final char c = text.charAt(i);
+			switch ( c )
+			{
+			case '\\':
+				out.append( "\\\\" );
+				break;
+			case '\n':
+				out.append( "\\n" );
+				break;
+			case '\r':
+				out.append( "\\r" );
+				break;
+			case '\t':
+				out.append( "\\t" );
+				break;
+			case '\f':
+				out.append( "\\f" );
+				break;
+			case '=':
+			case ':':
+			case '#':
+			case '!':
+				out.append( '\\' ).append( c );
+				break;
+			case ' ':
+				if ( key || i == 0 )
+				{
+					out.append( '\\' );
+				}
+				out.append( c );
+				break;
+			default:
+				if ( c < 0x20 || c > 0x7e )
+				{
+					out.append( String.format( "\\u%04x", (int) c ) );
+				}
+				else
+				{
+					out.append( c );
+				}
+			}
+		}
 	}
 
 	/**
@@ -309,9 +416,26 @@ public final class TestLinkHelper
 	 * @return EnvVars (environment variables)
 	 */
 	public static EnvVars buildTestCaseEnvVars( TestCaseWrapper testCase, TestProject testProject, TestPlan testPlan, Build build, BuildListener listener )
+	{
+		return buildTestCaseEnvVars( testCase, testProject, testPlan, build, listener, new TestLinkEnvironmentTemplate() );
+	}
+
+	/**
+	 * Creates EnvVars for a TestLink Test Case, with the variables of a 
+	 * template.
+	 *
+	 * @param testCase TestLink test Case
+	 * @param testProject TestLink Test Project
+	 * @param testPlan TestLink Test Plan
+	 * @param build TestLink Build
+	 * @param listener Hudson Build Listener
+	 * @param template Environment variables template
+	 * @return EnvVars (environment variables)
+	 */
+	public static EnvVars buildTestCaseEnvVars( TestCaseWrapper testCase, TestProject testProject, TestPlan testPlan, Build build, BuildListener listener, TestLinkEnvironmentTemplate template )
 	{
 		// Build environment variables list
-		Map<String, String> testLinkEnvironmentVariables = TestLinkHelper.createTestLinkEnvironmentVariables( testCase, testProject, testPlan, build );
+		Map<String, String> testLinkEnvironmentVariables = template.createEnvironmentVariables( testCase, testProject, testPlan, build );
 
 		// Merge with build environment variables list
 		listener.getLogger().println(Messages.TestLinkBuilder_MergingEnvVars());
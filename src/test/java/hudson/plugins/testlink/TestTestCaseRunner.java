@@ -0,0 +1,90 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.json.JSONObject;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * Tests the lines exchanged with a {@link TestCaseRunner}.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTestCaseRunner 
+extends junit.framework.TestCase
+{
+
+	public void testRequest()
+	{
+		TestCaseWrapper testCase = new TestCaseWrapper();
+		testCase.setId(12);
+		testCase.setName("Login \"admin\"");
+
+		Map<String, String> environment = new LinkedHashMap<String, String>();
+		environment.put("TESTLINK_TESTCASE_ID", "12");
+		environment.put("TESTLINK_TESTCASE_SUMMARY", "[1]\nC:\\tmp");
+		environment.put("TESTLINK_TESTCASE_STEP_1_ACTION", null);
+
+		String request = TestCaseRunner.createRequest(testCase, environment);
+
+		assertEquals("{\"id\":12,\"name\":\"Login \\\"admin\\\"\",\"environment\":{"
+				+ "\"TESTLINK_TESTCASE_ID\":\"12\","
+				+ "\"TESTLINK_TESTCASE_SUMMARY\":\"[1]\\nC:\\\\tmp\","
+				+ "\"TESTLINK_TESTCASE_STEP_1_ACTION\":null}}", request);
+		assertEquals(-1, request.indexOf('\n'));
+
+		JSONObject json = JSONObject.fromObject(request);
+		assertEquals(12, json.getInt("id"));
+		assertEquals("Login \"admin\"", json.getString("name"));
+	}
+
+	public void testResponse()
+	{
+		assertNull(TestCaseRunner.parseResponse("Running test case 12"));
+		assertNull(TestCaseRunner.parseResponse("{not json}"));
+		assertNull(TestCaseRunner.parseResponse("{\"id\":12}"));
+
+		JSONObject response = TestCaseRunner.parseResponse(" {\"id\":12,\"status\":\"failed\",\"notes\":\"Timeout\"} ");
+		assertNotNull(response);
+		assertEquals("12", response.optString("id"));
+		assertEquals(ExecutionStatus.FAILED, TestCaseRunner.toExecutionStatus(response.optString("status")));
+	}
+
+	public void testStatus()
+	{
+		assertEquals(ExecutionStatus.PASSED, TestCaseRunner.toExecutionStatus("passed"));
+		assertEquals(ExecutionStatus.PASSED, TestCaseRunner.toExecutionStatus("P"));
+		assertEquals(ExecutionStatus.FAILED, TestCaseRunner.toExecutionStatus("Failed"));
+		assertEquals(ExecutionStatus.BLOCKED, TestCaseRunner.toExecutionStatus(" b "));
+		assertNull(TestCaseRunner.toExecutionStatus("skipped"));
+	}
+
+}
@@ -24,11 +24,15 @@
 package hudson.plugins.testlink;
 
 import hudson.EnvVars;
+import hudson.model.Result;
+import hudson.plugins.testlink.result.TestCaseWrapper;
 import hudson.tasks.BuildStep;
 import hudson.tasks.Shell;
 import hudson.util.VariableResolver;
 import hudson.util.VariableResolver.ByMap;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -170,5 +174,41 @@ extends HudsonTestCase
 		assertFalse( builder.getFailIfNoResults() );
 		
 	}
+	
+	/**
+	 * Tests that test cases left out by the time budget or the impact index 
+	 * are not test results.
+	 */
+	public void testAllTestCasesLeftOut()
+	{
+		builder = new TestLinkBuilder(
+			"No testlink", 
+			"No project",
+			"No plan", 
+			"No build", 
+			"class, time", 
+			null, 
+			null, 
+			null, 
+			null, 
+			Boolean.FALSE, 
+			Boolean.FALSE,  
+			Boolean.TRUE, 
+			null);
+		
+		final Report report = new Report(null, null, 1, "No build");
+		for (int i = 0; i < 3; ++i) {
+			report.addTestCase(new TestCaseWrapper());
+			report.incrementNotRun();
+		}
+		assertEquals( 3, report.getTestsTotal() );
+		assertEquals( 0, report.getTestsFound() );
+		
+		final PrintStream logger = new PrintStream(new ByteArrayOutputStream());
+		assertEquals( Result.FAILURE, builder.getBuildResult(report, logger) );
+		
+		report.incrementPassed();
+		assertNull( builder.getBuildResult(report, logger) );
+	}
 
 }
@@ -23,6 +23,14 @@
  */
 package hudson.plugins.testlink;
 
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
 import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
 import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
 
@@ -95,4 +103,86 @@ extends junit.framework.TestCase
 		assertTrue( report.getPassed() == 3 );
 		assertTrue( report.getTestsTotal() == 5 );
 	}
+	
+	public void testConcurrentReporting() throws InterruptedException
+	{
+		final Thread[] threads = new Thread[4];
+		for ( int i = 0 ; i < threads.length ; ++i )
+		{
+			threads[i] = new Thread() 
+			{
+				public void run() 
+				{
+					for ( int j = 0 ; j < 1000 ; ++j )
+					{
+						report.incrementPassed();
+						report.incrementFailed();
+						report.addTestCase(new TestCaseWrapper());
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for ( Thread thread : threads )
+		{
+			thread.join();
+		}
+		
+		assertEquals( 4000, report.getPassed() );
+		assertEquals( 4000, report.getFailed() );
+		assertEquals( 8000, report.getTestsTotal() );
+		assertEquals( 4000, report.getTestCases().size() );
+	}
+	
+	public void testTestCasesAreACopy() throws InterruptedException
+	{
+		report.addTestCase(new TestCaseWrapper());
+		final List<TestCaseWrapper> testCases = report.getTestCases();
+		report.addTestCase(new TestCaseWrapper());
+		testCases.clear();
+		assertEquals( 2, report.getTestCases().size() );
+		
+		// iterating while test cases are added does not fail
+		final Thread writer = new Thread() 
+		{
+			public void run() 
+			{
+				for ( int j = 0 ; j < 10000 ; ++j )
+				{
+					report.addTestCase(new TestCaseWrapper());
+				}
+			}
+		};
+		writer.start();
+		while ( writer.isAlive() )
+		{
+			for ( TestCaseWrapper testCase : report.getTestCases() )
+			{
+				assertNotNull( testCase );
+			}
+		}
+		writer.join();
+		assertEquals( 10002, report.getTestCases().size() );
+	}
+	
+	public void testSerialization() throws Exception
+	{
+		report.incrementBlocked();
+		report.incrementNotRun();
+		report.addTestCase(new TestCaseWrapper());
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(report);
+		out.close();
+		final Report copy = (Report) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		
+		assertEquals( 1, copy.getBlocked() );
+		assertEquals( 1, copy.getNotRun() );
+		assertEquals( 2, copy.getTestsTotal() );
+		assertEquals( 1, copy.getTestCases().size() );
+		
+		copy.incrementBlocked();
+		assertEquals( 2, copy.getBlocked() );
+	}
 }
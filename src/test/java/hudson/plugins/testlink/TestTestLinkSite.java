@@ -0,0 +1,358 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink;
+
+import hudson.FilePath;
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.model.Attachment;
+import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
+import br.eti.kinoshita.testlinkjavaapi.util.TestLinkAPIException;
+
+/**
+ * Tests the deferred reporting of TestLinkSite.
+ *
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTestLinkSite
+extends junit.framework.TestCase
+{
+
+	private RecordingTestLinkSite testlink;
+
+	private ByteArrayOutputStream log;
+
+	private PrintStream logger;
+
+	public void setUp()
+	{
+		this.testlink = new RecordingTestLinkSite();
+		this.testlink.setDeferred(true);
+		this.log = new ByteArrayOutputStream();
+		this.logger = new PrintStream(log, true);
+	}
+
+	private TestCaseWrapper newTestCase(int id, ExecutionStatus status)
+	{
+		final TestCaseWrapper testCase = new TestCaseWrapper();
+		testCase.setId(id);
+		testCase.setName("TC-" + id);
+		testCase.setExecutionStatus(status);
+		return testCase;
+	}
+
+	private Attachment newAttachment(String fileName, String content)
+	{
+		final Attachment attachment = new Attachment();
+		attachment.setFileName(fileName);
+		attachment.setContent(content);
+		return attachment;
+	}
+
+	public void testReportedOnceWithWorstStatus()
+	{
+		final TestCaseWrapper testCase = newTestCase(1, ExecutionStatus.PASSED);
+		assertEquals( 1, testlink.updateTestCase(testCase) );
+		testCase.setExecutionStatus(ExecutionStatus.FAILED);
+		assertEquals( 1, testlink.updateTestCase(testCase) );
+		testCase.setExecutionStatus(ExecutionStatus.PASSED);
+		assertEquals( 1, testlink.updateTestCase(testCase) );
+
+		assertTrue( testlink.isPending(testCase) );
+		assertTrue( testlink.reported.isEmpty() );
+
+		assertEquals( 0, testlink.commit(logger) );
+		assertEquals( 1, testlink.reported.size() );
+		assertEquals( ExecutionStatus.FAILED, testlink.reportedStatuses.get(0) );
+		assertFalse( testlink.isPending(testCase) );
+
+		// nothing left to report
+		assertEquals( 0, testlink.commit(logger) );
+		assertEquals( 1, testlink.reported.size() );
+	}
+
+	public void testPseudoExecutionIdsAndAttachments()
+	{
+		final TestCaseWrapper first = newTestCase(1, ExecutionStatus.PASSED);
+		final TestCaseWrapper second = newTestCase(2, ExecutionStatus.FAILED);
+		final int firstId = testlink.updateTestCase(first);
+		final int secondId = testlink.updateTestCase(second);
+		assertEquals( 1, firstId );
+		assertEquals( 2, secondId );
+
+		testlink.uploadAttachment(firstId, newAttachment("first.xml", "a"));
+		testlink.uploadAttachment(secondId, newAttachment("second.xml", "b"));
+		testlink.uploadAttachment(secondId, newAttachment("second.xml", "b"));
+		testlink.uploadAttachment(secondId, newAttachment("other.xml", "c"));
+		// unknown pseudo execution IDs are ignored
+		testlink.uploadAttachment(3, newAttachment("none.xml", "d"));
+		testlink.uploadAttachment(0, newAttachment("none.xml", "d"));
+		assertTrue( testlink.attachments.isEmpty() );
+
+		assertEquals( 0, testlink.commit(logger) );
+
+		// the pseudo execution IDs are mapped to the real ones
+		assertEquals( 2, testlink.attachments.size() );
+		assertEquals( "first.xml", testlink.attachments.get(Integer.valueOf(101)).get(0).getFileName() );
+		final List<Attachment> secondAttachments = testlink.attachments.get(Integer.valueOf(102));
+		assertEquals( 2, secondAttachments.size() );
+		assertEquals( "second.xml", secondAttachments.get(0).getFileName() );
+		assertEquals( "other.xml", secondAttachments.get(1).getFileName() );
+	}
+
+	public void testFailuresAreCountedAndTheOthersReported()
+	{
+		final TestCaseWrapper first = newTestCase(1, ExecutionStatus.PASSED);
+		final TestCaseWrapper failing = newTestCase(2, ExecutionStatus.FAILED);
+		final TestCaseWrapper last = newTestCase(3, ExecutionStatus.BLOCKED);
+		testlink.updateTestCase(first);
+		testlink.uploadAttachment(testlink.updateTestCase(failing), newAttachment("failing.xml", "a"));
+		testlink.updateTestCase(last);
+		testlink.failing = failing;
+
+		assertEquals( 1, testlink.commit(logger) );
+		assertEquals( 2, testlink.reported.size() );
+		assertSame( first, testlink.reported.get(0) );
+		assertSame( last, testlink.reported.get(1) );
+		assertTrue( testlink.attachments.isEmpty() );
+		assertTrue( log.toString().contains("TestLink is down") );
+	}
+
+	public void testCommitSomeTestCases()
+	{
+		final TestCaseWrapper executed = newTestCase(1, ExecutionStatus.PASSED);
+		final TestCaseWrapper blocked = newTestCase(2, ExecutionStatus.BLOCKED);
+		final TestCaseWrapper last = newTestCase(3, ExecutionStatus.FAILED);
+		testlink.updateTestCase(executed);
+		testlink.updateTestCase(blocked);
+		final int lastId = testlink.updateTestCase(last);
+
+		assertEquals( 0, testlink.commit(Arrays.asList(blocked), logger) );
+		assertEquals( 1, testlink.reported.size() );
+		assertSame( blocked, testlink.reported.get(0) );
+		assertFalse( testlink.isPending(blocked) );
+		assertTrue( testlink.isPending(executed) );
+
+		// the pseudo execution IDs of the others still map to them
+		testlink.uploadAttachment(lastId, newAttachment("last.xml", "a"));
+		testlink.uploadAttachment(2, newAttachment("blocked.xml", "b"));
+		assertEquals( 0, testlink.commit(logger) );
+		assertEquals( 3, testlink.reported.size() );
+		assertSame( executed, testlink.reported.get(1) );
+		assertSame( last, testlink.reported.get(2) );
+		assertEquals( 1, testlink.attachments.size() );
+		assertEquals( "last.xml", testlink.attachments.get(Integer.valueOf(103)).get(0).getFileName() );
+	}
+
+	public void testFileAttachmentsAreReadOnCommit() throws IOException, InterruptedException
+	{
+		final File file = File.createTempFile("TEST-", ".xml");
+		try
+		{
+			FileUtils.writeStringToFile(file, "<testsuite/>");
+			final TestCaseWrapper testCase = newTestCase(1, ExecutionStatus.PASSED);
+			final int executionId = testlink.updateTestCase(testCase);
+			testlink.uploadAttachment(executionId, new FilePath(file), newAttachment(file.getName(), null));
+			// the same file, found by another seeker
+			testlink.uploadAttachment(executionId, new FilePath(file), newAttachment(file.getName(), null));
+			assertTrue( testlink.attachments.isEmpty() );
+
+			// the content is read on commit, not when the file is recorded
+			FileUtils.writeStringToFile(file, "<testsuite name=\"changed\"/>");
+			assertEquals( 0, testlink.commit(logger) );
+			assertEquals( 1, testlink.uploadedContents.size() );
+			assertEquals( Base64.encodeBase64String("<testsuite name=\"changed\"/>".getBytes()), testlink.uploadedContents.get(0) );
+			// and released once uploaded
+			assertNull( testlink.attachments.get(Integer.valueOf(101)).get(0).getContent() );
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	public void testMissingFileAttachment() throws IOException, InterruptedException
+	{
+		final File file = File.createTempFile("TEST-", ".xml");
+		final TestCaseWrapper testCase = newTestCase(1, ExecutionStatus.PASSED);
+		final int executionId = testlink.updateTestCase(testCase);
+		testlink.uploadAttachment(executionId, new FilePath(file), newAttachment(file.getName(), null));
+		file.delete();
+
+		// the test case is still reported
+		assertEquals( 0, testlink.commit(logger) );
+		assertEquals( 1, testlink.reported.size() );
+		assertTrue( testlink.attachments.isEmpty() );
+		assertTrue( log.toString().contains(file.getName()) );
+	}
+
+	public void testNotDeferred()
+	{
+		testlink.setDeferred(false);
+		final TestCaseWrapper testCase = newTestCase(1, ExecutionStatus.PASSED);
+		assertEquals( 101, testlink.updateTestCase(testCase) );
+		testlink.uploadAttachment(101, newAttachment("file.xml", "a"));
+		assertEquals( 1, testlink.reported.size() );
+		assertEquals( 1, testlink.attachments.size() );
+		assertEquals( 0, testlink.commit(logger) );
+	}
+
+	public void testSeekersOnOtherKeyCustomFields() throws InterruptedException
+	{
+		assertReportedStatusesWithSeekersOnOtherKeyCustomFields(true);
+		assertReportedStatusesWithSeekersOnOtherKeyCustomFields(false);
+	}
+
+	/**
+	 * Runs at the same time a seeker that finds a PASSED result for the key
+	 * custom field "a" and one that finds nothing for "b", as with parallel
+	 * result seekers. The PASSED result must never be lost.
+	 */
+	private void assertReportedStatusesWithSeekersOnOtherKeyCustomFields(boolean deferred) throws InterruptedException
+	{
+		final RecordingTestLinkSite site = new RecordingTestLinkSite();
+		site.setDeferred(deferred);
+		final TestCaseWrapper testCase = newTestCase(1, null);
+		testCase.getCustomFields().add(newCustomField("a", "com.acme.CartTest"));
+		testCase.getCustomFields().add(newCustomField("b", "com.acme.OrderTest"));
+		testCase.addCustomFieldAndStatus("com.acme.CartTest", ExecutionStatus.PASSED);
+
+		final int iterations = 2000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread found = new Thread() {
+			public void run() {
+				await(start);
+				for ( int i = 0; i < iterations; ++i )
+				{
+					final ExecutionStatus status = testCase.getExecutionStatus("a");
+					if ( status != ExecutionStatus.NOT_RUN )
+					{
+						site.updateTestCase(testCase, status);
+					}
+				}
+			}
+		};
+		final Thread notFound = new Thread() {
+			public void run() {
+				await(start);
+				for ( int i = 0; i < iterations; ++i )
+				{
+					testCase.getExecutionStatus("b");
+				}
+			}
+		};
+		found.start();
+		notFound.start();
+		start.countDown();
+		found.join();
+		notFound.join();
+
+		assertEquals( 0, site.commit(logger) );
+		assertEquals( deferred ? 1 : iterations, site.reportedStatuses.size() );
+		for ( ExecutionStatus status : site.reportedStatuses )
+		{
+			assertEquals( ExecutionStatus.PASSED, status );
+		}
+	}
+
+	private static CustomField newCustomField(String name, String value)
+	{
+		final CustomField customField = new CustomField();
+		customField.setName(name);
+		customField.setValue(value);
+		return customField;
+	}
+
+	private static void await(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await();
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Records what would be sent to TestLink.
+	 */
+	private static class RecordingTestLinkSite extends TestLinkSite
+	{
+		private final List<TestCaseWrapper> reported = new ArrayList<TestCaseWrapper>();
+		private final List<ExecutionStatus> reportedStatuses = new ArrayList<ExecutionStatus>();
+		private final Map<Integer, List<Attachment>> attachments = new HashMap<Integer, List<Attachment>>();
+		private final List<String> uploadedContents = new ArrayList<String>();
+		private TestCaseWrapper failing;
+
+		RecordingTestLinkSite()
+		{
+			super(null, null, null, new Build(1, 1, "Fake build", "Fake notes"));
+		}
+
+		@Override
+		protected int reportTestCase( TestCaseWrapper testCase )
+		{
+			if ( testCase == failing )
+			{
+				throw new TestLinkAPIException("TestLink is down");
+			}
+			reported.add(testCase);
+			reportedStatuses.add(testCase.getExecutionStatus());
+			return 100 + testCase.getId();
+		}
+
+		@Override
+		protected void uploadExecutionAttachment( int executionId, Attachment attachment )
+		{
+			List<Attachment> uploaded = attachments.get(Integer.valueOf(executionId));
+			if ( uploaded == null )
+			{
+				uploaded = new ArrayList<Attachment>();
+				attachments.put(Integer.valueOf(executionId), uploaded);
+			}
+			uploaded.add(attachment);
+			uploadedContents.add(attachment.getContent());
+		}
+	}
+
+}
@@ -0,0 +1,312 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.junit;
+
+import hudson.AbortException;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the streaming JUnit parser.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestJUnitStreamParser 
+extends TestCase
+{
+
+	private File tempDir;
+	
+	public void setUp() throws IOException
+	{
+		tempDir = File.createTempFile("junit-stream-parser", "");
+		tempDir.delete();
+		tempDir.mkdirs();
+	}
+	
+	public void tearDown() throws IOException
+	{
+		FileUtils.deleteDirectory(tempDir);
+	}
+	
+	private File getResource( String name )
+	{
+		ClassLoader cl = TestJUnitStreamParser.class.getClassLoader();
+		URL url = cl.getResource("hudson/plugins/testlink/result/junit/" + name);
+		return new File( url.getFile() );
+	}
+	
+	private File write( String name, String content ) throws IOException
+	{
+		File file = new File(tempDir, name);
+		FileUtils.writeStringToFile(file, content, "UTF-8");
+		return file;
+	}
+	
+	public void testNestedSuites() throws IOException
+	{
+		List<Suite> suites = new JUnitStreamParser(false).parse( getResource("TEST-TestJUnitTestSuiteSeeker.xml") );
+		
+		assertEquals( 3, suites.size() );
+		assertEquals( "suiteA", suites.get(0).getName() );
+		assertEquals( "suiteB", suites.get(1).getName() );
+		assertEquals( "suiteC", suites.get(2).getName() );
+		
+		Suite suiteA = suites.get(0);
+		assertEquals( 3, suiteA.getCases().size() );
+		assertEquals( "br.eti.kinoshita.junit.SampleTest", suiteA.getCases().get(0).getClassName() );
+		assertEquals( "testSomething", suiteA.getCases().get(0).getName() );
+		assertTrue( suiteA.getCases().get(0).isPassed() );
+		assertTrue( suiteA.getCases().get(1).isFailed() );
+		assertEquals( 1, suiteA.getCases().get(1).getFailCount() );
+		assertSame( suiteA, suiteA.getCases().get(1).getSuite() );
+		assertNull( suiteA.getStdout() );
+	}
+	
+	public void testSuiteAttributes() throws IOException
+	{
+		File file = write("TEST-attributes.xml", 
+				"<testsuite name=\"Test\" package=\"br.eti\" timestamp=\"2012-01-01T00:00:00\" id=\"1\">" +
+				"<testcase name=\"a.b.testA\" time=\"1.5\"/>" +
+				"<testcase classname=\"Other\" name=\"testB\" time=\"1,000.5\"><skipped/></testcase>" +
+				"<system-out>out</system-out><system-err>err</system-err>" +
+				"</testsuite>");
+		
+		List<Suite> suites = new JUnitStreamParser(true).parse( file );
+		
+		assertEquals( 1, suites.size() );
+		Suite suite = suites.get(0);
+		assertEquals( "br.eti.Test", suite.getName() );
+		assertEquals( "2012-01-01T00:00:00", suite.getTimestamp() );
+		assertEquals( "1", suite.getId() );
+		assertEquals( file.getAbsolutePath(), suite.getFile() );
+		assertEquals( 1002.0f, suite.getDuration() );
+		assertEquals( "out", suite.getStdout() );
+		assertEquals( "err", suite.getStderr() );
+		
+		assertEquals( "Test", suite.getCases().get(0).getClassName() );
+		assertEquals( "a.b.testA", suite.getCases().get(0).getName() );
+		assertTrue( suite.getCases().get(1).isSkipped() );
+		assertEquals( 1, suite.getCases().get(1).getSkipCount() );
+		assertEquals( 0, suite.getCases().get(1).getFailCount() );
+	}
+	
+	public void testStdioIsNotCaptured() throws IOException
+	{
+		File file = write("TEST-stdio.xml", 
+				"<testsuite name=\"Test\"><testcase name=\"testA\"/><system-out>out</system-out></testsuite>");
+		
+		List<Suite> suites = new JUnitStreamParser(false).parse( file );
+		
+		assertNull( suites.get(0).getStdout() );
+		assertNull( suites.get(0).getStderr() );
+	}
+	
+	public void testSurefireOutputFile() throws IOException
+	{
+		File file = write("TEST-br.eti.Test.xml", "<testsuite name=\"br.eti.Test\"><testcase name=\"testA\"/></testsuite>");
+		write("br.eti.Test-output.txt", "output");
+		
+		List<Suite> suites = new JUnitStreamParser(true).parse( file );
+		
+		assertEquals( "output", suites.get(0).getStdout() );
+	}
+	
+	public void testSuiteError() throws IOException
+	{
+		File file = write("TEST-error.xml", 
+				"<testsuite name=\"Test\"><error message=\"class not found\"/></testsuite>");
+		
+		List<Suite> suites = new JUnitStreamParser(false).parse( file );
+		
+		assertEquals( 1, suites.size() );
+		Case init = suites.get(0).getCases().get(0);
+		assertEquals( "<init>", init.getClassName() );
+		assertTrue( init.isFailed() );
+	}
+	
+	public void testSuiteWithoutCasesIsIgnored() throws IOException
+	{
+		File file = write("TEST-empty-suite.xml", "<testsuite name=\"Test\"><properties/></testsuite>");
+		
+		assertTrue( new JUnitStreamParser(false).parse( file ).isEmpty() );
+	}
+	
+	public void testInvalidAndEmptyFiles() throws IOException
+	{
+		File invalid = write("TEST-invalid.xml", "<testsuite name=\"Test\"><testcase");
+		File empty = write("TEST-empty.xml", "");
+		
+		List<Suite> suites = new JUnitStreamParser(false).parse( invalid );
+		assertEquals( "TEST-invalid.xml", suites.get(0).getName() );
+		assertTrue( suites.get(0).getCases().get(0).isFailed() );
+		
+		suites = new JUnitStreamParser(false).parse( empty );
+		assertEquals( "TEST-empty.xml", suites.get(0).getName() );
+		assertTrue( suites.get(0).getCases().get(0).isFailed() );
+	}
+	
+	public void testDuplicatedSuites() throws IOException
+	{
+		String content = "<testsuite name=\"Test\" timestamp=\"1\"><testcase name=\"testA\"/></testsuite>";
+		write("TEST-1.xml", content);
+		write("TEST-2.xml", content);
+		
+		List<Suite> suites = new JUnitStreamParser(false).parse( 0L, tempDir, new String[] {"TEST-1.xml", "TEST-2.xml"} );
+		
+		assertEquals( 1, suites.size() );
+	}
+	
+	public void testReportsNotFound() throws IOException
+	{
+		try
+		{
+			new JUnitStreamParser(false).parse( 0L, tempDir, new String[0] );
+			fail("Expected an AbortException");
+		}
+		catch ( AbortException e )
+		{
+			// expected
+		}
+	}
+	
+	public void testOldReports() throws IOException
+	{
+		File file = write("TEST-old.xml", "<testsuite name=\"Test\"><testcase name=\"testA\"/></testsuite>");
+		file.setLastModified( System.currentTimeMillis() - 60000L );
+		
+		try
+		{
+			new JUnitStreamParser(false).parse( System.currentTimeMillis(), tempDir, new String[] {"TEST-old.xml"} );
+			fail("Expected an AbortException");
+		}
+		catch ( AbortException e )
+		{
+			// expected
+		}
+	}
+	
+	public void testEmptyFailureAndErrorSameAsJUnitParser() throws IOException
+	{
+		File file = write("TEST-empty-failure.xml", 
+				"<testsuite name=\"Test\">" +
+				"<testcase classname=\"Test\" name=\"testFailure\"><failure/></testcase>" +
+				"<testcase classname=\"Test\" name=\"testError\"><error/></testcase>" +
+				"<testcase classname=\"Test\" name=\"testMessage\"><failure message=\"boom\"/></testcase>" +
+				"<testcase classname=\"Test\" name=\"testPassed\"/>" +
+				"</testsuite>");
+		
+		assertSameAsJUnitParser( file );
+	}
+	
+	/**
+	 * Parses every JUnit report of the test resources with Jenkins JUnit 
+	 * parser and with the streaming parser, and compares the results.
+	 */
+	public void testSameResultsAsJUnitParser() throws IOException
+	{
+		ClassLoader cl = TestJUnitStreamParser.class.getClassLoader();
+		File root = new File( cl.getResource("hudson/plugins/testlink").getFile() );
+		List<File> reports = new ArrayList<File>();
+		this.findJUnitReports( root, reports );
+		
+		assertFalse( reports.isEmpty() );
+		for ( File report : reports )
+		{
+			assertSameAsJUnitParser( report );
+		}
+	}
+	
+	private void findJUnitReports( File dir, List<File> reports ) throws IOException
+	{
+		File[] files = dir.listFiles();
+		Arrays.sort( files );
+		for ( File file : files )
+		{
+			if ( file.isDirectory() )
+			{
+				if ( !file.getName().startsWith(".") )
+				{
+					this.findJUnitReports( file, reports );
+				}
+			}
+			else if ( file.getName().endsWith(".xml") && FileUtils.readFileToString( file ).contains("<testsuite") )
+			{
+				reports.add( file );
+			}
+		}
+	}
+	
+	private void assertSameAsJUnitParser( File report ) throws IOException
+	{
+		TestResult testResult = new TestResult( false );
+		testResult.parse( report );
+		List<SuiteResult> expected = new ArrayList<SuiteResult>( testResult.getSuites() );
+		List<Suite> actual = new JUnitStreamParser(false).parse( report );
+		
+		String file = report.getName();
+		assertEquals( file, expected.size(), actual.size() );
+		for ( int i = 0; i < expected.size(); ++i )
+		{
+			SuiteResult suiteResult = expected.get(i);
+			Suite suite = actual.get(i);
+			assertEquals( file, suiteResult.getName(), suite.getName() );
+			assertEquals( file, suiteResult.getTimestamp(), suite.getTimestamp() );
+			assertEquals( file, suiteResult.getCases().size(), suite.getCases().size() );
+			
+			int expectedFailed = 0, failed = 0;
+			int expectedSkipped = 0, skipped = 0;
+			for ( int j = 0; j < suiteResult.getCases().size(); ++j )
+			{
+				CaseResult caseResult = suiteResult.getCases().get(j);
+				Case testCase = suite.getCases().get(j);
+				String name = file + ": " + caseResult.getClassName() + "#" + caseResult.getName();
+				assertEquals( name, caseResult.getClassName(), testCase.getClassName() );
+				assertEquals( name, caseResult.getName(), testCase.getName() );
+				assertEquals( name, caseResult.isSkipped(), testCase.isSkipped() );
+				assertEquals( name, caseResult.getErrorStackTrace() != null, testCase.isFailed() );
+				expectedFailed += caseResult.getFailCount();
+				failed += testCase.getFailCount();
+				expectedSkipped += caseResult.getSkipCount();
+				skipped += testCase.getSkipCount();
+			}
+			assertEquals( file, expectedFailed, failed );
+			assertEquals( file, expectedSkipped, skipped );
+		}
+	}
+	
+}
@@ -0,0 +1,192 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
+
+/**
+ * Tests the KeyCustomFieldMatcher.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestKeyCustomFieldMatcher 
+extends TestCase
+{
+
+	private static final String KEY_CUSTOM_FIELD = "testCustomField";
+	
+	private TestCaseWrapper[] automatedTestCases;
+	
+	private KeyCustomFieldMatcher matcher;
+	
+	public void setUp()
+	{
+		automatedTestCases = new TestCaseWrapper[] {
+				newTestCase(1, "com.acme.checkout.CartTest, com.acme.Other"), 
+				newTestCase(2, "glob:com.acme.checkout.*Test"), 
+				newTestCase(3, "regex:com\\.acme\\.(checkout|payment)\\..*"), 
+				newTestCase(4, "glob:com.acme.?ayment.CardTest, com.acme.checkout.CartTest"), 
+				newTestCase(5, "regex:[invalid")
+		};
+		matcher = new KeyCustomFieldMatcher(automatedTestCases, KEY_CUSTOM_FIELD);
+	}
+	
+	private TestCaseWrapper newTestCase(int id, String keyCustomFieldValue)
+	{
+		final TestCaseWrapper testCase = new TestCaseWrapper();
+		testCase.setId(id);
+		final CustomField customField = new CustomField();
+		customField.setName(KEY_CUSTOM_FIELD);
+		customField.setValue(keyCustomFieldValue);
+		testCase.getCustomFields().add(customField);
+		return testCase;
+	}
+	
+	public void testPlainAndPatternValues()
+	{
+		assertTrue( matcher.hasPatterns() );
+		
+		final List<KeyCustomFieldMatcher.Match> matches = matcher.match("com.acme.checkout.CartTest");
+		assertEquals( 4, matches.size() );
+		assertEquals( Integer.valueOf(1), matches.get(0).getAutomatedTestCase().getId() );
+		assertFalse( matches.get(0).isPattern() );
+		assertEquals( Integer.valueOf(2), matches.get(1).getAutomatedTestCase().getId() );
+		assertEquals( "glob:com.acme.checkout.*Test", matches.get(1).getValue() );
+		assertTrue( matches.get(1).isPattern() );
+		assertEquals( Integer.valueOf(3), matches.get(2).getAutomatedTestCase().getId() );
+		assertTrue( matches.get(2).isPattern() );
+		assertEquals( Integer.valueOf(4), matches.get(3).getAutomatedTestCase().getId() );
+		assertFalse( matches.get(3).isPattern() );
+		
+		assertEquals( 2, matcher.match("com.acme.payment.CardTest").size() );
+		assertEquals( 1, matcher.match("com.acme.Other").size() );
+		assertEquals( 0, matcher.match("com.acme.shipping.CartTest").size() );
+		assertEquals( 0, matcher.match("com.acme").size() );
+		assertEquals( 0, matcher.match(null).size() );
+	}
+	
+	public void testGlobCharactersAreLiteralOtherwise()
+	{
+		// the dot in a glob is not a regular expression wildcard
+		assertEquals( 0, matcher.match("comXacmeXpaymentXCardTest").size() );
+		// invalid regular expressions are plain values
+		assertEquals( 1, matcher.match("regex:[invalid").size() );
+	}
+	
+	public void testWildcardsAreLiteralWithoutGlobPrefix()
+	{
+		final TestCaseWrapper[] testCases = new TestCaseWrapper[] {
+				newTestCase(1, "com.acme.checkout.*Test"), 
+				newTestCase(2, "com.acme.Cart?Test"), 
+				newTestCase(3, "glob:com.acme.Order")
+		};
+		final KeyCustomFieldMatcher plain = new KeyCustomFieldMatcher(testCases, KEY_CUSTOM_FIELD);
+		
+		assertFalse( plain.matches("com.acme.checkout.CartTest") );
+		assertFalse( plain.matches("com.acme.CartXTest") );
+		assertEquals( 1, plain.match("com.acme.checkout.*Test").size() );
+		assertFalse( plain.match("com.acme.checkout.*Test").get(0).isPattern() );
+		assertEquals( 1, plain.match("com.acme.Cart?Test").size() );
+		// a glob without wildcards matches only the name equal to it
+		assertTrue( plain.matches("com.acme.Order") );
+		assertFalse( plain.matches("com.acme.OrderTest") );
+		assertTrue( KeyCustomFieldMatcher.isPattern("glob:com.acme.Order") );
+		assertFalse( KeyCustomFieldMatcher.isPattern("com.acme.checkout.*Test") );
+	}
+	
+	public void testWorstStatusForPatterns()
+	{
+		for(KeyCustomFieldMatcher.Match match : matcher.match("com.acme.checkout.CartTest")) {
+			match.addStatus(ExecutionStatus.PASSED);
+		}
+		for(KeyCustomFieldMatcher.Match match : matcher.match("com.acme.checkout.PaymentTest")) {
+			match.addStatus(ExecutionStatus.FAILED);
+		}
+		for(KeyCustomFieldMatcher.Match match : matcher.match("com.acme.checkout.OrderTest")) {
+			match.addStatus(ExecutionStatus.PASSED);
+		}
+		assertEquals( ExecutionStatus.FAILED, automatedTestCases[1].getCustomFieldAndStatus().get("glob:com.acme.checkout.*Test") );
+		assertEquals( ExecutionStatus.PASSED, automatedTestCases[3].getCustomFieldAndStatus().get("com.acme.checkout.CartTest") );
+	}
+	
+	public void testSerializedMatcher() throws IOException, ClassNotFoundException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(matcher);
+		out.close();
+		final KeyCustomFieldMatcher copy = (KeyCustomFieldMatcher) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		
+		assertTrue( copy.matches("com.acme.checkout.AnyTest") );
+		assertTrue( copy.matches("com.acme.payment.Any") );
+		assertTrue( copy.matches("com.acme.Other") );
+		assertFalse( copy.matches("org.acme.Other") );
+	}
+	
+	public void testPackagePrefixes()
+	{
+		final TestCaseWrapper[] testCases = new TestCaseWrapper[] {
+				newTestCase(1, "com.acme.checkout"), 
+				newTestCase(2, "com.acme"), 
+				newTestCase(3, "com.acme.checkout.CartTest"), 
+				newTestCase(4, "glob:org.*.CartTest")
+		};
+		final KeyCustomFieldMatcher prefixes = new KeyCustomFieldMatcher(testCases, KEY_CUSTOM_FIELD, true);
+		
+		final List<KeyCustomFieldMatcher.Match> matches = prefixes.match("com.acme.checkout.CartTest");
+		assertEquals( 3, matches.size() );
+		assertEquals( Integer.valueOf(1), matches.get(0).getAutomatedTestCase().getId() );
+		assertTrue( matches.get(0).isPattern() );
+		assertEquals( Integer.valueOf(2), matches.get(1).getAutomatedTestCase().getId() );
+		assertEquals( Integer.valueOf(3), matches.get(2).getAutomatedTestCase().getId() );
+		
+		assertEquals( 2, prefixes.match("com.acme.checkout.payment.CardTest").size() );
+		assertEquals( 1, prefixes.match("com.acme.checkoutv2.CartTest").size() );
+		assertEquals( 0, prefixes.match("com").size() );
+		assertEquals( 1, prefixes.match("org.acme.CartTest").size() );
+		assertFalse( prefixes.matches("net.acme.CartTest") );
+		
+		for(KeyCustomFieldMatcher.Match match : prefixes.match("com.acme.checkout.CartTest")) {
+			match.addStatus(ExecutionStatus.FAILED);
+		}
+		for(KeyCustomFieldMatcher.Match match : prefixes.match("com.acme.checkout.OrderTest")) {
+			match.addStatus(ExecutionStatus.PASSED);
+		}
+		assertEquals( ExecutionStatus.FAILED, testCases[0].getCustomFieldAndStatus().get("com.acme.checkout") );
+		
+		// without prefixes, the values are matched exactly
+		assertEquals( 1, new KeyCustomFieldMatcher(testCases, KEY_CUSTOM_FIELD).match("com.acme.checkout.CartTest").size() );
+	}
+	
+}
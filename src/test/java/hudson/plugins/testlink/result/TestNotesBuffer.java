@@ -0,0 +1,147 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the NotesBuffer.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestNotesBuffer 
+extends TestCase
+{
+
+	private File directory;
+	
+	protected void setUp() throws IOException
+	{
+		directory = File.createTempFile("notes-buffer", "");
+		directory.delete();
+	}
+	
+	protected void tearDown() throws IOException
+	{
+		FileUtils.deleteDirectory(directory);
+	}
+	
+	public void testNotesThatFit()
+	{
+		final NotesBuffer notes = new NotesBuffer(10);
+		notes.append("abcde");
+		notes.append(null);
+		notes.append("fghij");
+		
+		assertFalse( notes.isTruncated() );
+		assertEquals( "abcdefghij", notes.toString() );
+		assertEquals( 10, notes.length() );
+	}
+	
+	public void testHeadAndTail()
+	{
+		final NotesBuffer notes = new NotesBuffer(10);
+		notes.append("abcdefgh");
+		notes.append("ijklmnop");
+		notes.append("qrs");
+		notes.append("tuvwxyz");
+		
+		assertTrue( notes.isTruncated() );
+		assertEquals( 26, notes.length() );
+		final String text = notes.toString();
+		assertTrue( text, text.startsWith("abcde") );
+		assertTrue( text, text.endsWith("vwxyz") );
+		assertTrue( text, text.contains("16") );
+		
+		final NotesBuffer big = new NotesBuffer(4);
+		big.append("0123456789");
+		assertTrue( big.toString().startsWith("01") );
+		assertTrue( big.toString().endsWith("89") );
+	}
+	
+	public void testSpillFile() throws IOException
+	{
+		final File spillFile = new File(directory, "notes.txt");
+		final NotesBuffer notes = new NotesBuffer(10);
+		notes.setSpillFile(spillFile);
+		notes.append("abcdefgh");
+		assertFalse( spillFile.exists() );
+		
+		notes.append("ijklmnop");
+		notes.append("qrstuvwxyz");
+		
+		assertEquals( "abcdefghijklmnopqrstuvwxyz", FileUtils.readFileToString(spillFile, "UTF-8") );
+		assertTrue( notes.toString().contains("notes.txt") );
+		
+		notes.append("0123456789");
+		notes.append("end");
+		notes.toString();
+		assertEquals( "abcdefghijklmnopqrstuvwxyz0123456789end", FileUtils.readFileToString(spillFile, "UTF-8") );
+	}
+	
+	public void testSizeInBytes() throws IOException
+	{
+		final NotesBuffer fits = new NotesBuffer(10);
+		fits.append("\u20ac\u20ac\u20ac");
+		assertFalse( fits.isTruncated() );
+		assertEquals( 9, fits.length() );
+		
+		final NotesBuffer notes = new NotesBuffer(10);
+		for ( int i = 0 ; i < 20 ; ++i )
+		{
+			notes.append("\u20ac");
+		}
+		assertTrue( notes.isTruncated() );
+		assertEquals( 60, notes.length() );
+		final String text = notes.toString();
+		assertTrue( text, text.startsWith("\u20ac") );
+		assertTrue( text, text.endsWith("\u20ac") );
+		final String kept = text.replaceAll("[^\u20ac]", "");
+		assertTrue( text, kept.getBytes("UTF-8").length <= 10 );
+	}
+	
+	public void testMaxSizeIsSetBeforeAppend()
+	{
+		final NotesBuffer notes = new NotesBuffer(10);
+		notes.setMaxSize(20);
+		assertEquals( 20, notes.getMaxSize() );
+		notes.append("abc");
+		try
+		{
+			notes.setMaxSize(30);
+			fail("Changed the maximum size after appending notes");
+		}
+		catch ( IllegalStateException e )
+		{
+			assertEquals( 20, notes.getMaxSize() );
+		}
+	}
+	
+}
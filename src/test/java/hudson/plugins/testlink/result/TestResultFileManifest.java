@@ -0,0 +1,131 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the ResultFileManifest.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestResultFileManifest 
+extends TestCase
+{
+
+	private File workspace;
+	
+	public void setUp() throws IOException
+	{
+		workspace = File.createTempFile("result-file-manifest", "");
+		workspace.delete();
+		workspace.mkdirs();
+		FileUtils.writeStringToFile(new File(workspace, "target/TEST-a.xml"), "<testsuite name=\"a\"/>");
+		FileUtils.writeStringToFile(new File(workspace, "target/TEST-b.xml"), "<testsuite name=\"b\"/>");
+	}
+	
+	public void tearDown() throws IOException
+	{
+		FileUtils.deleteDirectory(workspace);
+	}
+	
+	public void testUnchangedFiles() throws IOException
+	{
+		ResultFileManifest manifest = new ResultFileManifest();
+		manifest.record(workspace, "target/TEST-a.xml");
+		
+		assertEquals( 1, manifest.size() );
+		assertTrue( manifest.isUnchanged(workspace, "target/TEST-a.xml") );
+		assertFalse( manifest.isUnchanged(workspace, "target/TEST-b.xml") );
+	}
+	
+	public void testTouchedFileWithSameContent() throws IOException
+	{
+		ResultFileManifest manifest = new ResultFileManifest();
+		manifest.record(workspace, "target/TEST-a.xml");
+		
+		File file = new File(workspace, "target/TEST-a.xml");
+		file.setLastModified(file.lastModified() - 60000L);
+		
+		assertTrue( manifest.isUnchanged(workspace, "target/TEST-a.xml") );
+	}
+	
+	public void testChangedFile() throws IOException
+	{
+		ResultFileManifest manifest = new ResultFileManifest();
+		manifest.record(workspace, "target/TEST-a.xml");
+		
+		File file = new File(workspace, "target/TEST-a.xml");
+		long lastModified = file.lastModified();
+		FileUtils.writeStringToFile(file, "<testsuite name=\"c\"/>");
+		file.setLastModified(lastModified - 60000L);
+		
+		assertFalse( manifest.isUnchanged(workspace, "target/TEST-a.xml") );
+	}
+	
+	public void testSaveAndLoad() throws IOException
+	{
+		ResultFileManifest manifest = new ResultFileManifest();
+		manifest.record(workspace, "target/TEST-a.xml");
+		manifest.record(workspace, "target/TEST-b.xml");
+		
+		File manifestFile = new File(workspace, ResultFileManifest.FILE_NAME);
+		manifest.save(manifestFile);
+		
+		ResultFileManifest loaded = ResultFileManifest.load(manifestFile);
+		
+		assertEquals( 2, loaded.size() );
+		assertTrue( loaded.isUnchanged(workspace, "target/TEST-a.xml") );
+		assertTrue( loaded.isUnchanged(workspace, "target/TEST-b.xml") );
+		assertNull( ResultFileManifest.load(new File(workspace, "missing.txt")) );
+	}
+	
+	public void testRecordComparedWithPrevious() throws IOException
+	{
+		ResultFileManifest previous = new ResultFileManifest();
+		previous.record(workspace, "target/TEST-a.xml");
+		
+		File file = new File(workspace, "target/TEST-b.xml");
+		long lastModified = file.lastModified();
+		ResultFileManifest current = new ResultFileManifest();
+		assertTrue( current.record(workspace, "target/TEST-a.xml", previous) );
+		assertFalse( current.record(workspace, "target/TEST-b.xml", previous) );
+		assertEquals( 2, current.size() );
+		
+		// the next build compares with the files read in this one
+		FileUtils.writeStringToFile(file, "<testsuite name=\"changed\"/>");
+		file.setLastModified(lastModified);
+		ResultFileManifest next = new ResultFileManifest();
+		assertTrue( next.record(workspace, "target/TEST-a.xml", current) );
+		assertFalse( next.record(workspace, "target/TEST-b.xml", current) );
+		assertFalse( next.record(workspace, "target/TEST-a.xml", null) );
+	}
+	
+}
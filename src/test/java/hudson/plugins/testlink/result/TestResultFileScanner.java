@@ -0,0 +1,130 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.tools.ant.DirectoryScanner;
+
+/**
+ * Tests the ResultFileScanner against Ant DirectoryScanner.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestResultFileScanner 
+extends TestCase
+{
+
+	private File workspace;
+	
+	public void setUp() throws IOException
+	{
+		workspace = File.createTempFile("result-file-scanner", "");
+		workspace.delete();
+		workspace.mkdirs();
+		
+		String[] files = new String[] {
+				"target/surefire-reports/TEST-a.xml", 
+				"target/surefire-reports/TEST-a.txt", 
+				"target/test-output/testng-results.xml", 
+				"module/target/surefire-reports/TEST-b.xml", 
+				"node_modules/lib/TEST-c.xml", 
+				".git/objects/TEST-d.xml", 
+				"CVS/TEST-e.xml", 
+				"TEST-f.xml~", 
+				"results/tap/test.tap"
+		};
+		for ( String file : files )
+		{
+			FileUtils.writeStringToFile(new File(workspace, file), file);
+		}
+	}
+	
+	public void tearDown() throws IOException
+	{
+		FileUtils.deleteDirectory(workspace);
+	}
+	
+	private String[] antScan( String includes )
+	{
+		DirectoryScanner ds = new DirectoryScanner();
+		ds.setBasedir(workspace);
+		StringTokenizer tokens = new StringTokenizer(includes, ",");
+		String[] patterns = new String[tokens.countTokens()];
+		for ( int i = 0 ; tokens.hasMoreTokens() ; i++ )
+		{
+			patterns[i] = tokens.nextToken().trim();
+		}
+		ds.setIncludes(patterns);
+		ds.addDefaultExcludes();
+		ds.scan();
+		String[] files = ds.getIncludedFiles();
+		Arrays.sort(files);
+		return files;
+	}
+	
+	private void assertSameFiles( String includes ) throws IOException
+	{
+		String[] expected = antScan(includes);
+		String[] found = new ResultFileScanner(includes).scan(workspace);
+		assertEquals( Arrays.asList(expected), Arrays.asList(found) );
+	}
+	
+	public void testSameFilesAsAnt() throws IOException
+	{
+		assertSameFiles("**/TEST-*.xml");
+		assertSameFiles("**/*.xml");
+		assertSameFiles("target/surefire-reports/*.xml");
+		assertSameFiles("target/surefire-reports/*.xml, **/testng-results.xml");
+		assertSameFiles("target/");
+		assertSameFiles("results\\tap\\*.tap");
+		assertSameFiles("**/*");
+		assertSameFiles("missing/*.xml");
+	}
+	
+	public void testPrunesDirectories() throws IOException
+	{
+		ResultFileScanner scanner = new ResultFileScanner("target/surefire-reports/*.xml");
+		String[] found = scanner.scan(workspace);
+		
+		assertEquals( 1, found.length );
+		// node_modules, .git, CVS, module, results and target/test-output are not entered
+		assertEquals( 6, scanner.getPruned() );
+		assertEquals( 3, scanner.getDirectories() );
+	}
+	
+	public void testBlankIncludes() throws IOException
+	{
+		assertEquals( 0, new ResultFileScanner(" ").scan(workspace).length );
+		assertEquals( 0, new ResultFileScanner(null).scan(workspace).length );
+	}
+	
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) <2011> <Bruno P. Kinoshita>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.result;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * Tests the {@link TAPStreamReader}.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTAPStreamReader 
+extends junit.framework.TestCase
+{
+
+	private TAPStreamReader reader;
+	
+	public void setUp()
+	{
+		this.reader = new TAPStreamReader();
+	}
+	
+	private TAPStreamReader.Summary read(String tap) throws IOException
+	{
+		return this.reader.read(new StringReader(tap));
+	}
+	
+	public void testPassed() throws IOException
+	{
+		TAPStreamReader.Summary summary = read("1..2\nok 1 - first\nok 2 - second\n");
+		assertEquals( ExecutionStatus.PASSED, summary.getStatus() );
+		assertNull( summary.getPlatform() );
+	}
+	
+	public void testNotOkIsFailed() throws IOException
+	{
+		assertEquals( ExecutionStatus.FAILED, read("1..2\nok 1\nnot ok 2\n").getStatus() );
+	}
+	
+	public void testBailOutIsFailed() throws IOException
+	{
+		assertEquals( ExecutionStatus.FAILED, read("1..2\nok 1\nBail out! database down\n").getStatus() );
+	}
+	
+	public void testTodoIsFailed() throws IOException
+	{
+		assertEquals( ExecutionStatus.FAILED, read("1..1\nok 1 - pending # TODO not implemented\n").getStatus() );
+	}
+	
+	public void testSkipIsBlocked() throws IOException
+	{
+		assertEquals( ExecutionStatus.BLOCKED, read("1..2\nnot ok 1\nok 2 # SKIP no database\n").getStatus() );
+		assertEquals( ExecutionStatus.BLOCKED, read("1..0 # Skip no network\n").getStatus() );
+	}
+	
+	public void testPlatformFromTestResult() throws IOException
+	{
+		TAPStreamReader.Summary summary = read(
+			"TAP version 13\n" +
+			"1..2\n" +
+			"ok 1\n" +
+			"  ---\n" +
+			"  extensions:\n" +
+			"    TestLink:\n" +
+			"      Platform: Firefox\n" +
+			"  ...\n" +
+			"ok 2\n" +
+			"  ---\n" +
+			"  extensions:\n" +
+			"    TestLink:\n" +
+			"      Platform: Chrome\n" +
+			"  ...\n");
+		assertEquals( ExecutionStatus.PASSED, summary.getStatus() );
+		assertEquals( "Firefox", summary.getPlatform() );
+	}
+	
+	public void testPlanPlatformWins() throws IOException
+	{
+		TAPStreamReader.Summary summary = read(
+			"TAP version 13\n" +
+			"ok 1\n" +
+			"  ---\n" +
+			"  extensions:\n" +
+			"    TestLink:\n" +
+			"      platform: Firefox\n" +
+			"  ...\n" +
+			"1..1\n" +
+			"  ---\n" +
+			"  extensions:\n" +
+			"    TestLink:\n" +
+			"      Platform: Linux\n" +
+			"  ...\n");
+		assertEquals( "Linux", summary.getPlatform() );
+	}
+	
+	public void testYamlishIsNotReadAsTestResults() throws IOException
+	{
+		TAPStreamReader.Summary summary = read(
+			"1..1\n" +
+			"ok 1\n" +
+			"  ---\n" +
+			"  message: not ok\n" +
+			"  ...\n");
+		assertEquals( ExecutionStatus.PASSED, summary.getStatus() );
+	}
+	
+}
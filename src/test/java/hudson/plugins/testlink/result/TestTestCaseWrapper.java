@@ -23,6 +23,7 @@
  */
 package hudson.plugins.testlink.result;
 
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
 import br.eti.kinoshita.testlinkjavaapi.model.Attachment;
 import br.eti.kinoshita.testlinkjavaapi.model.Build;
 import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
@@ -102,4 +103,47 @@ extends junit.framework.TestCase
 		assertEquals( testResult.getCustomFieldAndStatus().size(), 0 );
 	}
 
+	public void testTestResultExecutionStatus()
+	{
+		CustomField cf = new CustomField();
+		cf.setName("key");
+		cf.setValue("a, b, c");
+		testResult.getCustomFields().add(cf);
+		
+		testResult.addCustomFieldAndStatus("a", ExecutionStatus.PASSED);
+		assertEquals( ExecutionStatus.NOT_RUN, testResult.getExecutionStatus("key") );
+		
+		testResult.addCustomFieldAndStatus("b", ExecutionStatus.FAILED);
+		testResult.addCustomFieldAndStatus("other", ExecutionStatus.PASSED);
+		assertEquals( ExecutionStatus.NOT_RUN, testResult.getExecutionStatus("key") );
+		
+		testResult.addCustomFieldAndStatus("c", ExecutionStatus.BLOCKED);
+		assertEquals( ExecutionStatus.FAILED, testResult.getExecutionStatus("key") );
+		assertEquals( ExecutionStatus.FAILED, testResult.getExecutionStatus() );
+		
+		testResult.addCustomFieldAndStatus("b", ExecutionStatus.PASSED);
+		assertEquals( ExecutionStatus.BLOCKED, testResult.getExecutionStatus("key") );
+		
+		testResult.mergeCustomFieldAndStatus("c", ExecutionStatus.PASSED);
+		assertEquals( ExecutionStatus.BLOCKED, testResult.getExecutionStatus("key") );
+		
+		testResult.addCustomFieldAndStatus("c", ExecutionStatus.PASSED);
+		assertEquals( ExecutionStatus.PASSED, testResult.getExecutionStatus("key") );
+		
+		cf.setValue("a, b, c, d");
+		assertEquals( ExecutionStatus.NOT_RUN, testResult.getExecutionStatus("key") );
+		
+		assertEquals( ExecutionStatus.NOT_RUN, testResult.getExecutionStatus("nz") );
+	}
+	
+	public void testWorstOf()
+	{
+		assertEquals( ExecutionStatus.PASSED, TestCaseWrapper.worstOf(null, ExecutionStatus.PASSED) );
+		assertEquals( ExecutionStatus.BLOCKED, TestCaseWrapper.worstOf(ExecutionStatus.PASSED, ExecutionStatus.BLOCKED) );
+		assertEquals( ExecutionStatus.FAILED, TestCaseWrapper.worstOf(ExecutionStatus.FAILED, ExecutionStatus.BLOCKED) );
+		assertEquals( ExecutionStatus.FAILED, TestCaseWrapper.worstOf(ExecutionStatus.FAILED, null) );
+		assertEquals( ExecutionStatus.PASSED, TestCaseWrapper.worstOf(ExecutionStatus.PASSED, ExecutionStatus.NOT_RUN) );
+		assertEquals( ExecutionStatus.PASSED, TestCaseWrapper.worstOf(ExecutionStatus.NOT_RUN, ExecutionStatus.PASSED) );
+	}
+	
 }
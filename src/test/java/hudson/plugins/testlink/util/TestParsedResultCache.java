@@ -0,0 +1,106 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the ParsedResultCache.
+ * 
+ * @see {@link ParsedResultCache}
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestParsedResultCache 
+extends TestCase
+{
+
+	private File file;
+	
+	public void setUp() throws IOException
+	{
+		ParsedResultCache.clear();
+		file = File.createTempFile("parsed-result-cache", ".xml");
+		FileUtils.writeStringToFile(file, "<testsuite/>");
+	}
+	
+	public void tearDown()
+	{
+		ParsedResultCache.clear();
+		file.delete();
+	}
+	
+	public void testGetAndPut()
+	{
+		assertNull( ParsedResultCache.get("job#1", "parser", file, String.class) );
+		
+		ParsedResultCache.put("job#1", "parser", file, "model");
+		
+		assertEquals( "model", ParsedResultCache.get("job#1", "parser", file, String.class) );
+		assertNull( ParsedResultCache.get("job#1", "another parser", file, String.class) );
+		assertNull( ParsedResultCache.get("job#1", "parser", file, Integer.class) );
+		assertEquals( 1, ParsedResultCache.size() );
+	}
+	
+	public void testChangedFile() throws IOException
+	{
+		ParsedResultCache.put("job#1", "parser", file, "model");
+		
+		FileUtils.writeStringToFile(file, "<testsuite name=\"changed\"/>");
+		
+		assertNull( ParsedResultCache.get("job#1", "parser", file, String.class) );
+	}
+	
+	public void testClear()
+	{
+		ParsedResultCache.put("job#1", "parser", file, "model");
+		
+		ParsedResultCache.clear();
+		
+		assertEquals( 0, ParsedResultCache.size() );
+		assertNull( ParsedResultCache.get("job#1", "parser", file, String.class) );
+	}
+	
+	public void testBuildsDoNotShareModels()
+	{
+		ParsedResultCache.put("job#1", "parser", file, "model");
+		ParsedResultCache.put("job#2", "parser", file, "other model");
+		
+		assertEquals( "model", ParsedResultCache.get("job#1", "parser", file, String.class) );
+		assertEquals( "other model", ParsedResultCache.get("job#2", "parser", file, String.class) );
+		
+		ParsedResultCache.clear("job#1");
+		
+		assertNull( ParsedResultCache.get("job#1", "parser", file, String.class) );
+		assertEquals( "other model", ParsedResultCache.get("job#2", "parser", file, String.class) );
+		assertEquals( 1, ParsedResultCache.size() );
+	}
+	
+}
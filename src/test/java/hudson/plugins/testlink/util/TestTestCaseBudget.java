@@ -0,0 +1,122 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+import br.eti.kinoshita.testlinkjavaapi.constants.TestImportance;
+
+/**
+ * Tests the selection of test cases with {@link TestCaseBudget} and the 
+ * {@link TestCaseHistory} it uses.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTestCaseBudget extends TestCase {
+
+	private TestCaseWrapper[] testCases;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		testCases = new TestCaseWrapper[4];
+		for (int i = 0; i < testCases.length; ++i) {
+			testCases[i] = new TestCaseWrapper();
+			testCases[i].setId(i + 1);
+			testCases[i].setExecutionOrder(i + 1);
+		}
+	}
+
+	private TestCaseHistory history(int buildNumber, ExecutionStatus... statuses) {
+		final TestCaseHistory history = new TestCaseHistory(null);
+		for (int i = 0; i < statuses.length; ++i) {
+			testCases[i].setExecutionStatus(statuses[i]);
+		}
+		history.record(buildNumber, Arrays.asList(testCases));
+		return history;
+	}
+
+	public void testHistory() {
+		final TestCaseHistory first = history(1, ExecutionStatus.FAILED, ExecutionStatus.PASSED, ExecutionStatus.BLOCKED, ExecutionStatus.NOT_RUN);
+		final TestCaseHistory second = new TestCaseHistory(first.toMap());
+		testCases[0].setExecutionStatus(ExecutionStatus.PASSED);
+		testCases[1].setExecutionStatus(ExecutionStatus.FAILED);
+		second.record(2, Arrays.asList(testCases[0], testCases[1]));
+
+		final TestCaseHistory.Record record = second.getRecord(testCases[0]);
+		assertEquals(2, record.getLastBuild());
+		assertEquals(2, record.getRuns());
+		assertEquals(1, record.getFailures(5));
+		assertEquals(0, record.getFailures(1));
+		assertFalse(record.isLastFailed());
+		assertTrue(second.getRecord(testCases[1]).isLastFailed());
+		assertNull(second.getRecord(testCases[2]));
+		assertNull(second.getRecord(testCases[3]));
+		assertEquals(2, second.toMap().size());
+	}
+
+	public void testScore() {
+		final TestCaseHistory history = history(8, ExecutionStatus.FAILED, ExecutionStatus.PASSED, ExecutionStatus.PASSED);
+		testCases[1].setTestImportance(TestImportance.HIGH);
+		testCases[2].setTestImportance(TestImportance.LOW);
+		final TestCaseBudget budget = new TestCaseBudget(new TestCaseDurations(null), history, 10);
+
+		assertEquals(2 + 2 + 1.0, budget.getScore(testCases[0]), 0.001);
+		assertEquals(3 + 1.0, budget.getScore(testCases[1]), 0.001);
+		assertEquals(1 + 1.0, budget.getScore(testCases[2]), 0.001);
+		assertEquals(2 + 5.0, budget.getScore(testCases[3]), 0.001);
+	}
+
+	public void testNoDurationHistorySelectsAll() {
+		final TestCaseBudget budget = new TestCaseBudget(new TestCaseDurations(null), new TestCaseHistory(null), 1);
+		final TestCaseBudget.Selection selection = budget.select(testCases, 1L);
+
+		assertEquals(-1L, selection.getEstimatedDuration());
+		assertTrue(Arrays.equals(testCases, selection.getSelected()));
+		assertTrue(selection.getLeftOut().isEmpty());
+	}
+
+	public void testSelectByScorePerMillisecond() {
+		final TestCaseHistory history = history(9, ExecutionStatus.PASSED, ExecutionStatus.FAILED, ExecutionStatus.PASSED, ExecutionStatus.PASSED);
+		final Map<Integer, Long> durations = new HashMap<Integer, Long>();
+		durations.put(1, 100L);
+		durations.put(2, 100L);
+		durations.put(3, 10L);
+		durations.put(4, 300L);
+		final TestCaseBudget budget = new TestCaseBudget(new TestCaseDurations(durations), history, 10);
+		final TestCaseBudget.Selection selection = budget.select(testCases, 150L);
+
+		// Densities: 2.5 / 100, 4.5 / 100, 2.5 / 10 and 2.5 / 300
+		assertEquals(110L, selection.getEstimatedDuration());
+		assertTrue(Arrays.equals(new TestCaseWrapper[] { testCases[1], testCases[2] }, selection.getSelected()));
+		assertEquals(Arrays.asList(testCases[0], testCases[3]), selection.getLeftOut());
+	}
+
+}
@@ -0,0 +1,162 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the balancing of test cases with {@link TestCaseDurations}.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTestCaseDurations extends TestCase {
+
+	private TestCaseWrapper[] testCases;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		testCases = new TestCaseWrapper[6];
+		for (int i = 0; i < testCases.length; ++i) {
+			testCases[i] = new TestCaseWrapper();
+			testCases[i].setId(i + 1);
+			testCases[i].setExecutionOrder(i + 1);
+		}
+	}
+
+	public void testNoHistoryKeepsExecutionOrder() {
+		final TestCaseDurations durations = new TestCaseDurations(null);
+		final TestCaseDurations.Schedule schedule = durations.schedule(testCases, 2);
+
+		assertEquals(-1L, schedule.getPredictedMakespan());
+		assertEquals(0, schedule.getTestCasesWithHistory());
+		assertTrue(Arrays.equals(testCases, schedule.getOrder()));
+		assertEquals(Arrays.asList(testCases[0], testCases[2], testCases[4]), schedule.getLanes().get(0));
+		assertEquals(Arrays.asList(testCases[1], testCases[3], testCases[5]), schedule.getLanes().get(1));
+	}
+
+	public void testLongestProcessingTimeFirst() {
+		final Map<Integer, Long> previous = new HashMap<Integer, Long>();
+		previous.put(1, 10L);
+		previous.put(2, 10L);
+		previous.put(3, 10L);
+		previous.put(4, 10L);
+		previous.put(5, 20L);
+		previous.put(6, 20L);
+		final TestCaseDurations durations = new TestCaseDurations(previous);
+		final TestCaseDurations.Schedule schedule = durations.schedule(testCases, 2);
+
+		assertEquals(40L, schedule.getPredictedMakespan());
+		assertEquals(6, schedule.getTestCasesWithHistory());
+		assertSame(testCases[4], schedule.getOrder()[0]);
+		assertSame(testCases[5], schedule.getOrder()[1]);
+		assertSame(testCases[0], schedule.getOrder()[2]);
+
+		final List<TestCaseWrapper> lane0 = schedule.getLanes().get(0);
+		final List<TestCaseWrapper> lane1 = schedule.getLanes().get(1);
+		assertEquals(Arrays.asList(testCases[0], testCases[2], testCases[4]), lane0);
+		assertEquals(Arrays.asList(testCases[1], testCases[3], testCases[5]), lane1);
+	}
+
+	public void testBalanceAroundLongTestCase() {
+		final Map<Integer, Long> previous = new HashMap<Integer, Long>();
+		previous.put(1, 60L);
+		previous.put(2, 10L);
+		previous.put(3, 10L);
+		previous.put(4, 10L);
+		previous.put(5, 10L);
+		previous.put(6, 10L);
+		final TestCaseDurations.Schedule schedule = new TestCaseDurations(previous).schedule(testCases, 2);
+
+		assertEquals(60L, schedule.getPredictedMakespan());
+		assertEquals(Arrays.asList(testCases[0]), schedule.getLanes().get(0));
+		assertEquals(5, schedule.getLanes().get(1).size());
+	}
+
+	public void testTestCasesWithoutHistoryUseTheMean() {
+		final Map<Integer, Long> previous = new HashMap<Integer, Long>();
+		previous.put(1, 30L);
+		previous.put(2, 10L);
+		final TestCaseDurations.Schedule schedule = new TestCaseDurations(previous).schedule(testCases, 3);
+
+		assertEquals(2, schedule.getTestCasesWithHistory());
+		assertSame(testCases[0], schedule.getOrder()[0]);
+		// 30 ms, then five test cases estimated with 20 ms each
+		assertEquals(40L, schedule.getPredictedMakespan());
+	}
+
+	public void testRecordedDurationsOverridePrevious() {
+		final Map<Integer, Long> previous = new HashMap<Integer, Long>();
+		previous.put(1, 30L);
+		previous.put(2, 10L);
+		final TestCaseDurations durations = new TestCaseDurations(previous);
+		durations.record(testCases[0], 5L);
+		durations.record(testCases[2], 7L);
+
+		final Map<Integer, Long> map = durations.toMap(testCases);
+		assertEquals(3, map.size());
+		assertEquals(Long.valueOf(5L), map.get(1));
+		assertEquals(Long.valueOf(10L), map.get(2));
+		assertEquals(Long.valueOf(7L), map.get(3));
+		assertEquals(Long.valueOf(30L), durations.getPreviousDuration(testCases[0]));
+	}
+
+	public void testTestCasesNoLongerInTheTestPlanAreDropped() {
+		final Map<Integer, Long> previous = new HashMap<Integer, Long>();
+		previous.put(1, 30L);
+		previous.put(2, 10L);
+		previous.put(99, 50L);
+		final TestCaseDurations durations = new TestCaseDurations(previous);
+		durations.record(testCases[2], 7L);
+
+		final Map<Integer, Long> map = durations.toMap(new TestCaseWrapper[] { testCases[1], testCases[2] });
+		assertEquals(2, map.size());
+		assertEquals(Long.valueOf(10L), map.get(2));
+		assertEquals(Long.valueOf(7L), map.get(3));
+	}
+
+	public void testKeepOrder() {
+		final Map<Integer, Long> previous = new HashMap<Integer, Long>();
+		previous.put(1, 10L);
+		previous.put(2, 10L);
+		previous.put(3, 10L);
+		previous.put(4, 10L);
+		previous.put(5, 20L);
+		previous.put(6, 20L);
+		final TestCaseDurations.Schedule schedule = new TestCaseDurations(previous).schedule(testCases, 2, true);
+
+		assertTrue(Arrays.equals(testCases, schedule.getOrder()));
+		assertEquals(Arrays.asList(testCases[0], testCases[2], testCases[4]), schedule.getLanes().get(0));
+		assertEquals(Arrays.asList(testCases[1], testCases[3], testCases[5]), schedule.getLanes().get(1));
+		assertEquals(40L, schedule.getPredictedMakespan());
+	}
+
+}
@@ -0,0 +1,121 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Tests the {@link TestCaseImpactIndex}.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTestCaseImpactIndex extends TestCase {
+
+	public void testStems() {
+		assertEquals(Arrays.asList("com/acme/FooTest", "com/acme/Foo"), TestCaseImpactIndex.getStems("com.acme.FooTest"));
+		assertEquals(Arrays.asList("com/acme/FooTest", "com/acme/Foo"), TestCaseImpactIndex.getStems("com.acme.FooTest#testBar"));
+		assertEquals(Arrays.asList("com/acme/TestBar", "com/acme/Bar"), TestCaseImpactIndex.getStems(" com.acme.TestBar.testSomething "));
+		assertEquals(Arrays.asList("com/acme/billing/"), TestCaseImpactIndex.getStems("com.acme.billing"));
+	}
+
+	public void testImpactedValues() {
+		final TestCaseImpactIndex index = new TestCaseImpactIndex(null);
+		index.index(Arrays.asList("com.acme.FooTest", "com.acme.billing", "smoke"), Arrays.asList(
+				"core/src/main/java/com/acme/Foo.java", 
+				"core/src/test/java/com/acme/FooTest.java", 
+				"core/src/main/java/com/acme/FooBar.java", 
+				"billing/src/main/java/com/acme/billing/Invoice.java"));
+
+		assertTrue(index.isMapped("com.acme.FooTest"));
+		assertTrue(index.isMapped("com.acme.billing"));
+		assertFalse(index.isMapped("smoke"));
+		assertTrue(index.getMissingValues(Arrays.asList("smoke", "com.acme.Other")).equals(Collections.singleton("com.acme.Other")));
+
+		// Paths from the repository root, with a module directory above the 
+		// workspace
+		assertEquals(Collections.singleton("com.acme.FooTest"), index.getImpactedValues(Arrays.asList("trunk/core/src/main/java/com/acme/Foo.java")));
+		assertEquals(Collections.singleton("com.acme.billing"), index.getImpactedValues(Arrays.asList("billing/src/main/java/com/acme/billing/Tax.java")));
+		assertTrue(index.getImpactedValues(Arrays.asList("core/src/main/java/com/acme/FooBar.java", "pom.xml")).isEmpty());
+		assertTrue(index.getImpactedValues(Arrays.asList("core/src/main/java/com/acme/billing/sub/Tax.java")).isEmpty());
+	}
+
+	public void testSubpackages() {
+		final TestCaseImpactIndex index = new TestCaseImpactIndex(null);
+		index.index(Arrays.asList("com.acme.billing", "com.acme.shipping", "com.acme.FooTest"), Arrays.asList(
+				"billing/src/main/java/com/acme/billing/Invoice.java", 
+				"shipping/src/main/java/com/acme/shipping/rates/Rate.java", 
+				"core/src/main/java/com/acme/Foo.java"));
+
+		// A package with files only in its subpackages is mapped too
+		assertTrue(index.isMapped("com.acme.shipping"));
+		assertEquals(Collections.singleton("com.acme.shipping"), index.getImpactedValues(Arrays.asList("shipping/src/main/java/com/acme/shipping/rates/Zone.java")));
+
+		// The changes in the subpackages impact the package
+		assertEquals(Collections.singleton("com.acme.billing"), index.getImpactedValues(Arrays.asList("billing/src/main/java/com/acme/billing/tax/Vat.java")));
+		assertEquals(Collections.singleton("com.acme.billing"), index.getImpactedValues(Arrays.asList("trunk/billing/src/main/java/com/acme/billing/tax/eu/Vat.java")));
+		// The billing module directory is not the com.acme.billing package
+		assertTrue(index.getImpactedValues(Arrays.asList("billing/src/main/java/com/acme/billingv2/Invoice.java")).isEmpty());
+		assertTrue(index.getImpactedValues(Arrays.asList("core/src/main/java/com/acme/sub/Foo.java")).isEmpty());
+	}
+
+	public void testIncrementalUpdate() {
+		final TestCaseImpactIndex previous = new TestCaseImpactIndex(null);
+		previous.index(Arrays.asList("com.acme.BarTest"), Collections.<String>emptyList());
+		assertFalse(previous.isMapped("com.acme.BarTest"));
+
+		final TestCaseImpactIndex index = new TestCaseImpactIndex(previous.toMap());
+		assertTrue(index.getMissingValues(Arrays.asList("com.acme.BarTest")).isEmpty());
+		index.index(index.getValues(), Arrays.asList("src/main/java/com/acme/Bar.java"));
+
+		assertTrue(index.isMapped("com.acme.BarTest"));
+		assertFalse(previous.isMapped("com.acme.BarTest"));
+	}
+
+	public void testScanWorkspace() throws Exception {
+		final File workspace = File.createTempFile("testlink", "workspace");
+		workspace.delete();
+		try {
+			FileUtils.writeStringToFile(new File(workspace, "src/main/java/com/acme/Foo.java"), "");
+			FileUtils.writeStringToFile(new File(workspace, "src/main/java/com/acme/Other.java"), "");
+			final Set<String> values = new HashSet<String>(Arrays.asList("com.acme.FooTest", "com.acme"));
+			final Map<String, Set<String>> scanned = new TestCaseImpactIndex.ScanCallable(values).invoke(workspace, null);
+
+			assertEquals(Collections.singleton("src/main/java/com/acme/Foo.java"), scanned.get("com.acme.FooTest"));
+			assertEquals(Collections.singleton("src/main/java/com/acme/"), scanned.get("com.acme"));
+		} finally {
+			FileUtils.deleteDirectory(workspace);
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import br.eti.kinoshita.testlinkjavaapi.constants.ExecutionStatus;
+
+/**
+ * Tests the {@link TestCaseOrder} strategies.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTestCaseOrder extends TestCase {
+
+	private TestCaseWrapper[] testCases;
+
+	private TestCaseHistory testCaseHistory;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		testCases = new TestCaseWrapper[5];
+		for (int i = 0; i < testCases.length; ++i) {
+			testCases[i] = new TestCaseWrapper();
+			testCases[i].setId(i + 1);
+			testCases[i].setExecutionOrder(i + 1);
+		}
+		// Test case 1 always passed, 2 failed in build 1, 3 flips every 
+		// build, 4 failed in build 3 and 5 never ran
+		final ExecutionStatus[][] results = {
+			{ ExecutionStatus.PASSED, ExecutionStatus.FAILED, ExecutionStatus.FAILED, ExecutionStatus.PASSED },
+			{ ExecutionStatus.PASSED, ExecutionStatus.PASSED, ExecutionStatus.PASSED, ExecutionStatus.PASSED },
+			{ ExecutionStatus.PASSED, ExecutionStatus.PASSED, ExecutionStatus.FAILED, ExecutionStatus.FAILED }
+		};
+		testCaseHistory = new TestCaseHistory(null);
+		for (int build = 0; build < results.length; ++build) {
+			testCaseHistory = new TestCaseHistory(testCaseHistory.toMap());
+			for (int i = 0; i < results[build].length; ++i) {
+				testCases[i].setExecutionStatus(results[build][i]);
+			}
+			testCaseHistory.record(build + 1, Arrays.asList(testCases).subList(0, 4));
+		}
+	}
+
+	public void testExecutionOrder() {
+		final TestCaseWrapper[] sorted = testCases.clone();
+		TestCaseOrder.forName(null).sort(sorted, testCaseHistory);
+
+		assertTrue(Arrays.equals(testCases, sorted));
+	}
+
+	public void testRecentlyFailedFirst() {
+		final TestCaseWrapper[] sorted = testCases.clone();
+		TestCaseOrder.forName("RECENTLY_FAILED_FIRST").sort(sorted, testCaseHistory);
+
+		assertTrue(Arrays.equals(new TestCaseWrapper[] { testCases[2], testCases[3], testCases[1], testCases[0], testCases[4] }, sorted));
+	}
+
+	public void testMostFlakyFirst() {
+		final TestCaseWrapper[] sorted = testCases.clone();
+		TestCaseOrder.MOST_FLAKY_FIRST.sort(sorted, testCaseHistory);
+
+		assertEquals(2, testCaseHistory.getRecord(testCases[2]).getFlips());
+		assertEquals(1, testCaseHistory.getRecord(testCases[1]).getFlips());
+		assertTrue(Arrays.equals(new TestCaseWrapper[] { testCases[2], testCases[1], testCases[3], testCases[0], testCases[4] }, sorted));
+	}
+
+}
@@ -0,0 +1,146 @@
+/* 
+ * The MIT License
+ * 
+ * Copyright (c) 2010 Bruno P. Kinoshita <http://www.kinoshita.eti.br>
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package hudson.plugins.testlink.util;
+
+import hudson.plugins.testlink.result.TestCaseWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import br.eti.kinoshita.testlinkjavaapi.model.Build;
+import br.eti.kinoshita.testlinkjavaapi.model.CustomField;
+import br.eti.kinoshita.testlinkjavaapi.model.TestCaseStep;
+import br.eti.kinoshita.testlinkjavaapi.model.TestPlan;
+import br.eti.kinoshita.testlinkjavaapi.model.TestProject;
+
+/**
+ * Tests the {@link TestLinkEnvironmentTemplate}.
+ * 
+ * @author Bruno P. Kinoshita - http://www.kinoshita.eti.br
+ * @since 3.1.9
+ */
+public class TestTestLinkEnvironmentTemplate extends TestCase {
+
+	private TestCaseWrapper testCase;
+	private TestProject testProject;
+	private TestPlan testPlan;
+	private Build build;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		testCase = new TestCaseWrapper();
+		testCase.setId(100);
+		testCase.setName("tc name");
+		testCase.setTestSuiteId(10);
+		testCase.setTestProjectId(1);
+		testCase.setAuthorLogin("kinow");
+		testCase.setSummary("summary");
+
+		final List<CustomField> customFields = new ArrayList<CustomField>();
+		final CustomField browsers = new CustomField();
+		browsers.setName(" Browser list");
+		browsers.setValue("firefox, ,chrome,,opera ");
+		customFields.add(browsers);
+		final CustomField os = new CustomField();
+		os.setName("os");
+		os.setValue("linux");
+		customFields.add(os);
+		testCase.setCustomFields(customFields);
+
+		final List<TestCaseStep> steps = new ArrayList<TestCaseStep>();
+		for (int i = 1; i <= 2; ++i) {
+			final TestCaseStep step = new TestCaseStep();
+			step.setNumber(i);
+			step.setActions("action " + i);
+			step.setExpectedResults("expected " + i);
+			steps.add(step);
+		}
+		testCase.setSteps(steps);
+
+		testProject = new TestProject();
+		testProject.setName("project");
+		testPlan = new TestPlan();
+		testPlan.setName("plan");
+		build = new Build();
+		build.setName("build");
+	}
+
+	public void testAllVariables() {
+		final TestLinkEnvironmentTemplate template = new TestLinkEnvironmentTemplate();
+		for (int i = 0; i < 2; ++i) {
+			final Map<String, String> envVars = template.createEnvironmentVariables(testCase, testProject, testPlan, build);
+
+			assertEquals(20, envVars.size());
+			assertEquals("100", envVars.get("TESTLINK_TESTCASE_ID"));
+			assertEquals("tc name", envVars.get("TESTLINK_TESTCASE_NAME"));
+			assertEquals("10", envVars.get("TESTLINK_TESTCASE_TESTSUITEID"));
+			assertEquals("1", envVars.get("TESTLINK_TESTCASE_TESTPROJECTID"));
+			assertEquals("kinow", envVars.get("TESTLINK_TESTCASE_AUTHOR"));
+			assertEquals("summary", envVars.get("TESTLINK_TESTCASE_SUMMARY"));
+			assertEquals("build", envVars.get("TESTLINK_BUILD_NAME"));
+			assertEquals("plan", envVars.get("TESTLINK_TESTPLAN_NAME"));
+			assertEquals("project", envVars.get("TESTLINK_TESTPROJECT_NAME"));
+			assertEquals("firefox, ,chrome,,opera ", envVars.get("TESTLINK_TESTCASE_BROWSER_LIST"));
+			assertEquals("firefox", envVars.get("TESTLINK_TESTCASE_BROWSER_LIST_0"));
+			assertEquals("", envVars.get("TESTLINK_TESTCASE_BROWSER_LIST_1"));
+			assertEquals("chrome", envVars.get("TESTLINK_TESTCASE_BROWSER_LIST_2"));
+			assertEquals("opera", envVars.get("TESTLINK_TESTCASE_BROWSER_LIST_3"));
+			assertEquals("linux", envVars.get("TESTLINK_TESTCASE_OS"));
+			assertEquals("2", envVars.get("TESTLINK_TESTCASE_STEP_TOTAL"));
+			assertEquals("action 1", envVars.get("TESTLINK_TESTCASE_STEP_1_ACTION"));
+			assertEquals("expected 1", envVars.get("TESTLINK_TESTCASE_STEP_1_EXPECTED"));
+			assertEquals("action 2", envVars.get("TESTLINK_TESTCASE_STEP_2_ACTION"));
+			assertEquals("expected 2", envVars.get("TESTLINK_TESTCASE_STEP_2_EXPECTED"));
+		}
+	}
+
+	public void testUsedVariables() {
+		final TestLinkEnvironmentTemplate template = new TestLinkEnvironmentTemplate(Arrays.asList(
+				"mvn test -Dtest=$TESTLINK_TESTCASE_NAME -Dos=${TESTLINK_TESTCASE_OS}", 
+				"echo %TESTLINK_TESTCASE_BROWSER_LIST_1% $TESTLINK_TESTCASE_STEP_"));
+		final Map<String, String> envVars = template.createEnvironmentVariables(testCase, testProject, testPlan, build);
+
+		assertEquals(8, envVars.size());
+		assertEquals("tc name", envVars.get("TESTLINK_TESTCASE_NAME"));
+		assertEquals("linux", envVars.get("TESTLINK_TESTCASE_OS"));
+		assertEquals("", envVars.get("TESTLINK_TESTCASE_BROWSER_LIST_1"));
+		assertEquals("2", envVars.get("TESTLINK_TESTCASE_STEP_TOTAL"));
+		assertEquals("expected 2", envVars.get("TESTLINK_TESTCASE_STEP_2_EXPECTED"));
+		assertFalse(envVars.containsKey("TESTLINK_TESTCASE_ID"));
+		assertFalse(envVars.containsKey("TESTLINK_TESTCASE_BROWSER_LIST"));
+		assertFalse(envVars.containsKey("TESTLINK_TESTCASE_BROWSER_LIST_0"));
+	}
+
+	public void testNoScripts() {
+		final TestLinkEnvironmentTemplate template = new TestLinkEnvironmentTemplate(Collections.<String>emptyList());
+
+		assertTrue(template.createEnvironmentVariables(testCase, testProject, testPlan, build).isEmpty());
+		assertFalse(template.isUsed("TESTLINK_TESTCASE_ID"));
+	}
+
+}
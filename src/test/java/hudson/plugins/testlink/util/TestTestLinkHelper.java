@@ -29,10 +29,13 @@ import hudson.model.StreamBuildListener;
 import hudson.plugins.testlink.result.TestCaseWrapper;
 
 import java.io.PrintStream;
+import java.io.StringReader;
 import java.lang.reflect.Constructor;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 
 import junit.framework.TestCase;
 
@@ -188,4 +191,50 @@ public class TestTestLinkHelper extends TestCase {
 		assertTrue(envVarsEnvVars.equals(envVars));
 	}
 
+	public void testCreateBatchEnvVars() throws Exception {
+		TestCaseWrapper testCase1 = new TestCaseWrapper();
+		testCase1.setId(100);
+		testCase1.setName("First name");
+		CustomField cf = new CustomField();
+		cf.setName("cf");
+		cf.setValue("fc, gh");
+		testCase1.getCustomFields().add(cf);
+
+		TestCaseWrapper testCase2 = new TestCaseWrapper();
+		testCase2.setId(200);
+		testCase2.setName("Second name = two\nlines");
+
+		TestProject testProject = new TestProject();
+		testProject.setName("Sample project name");
+
+		TestPlan testPlan = new TestPlan();
+		testPlan.setName("10000");
+
+		Build build = new Build();
+		build.setName("100000");
+
+		Map<String, String> envVars = TestLinkHelper
+				.createBatchEnvironmentVariables(Arrays.asList(testCase1, testCase2), 
+						3, testProject, testPlan, build);
+
+		assertEquals("2", envVars.get("TESTLINK_BATCH_SIZE"));
+		assertEquals("3", envVars.get("TESTLINK_BATCH_NUMBER"));
+		assertEquals("10000", envVars.get("TESTLINK_TESTPLAN_NAME"));
+		assertEquals("100", envVars.get("TESTLINK_TESTCASE_0_ID"));
+		assertEquals("First name", envVars.get("TESTLINK_TESTCASE_0_NAME"));
+		assertEquals("fc, gh", envVars.get("TESTLINK_TESTCASE_0_CF"));
+		assertEquals("gh", envVars.get("TESTLINK_TESTCASE_0_CF_1"));
+		assertEquals("200", envVars.get("TESTLINK_TESTCASE_1_ID"));
+		assertNull(envVars.get("TESTLINK_TESTCASE_ID"));
+		assertNull(envVars.get("TESTLINK_TESTCASE_1_CF"));
+
+		Properties manifest = new Properties();
+		manifest.load(new StringReader(TestLinkHelper.createBatchManifest(envVars)));
+
+		assertEquals(envVars.size(), manifest.size());
+		for (Map.Entry<String, String> entry : envVars.entrySet()) {
+			assertEquals(entry.getValue(), manifest.getProperty(entry.getKey()));
+		}
+	}
+
 }